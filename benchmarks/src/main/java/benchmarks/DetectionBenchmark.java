@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.awt.Point;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stealth_game.GameBoard;
+
+/**
+ * What the board works out about a turn once the guards have moved:
+ *    - detectionZone builds the full set of watched cells, as the display asks for it
+ *    - isWatched is the single check the game logic makes for the player's cell
+ *    - darknessZone builds the set of cells hidden from the player on a dark level (vision
+ *      radius 3), which is all that remains of the per-turn vision update
+ * Each is measured a few turns into the level, and on a fixed board (the zone is rebuilt on each
+ * call, rather than read from the board's cache)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectionBenchmark {
+
+    // turns played before measuring, so guards are spread out and facing their routes
+    private static final int SETTLE_TURNS = 5;
+
+    private GameBoard board;
+    private int playerX;
+    private int playerY;
+
+    @Setup(Level.Trial)
+    public void buildBoard(LevelState level) {
+        board = new GameBoard(level.path, true, 3, 1L);
+        for (int i = 0; i < SETTLE_TURNS; i++) {
+            board.incrementTurn();
+        }
+        playerX = (int) board.getPlayerLocation().getX();
+        playerY = (int) board.getPlayerLocation().getY();
+    }
+
+    @Benchmark
+    public HashSet<Point> detectionZone() {
+        return board.getDetectionZone(0, 0, board.getWidth() - 1, board.getHeight() - 1);
+    }
+
+    @Benchmark
+    public Boolean isWatched() {
+        return board.isWatched(playerX, playerY);
+    }
+
+    @Benchmark
+    public HashSet<Point> darknessZone() {
+        return board.getDarknessZone();
+    }
+}
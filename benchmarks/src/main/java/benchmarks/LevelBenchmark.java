@@ -0,0 +1,37 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stealth_game.GameBoard;
+import stealth_game.LevelReader;
+
+/**
+ * Loading a level: parsing its CSV file, and building a GameBoard from it (which parses the file
+ * again, then places walls, doors, keys and guards, and builds the guard index and distance
+ * fields)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelBenchmark {
+
+    @Benchmark
+    public LevelReader parseLevel(LevelState level) {
+        return new LevelReader(level.path);
+    }
+
+    @Benchmark
+    public GameBoard constructBoard(LevelState level) {
+        return new GameBoard(level.path, false, 0, 1L);
+    }
+}
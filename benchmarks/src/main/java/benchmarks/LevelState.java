@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import stealth_game.LevelGenerator;
+
+/**
+ * The level a benchmark runs on. Every shipped level is a parameter, named by its folder and file
+ * under files/ (without the .csv), along with synthetic levels named "synthetic-N" for an N by N
+ * board built by LevelGenerator. The synthetic sizes sweep from 10^2 to 10^6 cells, well past the
+ * largest shipped level. Run a subset with, e.g., -p level=Levels/Level14_Scatter,synthetic-1000
+ *
+ * Shipped levels are found by searching upward from the working directory for files/, so the
+ * benchmarks can be run from the repository root or from benchmarks/. Synthetic levels are
+ * written to temporary files, once per JVM.
+ */
+@State(Scope.Benchmark)
+public class LevelState {
+
+    // seed for synthetic levels, so every run benchmarks the same boards
+    private static final long SYNTHETIC_SEED = 41L;
+
+    // synthetic levels already written, by name
+    private static final HashMap<String, String> SYNTHETIC_PATHS = new HashMap<String, String>();
+
+    @Param({
+        "Levels/Level00_Intro", "Levels/Level01_GuardExample", "Levels/Level02_HunterExample",
+        "Levels/Level03_PatrolPuzzle", "Levels/Level04_RandomRoom",
+        "Levels/Level05_TwoSearchlights", "Levels/Level06_Thrones", "Levels/Level07_Watchtower",
+        "Levels/Level08_PacMan", "Levels/Level09_Field1_Patrols", "Levels/Level10_OutsidePatrol",
+        "Levels/Level11_PatrolHouse", "Levels/Level12_Field2_Hunters",
+        "Levels/Level13_HunterPuzzle", "Levels/Level14_Scatter", "Levels/Level15_PursuitMaze",
+        "Levels/Level16_PacMan2", "Levels/Level17_RestrictedAccess",
+        "Levels/Level18_Groundskeeping", "Levels/Level19_HunterLabyrinth",
+        "Levels/Level20_HighSecurity",
+        "Expansion/Level0_KeyDemonstration", "Expansion/Level1_Rotation",
+        "Expansion/Level2_PitchBlack", "Expansion/Level3_Choices", "Expansion/Level4_Robbery",
+        "Expansion/Level5_KeyGarden", "Expansion/Level6_DarkSpoke",
+        "Expansion/Level7_Lockpicking", "Expansion/Level8_Backtracking",
+        "Expansion/Level9_Citadel",
+        "synthetic-10", "synthetic-32", "synthetic-100", "synthetic-316", "synthetic-1000"
+    })
+    public String level;
+
+    // path of the level's CSV file
+    public String path;
+
+    @Setup(Level.Trial)
+    public void resolve() throws IOException {
+        path = resolve(level);
+    }
+
+    /**
+     * Finds the CSV file of a level parameter, writing it first if it is synthetic
+     *
+     * @param name -> a level parameter
+     * @return String -> path to the level's CSV file
+     */
+    public static String resolve(String name) throws IOException {
+        if (name.startsWith("synthetic-")) {
+            synchronized (SYNTHETIC_PATHS) {
+                String path = SYNTHETIC_PATHS.get(name);
+                if (path == null) {
+                    int size = Integer.parseInt(name.substring("synthetic-".length()));
+                    path = writeSynthetic(size);
+                    SYNTHETIC_PATHS.put(name, path);
+                }
+                return path;
+            }
+        }
+        File dir = new File(System.getProperty("user.dir")).getAbsoluteFile();
+        while (dir != null) {
+            File level = new File(dir, "files/" + name + ".csv");
+            if (level.isFile()) {
+                return level.getPath();
+            }
+            dir = dir.getParentFile();
+        }
+        throw new IOException("Level not found under any files/ folder: " + name);
+    }
+
+    /**
+     * Writes a square synthetic level: walls at 10% density and one guard per forty cells,
+     * mixing every guard and detection type, with a key and door pair per thousand cells
+     */
+    private static String writeSynthetic(int size) throws IOException {
+        LevelGenerator generator = new LevelGenerator(size, size, SYNTHETIC_SEED + size);
+        generator.setGuardCount((size * size) / 40);
+        generator.setLockCount((size * size) / 1000);
+        File file = File.createTempFile("synthetic-" + size + "-", ".csv");
+        file.deleteOnExit();
+        generator.write(file.getPath());
+        return file.getPath();
+    }
+}
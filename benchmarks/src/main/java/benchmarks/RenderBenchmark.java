@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JLabel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stealth_game.BoardSnapshot;
+import stealth_game.GameEngine;
+import stealth_game.GamePanel;
+import stealth_game.PlayerInput;
+
+/**
+ * Painting frames of a GamePanel into an offscreen image, with no display (the fork runs with
+ * java.awt.headless=true). A scripted list of moves is played on the level, restarting it
+ * whenever it is won or lost:
+ *    - turnFrame paints the first frame after each move, which also rebuilds the movables from
+ *      the new snapshot (the move itself is played outside the measurement)
+ *    - repaintFrame paints the same turn again, as an animation tick or an exposed window would
+ * Frame times are sampled, so JMH reports their percentiles; add -prof gc for allocations.
+ *
+ * Assets are loaded relative to the working directory, so this must be run from the repository
+ * root. Speculative play is turned off, so the engine is idle while frames are painted
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dstealth.speculate=false"})
+public class RenderBenchmark {
+
+    // the moves played, in a loop: a square walk, then a wait and a step each way
+    private static final PlayerInput[] SCRIPT = {
+        PlayerInput.RIGHT, PlayerInput.RIGHT, PlayerInput.RIGHT, PlayerInput.RIGHT,
+        PlayerInput.DOWN, PlayerInput.DOWN, PlayerInput.DOWN, PlayerInput.DOWN,
+        PlayerInput.LEFT, PlayerInput.LEFT, PlayerInput.LEFT, PlayerInput.LEFT,
+        PlayerInput.UP, PlayerInput.UP, PlayerInput.UP, PlayerInput.UP,
+        PlayerInput.WAIT, PlayerInput.RIGHT, PlayerInput.DOWN, PlayerInput.LEFT, PlayerInput.UP
+    };
+
+    /**
+     * A panel showing the level, sized to its preferred size, and the image frames are painted
+     * into
+     */
+    @State(Scope.Thread)
+    public static class PanelState {
+
+        // whether the level is dark (darkness is set by levelParser.json, not the level file)
+        @Param({"false"})
+        public boolean dark;
+
+        GamePanel panel;
+        GameEngine engine;
+        BufferedImage frame;
+        int step;
+
+        @Setup(Level.Trial)
+        public void buildPanel(LevelState level) {
+            if (!new File("files/assets").isDirectory()) {
+                throw new IllegalStateException("Render benchmarks load assets from files/assets,"
+                        + " and must be run from the repository root");
+            }
+            panel = new GamePanel(level.path, new JLabel());
+            engine = panel.getEngine();
+            if (dark) {
+                panel.setCurrentLevel(level.path, 0, true, 6, 0);
+                engine.awaitIdle();
+            }
+            Dimension size = panel.getPreferredSize();
+            panel.setSize(size);
+            frame = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+            step = 0;
+        }
+
+        // paints one frame, as Swing would
+        BufferedImage paint() {
+            Graphics2D g = frame.createGraphics();
+            panel.paint(g);
+            g.dispose();
+            return frame;
+        }
+    }
+
+    /**
+     * Plays the next scripted move before each measured frame
+     */
+    @State(Scope.Thread)
+    public static class MoveState {
+
+        @Setup(Level.Invocation)
+        public void playMove(PanelState state) {
+            BoardSnapshot current = state.engine.getSnapshot();
+            if (current.isVictory() || current.isDefeat()) {
+                state.engine.reset();
+            } else {
+                state.engine.submit(SCRIPT[state.step % SCRIPT.length]);
+                state.step += 1;
+            }
+            state.engine.awaitIdle();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage turnFrame(PanelState state, MoveState move) {
+        return state.paint();
+    }
+
+    @Benchmark
+    public BufferedImage repaintFrame(PanelState state) {
+        return state.paint();
+    }
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import stealth_game.Direction;
+import stealth_game.GameBoard;
+
+/**
+ * Playing turns: incrementTurn alone (moving every guard), and moveObject for the player (a
+ * legality check, the move itself, then the turn). The board is rebuilt for every iteration, and
+ * plays on regardless of victory or defeat, so each iteration measures the same stretch of turns
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TurnBenchmark {
+
+    private GameBoard board;
+
+    // the player walks in one direction until blocked, then turns to the next
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private Direction pace;
+
+    @Setup(Level.Iteration)
+    public void buildBoard(LevelState level) {
+        board = new GameBoard(level.path, false, 0, 1L);
+        pace = Direction.RIGHT;
+    }
+
+    @Benchmark
+    public int incrementTurn() {
+        board.incrementTurn();
+        return board.getTurn();
+    }
+
+    @Benchmark
+    public Boolean moveObject() {
+        Boolean moved = board.moveObject(board.getPlayer(), pace);
+        if (!moved) {
+            // a blocked player waits out the turn (so guards never freeze around it), and
+            // tries another direction next time
+            board.incrementTurn();
+            pace = DIRECTIONS[(pace.ordinal() + 1) % DIRECTIONS.length];
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,89 @@
+package stealth_game;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads image assets and keeps pre-scaled copies of them. Each file is read from disk once, and
+ * each (file, size) pair is scaled once with high quality interpolation, so that sprites can be
+ * drawn with a 1:1 copy instead of being rescaled on every draw. Scaled copies are kept for every
+ * size requested, which lets the display switch back and forth between zoom levels for free.
+ */
+public class AssetCache {
+
+    private HashMap<String, BufferedImage> originals;
+    private HashMap<String, BufferedImage> scaled;
+
+    public AssetCache() {
+        originals = new HashMap<String, BufferedImage>();
+        scaled = new HashMap<String, BufferedImage>();
+    }
+
+    /**
+     * Retrieves an image scaled to a square of the requested size, scaling and caching it
+     * on first use
+     *
+     * @param filePath -> path of the image asset
+     * @param size -> side length of the scaled image, in device pixels
+     * @return BufferedImage -> the scaled image, or null if the asset could not be loaded
+     */
+    public BufferedImage getImage(String filePath, int size) {
+        String key = filePath + "@" + size;
+        BufferedImage img = scaled.get(key);
+        if (img == null) {
+            BufferedImage original = getOriginal(filePath);
+            if (original == null) {
+                return null;
+            }
+            img = scaleImage(original, size);
+            scaled.put(key, img);
+        }
+        return img;
+    }
+
+    /**
+     * Reads an asset from disk, or returns the copy read earlier
+     */
+    private BufferedImage getOriginal(String filePath) {
+        BufferedImage original = originals.get(filePath);
+        if (original == null) {
+            try {
+                original = ImageIO.read(new File(filePath));
+                originals.put(filePath, original);
+            } catch (IOException e) {
+                System.out.println("Internal Error:" + e.getMessage());
+            }
+        }
+        return original;
+    }
+
+    /**
+     * Scales an image into a new image laid out for fast drawing on the current screen
+     */
+    private BufferedImage scaleImage(BufferedImage original, int size) {
+        BufferedImage img;
+        if (GraphicsEnvironment.isHeadless()) {
+            img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+        } else {
+            GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            img = config.createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+        }
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(original, 0, 0, size, size, null);
+        g.dispose();
+        return img;
+    }
+}
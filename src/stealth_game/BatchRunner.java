@@ -0,0 +1,282 @@
+package stealth_game;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Command line runner for levels and replays, with no display: Swing is never touched, so it runs
+ * on headless build machines. Each argument is a level (.csv), a replay (.sjr), or a folder
+ * searched for both. Every file is run on a pool of threads:
+ *    - a level is played by a seeded random player (one of the five inputs at random each
+ *      move) until it is won or lost, or a number of turns have passed
+ *    - a replay is checked by ReplayVerifier
+ * A line is printed per run (in argument order) with its outcome, turns and wall time, and then
+ * a summary with the total turns played per second of wall time. A run that throws, even an Error
+ * such as running out of memory, is reported as failed and the rest of the batch carries on. The
+ * exit status is 1 if any level cannot be loaded or any replay fails to verify.
+ *
+ * Usage:
+ *    java -cp <classes> stealth_game.BatchRunner [options] <level, replay or folder>...
+ * Options:
+ *    -threads <n>  threads to run on (default: one per processor)
+ *    -turns <n>    most turns to play each level for (default 1000)
+ *    -seed <n>     seed for the random players and the levels' guards (default 0)
+ *    -repeat <n>   runs of each file (each level run gets the next seed; default 1)
+ *    -levels <dir> folder level paths in replays are resolved against (default: the working
+ *                  directory)
+ */
+public class BatchRunner {
+
+    // defaults
+    private static final int DEFAULT_TURNS = 1000;
+
+    // run settings
+    private int threads;
+    private int maxTurns;
+    private long seed;
+    private int repeat;
+    private ReplayVerifier verifier;
+
+    // where results are printed
+    private PrintStream out;
+
+    /**
+     * @param threads -> threads to run on
+     * @param maxTurns -> most turns to play each level for
+     * @param seed -> seed for the first run of each level
+     * @param repeat -> runs of each file
+     * @param levelDir -> folder level paths in replays are resolved against
+     * @param out -> where each run's result and the summary are printed
+     */
+    public BatchRunner(int threads, int maxTurns, long seed, int repeat, File levelDir,
+            PrintStream out) {
+        this.threads = threads;
+        this.maxTurns = maxTurns;
+        this.seed = seed;
+        this.repeat = repeat;
+        this.out = out;
+        verifier = new ReplayVerifier(levelDir);
+    }
+
+    /**
+     * The result of one run
+     */
+    private static class Result {
+        String name;
+        String outcome;
+        Boolean failed;
+        int turns;
+        long nanos;
+    }
+
+    /**********************************************************************************
+     * RUNS
+     **********************************************************************************/
+
+    /**
+     * Plays a level with a seeded random player
+     *
+     * @param filePath -> path of the level's CSV file
+     * @param runSeed -> seed for the player and the level's guards
+     */
+    Result playLevel(String filePath, long runSeed) {
+        Result result = new Result();
+        result.name = filePath;
+        long start = System.nanoTime();
+        try {
+            GameBoard board = new GameBoard(filePath, false, 6, runSeed);
+            Random player = new Random(runSeed);
+            PlayerInput[] inputs = PlayerInput.values();
+
+            // blocked moves don't pass a turn, so inputs are capped too
+            int inputsLeft = maxTurns * 8;
+            while ((board.getTurn() < maxTurns) && (!board.isVictory()) && (!board.isDefeat())
+                    && (inputsLeft > 0)) {
+                GameEngine.play(board, inputs[player.nextInt(inputs.length)]);
+                inputsLeft -= 1;
+            }
+            result.turns = board.getTurn();
+            result.outcome = ReplayVerifier.outcome(board.isVictory(), board.isDefeat());
+            result.failed = false;
+        } catch (IllegalArgumentException e) {
+            result.outcome = "FAILED: cannot be loaded: " + e.getMessage();
+            result.failed = true;
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Checks a replay
+     *
+     * @param filePath -> path of the replay file
+     */
+    Result checkReplay(String filePath) {
+        Result result = new Result();
+        result.name = filePath;
+        long start = System.nanoTime();
+        try {
+            Replay replay = Replay.load(filePath);
+            String problem = verifier.verify(replay);
+            if (problem == null) {
+                result.outcome = "verified "
+                        + ReplayVerifier.outcome(replay.isVictory(), replay.isDefeat());
+                result.turns = replay.getTurns();
+                result.failed = false;
+            } else {
+                result.outcome = "FAILED: " + problem;
+                result.failed = true;
+            }
+        } catch (IOException e) {
+            result.outcome = "FAILED: unreadable: " + e.getMessage();
+            result.failed = true;
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Reports a run that threw
+     *
+     * @param filePath -> path of the level or replay run
+     * @param cause -> what was thrown
+     */
+    private static Result thrown(String filePath, Throwable cause) {
+        Result result = new Result();
+        result.name = filePath;
+        result.outcome = "FAILED: " + cause;
+        result.failed = true;
+        return result;
+    }
+
+    /**
+     * Runs every file on the pool, printing each result in order and then the summary
+     *
+     * @param files -> levels and replays to run
+     * @return Boolean -> whether every run succeeded
+     */
+    public Boolean run(ArrayList<File> files) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread worker = new Thread(r, "StealthJava-batch");
+                worker.setDaemon(true);
+                return worker;
+            }
+        });
+        long start = System.nanoTime();
+        ArrayList<Future<Result>> results = new ArrayList<Future<Result>>();
+        for (int i = 0; i < repeat; i++) {
+            final long runSeed = seed + i;
+            for (final File file : files) {
+                results.add(pool.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        try {
+                            if (file.getName().endsWith(".sjr")) {
+                                return checkReplay(file.getPath());
+                            }
+                            return playLevel(file.getPath(), runSeed);
+                        } catch (Throwable e) {
+                            // a run that throws (even out of memory) is reported as a failure,
+                            // not a crash of the batch
+                            return thrown(file.getPath(), e);
+                        }
+                    }
+                }));
+            }
+        }
+
+        long turns = 0;
+        int failures = 0;
+        int index = 0;
+        for (Future<Result> future : results) {
+            Result result;
+            try {
+                result = future.get();
+            } catch (ExecutionException e) {
+                result = thrown(files.get(index % files.size()).getPath(), e.getCause());
+            }
+            index += 1;
+            out.println(String.format("%-50s %-24s %7d turns %9.2f ms", result.name,
+                    result.outcome, result.turns, result.nanos / 1e6));
+            turns += result.turns;
+            if (result.failed) {
+                failures += 1;
+            }
+        }
+        pool.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.println(String.format("%d runs on %d threads, %d failed: %d turns in %.2f s"
+                + " (%.0f turns/s)", results.size(), threads, failures, turns, seconds,
+                turns / seconds));
+        return failures == 0;
+    }
+
+    /**
+     * Adds a file, or every level and replay under a folder, sorted by name
+     */
+    private static void collect(File file, ArrayList<File> files) {
+        if (file.isDirectory()) {
+            File[] contents = file.listFiles();
+            Arrays.sort(contents);
+            for (File child : contents) {
+                if (child.isDirectory() || child.getName().endsWith(".csv")
+                        || child.getName().endsWith(".sjr")) {
+                    collect(child, files);
+                }
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int turns = DEFAULT_TURNS;
+        long seed = 0;
+        int repeat = 1;
+        File levelDir = new File(".");
+        ArrayList<File> files = new ArrayList<File>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-turns")) {
+                    turns = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-seed")) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("-repeat")) {
+                    repeat = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-levels")) {
+                    levelDir = new File(args[++i]);
+                } else {
+                    collect(new File(args[i]), files);
+                }
+            }
+        } catch (RuntimeException e) {
+            // a missing or malformed option value
+            files.clear();
+        }
+        if (files.isEmpty() || (threads < 1) || (repeat < 1)) {
+            System.err.println("Usage: BatchRunner [-threads n] [-turns n] [-seed n] [-repeat n]"
+                    + " [-levels dir] <level, replay or folder>...");
+            System.exit(2);
+        }
+        BatchRunner runner = new BatchRunner(threads, turns, seed, repeat, levelDir,
+                System.out);
+        System.exit(runner.run(files) ? 0 : 1);
+    }
+}
@@ -0,0 +1,242 @@
+package stealth_game;
+
+import java.awt.Point;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable copy of everything the display needs from a GameBoard after a turn. Snapshots are
+ * built by the simulation thread (see GameEngine) and handed to the GUI, which only ever reads
+ * snapshots and never touches the live GameBoard.
+ *
+ * The detection zone is not copied. Instead each guard's detection is recorded, and the zone is
+ * rebuilt from it on request -- normally for the cells around the viewport alone, using a spatial
+ * index of the guards built the first time a range is asked for. The index is a GuardStore of the
+ * snapshot's own (the board's store keeps changing), holding the guards in snapshot order.
+ */
+public final class BoardSnapshot {
+
+    // identifies the loaded level (changes when a new level is loaded, but not on reset), and
+    // the board itself (changes on every load or reset)
+    private final int levelId;
+    private final int boardId;
+    private final String levelName;
+
+    // board dimensions and static contents (walls are shared between snapshots of a level)
+    private final int width;
+    private final int height;
+    private final Set<Point> walls;
+    private final Point victorySquare;
+
+    // game status
+    private final int turn;
+    private final boolean victory;
+    private final boolean defeat;
+
+    // movable objects
+    private final Point playerLocation;
+    private final int[] guardX;
+    private final int[] guardY;
+    private final GuardType[] guardTypes;
+
+    // guard detection (whether guards are watching at all, and each guard's detection), from
+    // which the detection zone is built on request
+    private final boolean guardsWatching;
+    private final int[] guardRadius;
+    private final DetectionType[] guardDetection;
+    private final Direction[] guardFacing;
+    private final SightTable[] guardSight;
+    private final int maxRadius;
+    private GuardStore guardIndex;
+    private int[] nearbyGuards;
+    private Set<Point> detectionZone;
+
+    // keys/doors, and vision
+    private final Map<Point, Integer> doors;
+    private final Map<Point, Integer> keys;
+    private final boolean darkLevel;
+    private final int visionRadius;
+
+    /**
+     * Copies the current state of a GameBoard. Must be called from the thread that owns the
+     * board
+     *
+     * @param gb -> the board to copy
+     * @param levelId -> identifier of the loaded level
+     * @param boardId -> identifier of the board instance
+     * @param walls -> the level's walls, already wrapped as an unmodifiable set
+     */
+    public BoardSnapshot(GameBoard gb, int levelId, int boardId, Set<Point> walls) {
+        this.levelId = levelId;
+        this.boardId = boardId;
+        this.width = gb.getWidth();
+        this.height = gb.getHeight();
+        this.walls = walls;
+        this.victorySquare = gb.getVictorySquare();
+        this.turn = gb.getTurn();
+        this.victory = gb.isVictory();
+        this.defeat = gb.isDefeat();
+        this.playerLocation = gb.getPlayerLocation();
+
+        // copy guard positions and types, in the board's iteration order
+        HashSet<Guard> guards = gb.getGuards();
+        guardX = new int[guards.size()];
+        guardY = new int[guards.size()];
+        guardTypes = new GuardType[guards.size()];
+        guardRadius = new int[guards.size()];
+        guardDetection = new DetectionType[guards.size()];
+        guardFacing = new Direction[guards.size()];
+        guardSight = new SightTable[guards.size()];
+        int largestRadius = 0;
+        Iterator<Guard> guardIter = guards.iterator();
+        for (int i = 0; guardIter.hasNext(); i++) {
+            Guard guard = guardIter.next();
+            Point guardLoc = guard.getLocation();
+            guardX[i] = (int) guardLoc.getX();
+            guardY[i] = (int) guardLoc.getY();
+            guardTypes[i] = guard.getGuardType();
+            guardRadius[i] = guard.getDetectionRadius();
+            guardDetection[i] = guard.getDetectionType();
+            guardFacing[i] = guard.getLastMove();
+            if (guardDetection[i] == DetectionType.SIGHT) {
+                // (tables are immutable, so the board's cached table can be shared)
+                guardSight[i] = gb.getSightTable(guardX[i], guardY[i], guardRadius[i]);
+            }
+            largestRadius = Math.max(largestRadius, guardRadius[i]);
+        }
+        this.maxRadius = largestRadius;
+        this.guardsWatching = gb.areGuardsWatching();
+
+        // the board getters already return copies, which are frozen here
+        this.doors = Collections.unmodifiableMap(new HashMap<Point, Integer>(gb.getDoors()));
+        this.keys = Collections.unmodifiableMap(new HashMap<Point, Integer>(gb.getKeys()));
+        this.darkLevel = gb.getDarkness();
+        this.visionRadius = gb.getVisionRadius();
+        this.levelName = gb.getLevelName();
+    }
+
+    /**********************************************************************************
+     * GETTERS
+     **********************************************************************************/
+    public int getLevelId() {
+        return this.levelId;
+    }
+
+    public String getLevelName() {
+        return this.levelName;
+    }
+
+    public int getBoardId() {
+        return this.boardId;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public Set<Point> getWalls() {
+        return this.walls;
+    }
+
+    public Point getVictorySquare() {
+        return (Point) this.victorySquare.clone();
+    }
+
+    public int getTurn() {
+        return this.turn;
+    }
+
+    public boolean isVictory() {
+        return this.victory;
+    }
+
+    public boolean isDefeat() {
+        return this.defeat;
+    }
+
+    public Point getPlayerLocation() {
+        return (Point) this.playerLocation.clone();
+    }
+
+    public int getGuardCount() {
+        return this.guardTypes.length;
+    }
+
+    public Point getGuardLocation(int index) {
+        return new Point(this.guardX[index], this.guardY[index]);
+    }
+
+    public GuardType getGuardType(int index) {
+        return this.guardTypes[index];
+    }
+
+    // builds the full detection zone on first request
+    public synchronized Set<Point> getDetectionZone() {
+        if (this.detectionZone == null) {
+            this.detectionZone = Collections.unmodifiableSet(
+                    getDetectionZone(0, 0, this.width - 1, this.height - 1));
+        }
+        return this.detectionZone;
+    }
+
+    /**
+     * Builds the part of the detection zone inside an inclusive range of cells, from the guards
+     * whose detection could reach that range
+     *
+     * @param minX, minY -> top left cell of the range
+     * @param maxX, maxY -> bottom right cell of the range
+     * @return Set<Point> -> the watched cells within the range
+     */
+    public synchronized Set<Point> getDetectionZone(int minX, int minY, int maxX, int maxY) {
+        HashSet<Point> zone = new HashSet<Point>();
+        if (!this.guardsWatching) {
+            return zone;
+        }
+        if (this.guardIndex == null) {
+            this.guardIndex = new GuardStore();
+            for (int i = 0; i < this.guardTypes.length; i++) {
+                this.guardIndex.add(this.guardTypes[i], this.guardX[i], this.guardY[i],
+                        this.guardRadius[i], this.guardDetection[i]);
+            }
+            this.guardIndex.enableIndex(this.width, this.height);
+            this.nearbyGuards = new int[this.guardTypes.length];
+        }
+        int clipMinX = Math.max(0, minX);
+        int clipMinY = Math.max(0, minY);
+        int clipMaxX = Math.min(this.width - 1, maxX);
+        int clipMaxY = Math.min(this.height - 1, maxY);
+        int nearby = this.guardIndex.query(clipMinX - this.maxRadius, clipMinY - this.maxRadius,
+                clipMaxX + this.maxRadius, clipMaxY + this.maxRadius, this.nearbyGuards);
+        for (int n = 0; n < nearby; n++) {
+            int i = this.nearbyGuards[n];
+            DetectionStencil.addCells(zone, this.guardX[i], this.guardY[i], this.guardRadius[i],
+                    this.guardDetection[i], this.guardFacing[i], this.guardSight[i], clipMinX,
+                    clipMinY, clipMaxX, clipMaxY);
+        }
+        return zone;
+    }
+
+    public Map<Point, Integer> getDoors() {
+        return this.doors;
+    }
+
+    public Map<Point, Integer> getKeys() {
+        return this.keys;
+    }
+
+    public boolean isDark() {
+        return this.darkLevel;
+    }
+
+    public int getVisionRadius() {
+        return this.visionRadius;
+    }
+}
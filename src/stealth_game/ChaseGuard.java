@@ -1,7 +1,6 @@
 package stealth_game;
 
 import java.awt.Point;
-import java.util.HashSet;
 
 /**
  * @author Austin Herrick
@@ -12,152 +11,125 @@ import java.util.HashSet;
  * Chase guards move directly toward the player, minimizing X or Y distance, depending
  * on which is larger. If no legal move can bring the guard closer to the player, they don't
  * move.
+ * 
+ * Seeking chase guards instead follow a DistanceField shared by every seeker on the board,
+ * stepping onto any neighboring cell that is one move closer to the player by walking distance.
+ * This lets them find their way around walls rather than getting stuck behind them.
+ * 
+ * The guard's state lives in a GuardStore; this object is a view onto one index of it.
  *
  */
 public class ChaseGuard implements Guard {
 
-    // Core information
-    private Point location;
-    private int detectionRadius;
-    private DetectionType detectionType;
-    
-    // Directional information
-    private Direction lastMove;
-    private Direction attemptedDirection;
-    private HashSet<Direction> hDirections;
-    private Point playerLocation;
-    private int failCount;
+    // the store holding this guard's state, and the guard's index within it
+    private GuardStore store;
+    private int index;
     
     /**********************************************************************************
      * Constructor and Setup Methods
      **********************************************************************************/
 
     /**
-     * Sets initial location, parses detection string to find radius/type, initalizes valid 
-     * directions, and initializes lastMove to UP (used for Breath detection to 
-     * find "facing")
+     * Creates a standalone guard, backed by a store of its own
      */
     public ChaseGuard(Point locationInitial, String guardBuilder) {
-        location = locationInitial;
-        parseDetection(guardBuilder);
-        lastMove = Direction.UP;
-        failCount = 0;
-        playerLocation = new Point(0, 0);
-        
-        // define horizontal direction category
-        hDirections = new HashSet<Direction>();
-        hDirections.add(Direction.LEFT);
-        hDirections.add(Direction.RIGHT);
+        this(new GuardStore(), locationInitial, guardBuilder, null);
+    }
+    
+    /**
+     * Creates a standalone seeking guard, which moves along the shortest walking path to 
+     * the player
+     * 
+     * @param field -> the distance field shared by all seekers on the board
+     */
+    public ChaseGuard(Point locationInitial, String guardBuilder, DistanceField field) {
+        this(new GuardStore(), locationInitial, guardBuilder, field);
     }
     
     /**
-     * Parses the detection radius and type of the guard, which is stored after the first
-     * semicolon
+     * Adds a guard to a store: sets initial location, and parses detection string to find 
+     * radius/type (lastMove starts as UP, which is used for Breath detection to find "facing")
+     * 
+     * @param field -> the distance field to seek along, or null for a plain chase guard
      */
-    private void parseDetection(String guardBuilder) {
+    public ChaseGuard(GuardStore guardStore, Point locationInitial, String guardBuilder, 
+            DistanceField field) {
+        store = guardStore;
         String[] segments = guardBuilder.split(";");
         String detectInfo = segments[segments.length - 1];
-        detectionRadius = Character.getNumericValue(detectInfo.charAt(1));
-        Character detectType = detectInfo.charAt(0);
-        if (detectType.equals('C')) {
-            detectionType = DetectionType.CIRCLE;
-        } else if (detectType.equals('B')) {
-            detectionType = DetectionType.BREATH;
+        index = store.add(GuardType.CHASE, (int) locationInitial.getX(), 
+                (int) locationInitial.getY(), Character.getNumericValue(detectInfo.charAt(1)),
+                parseDetectionType(detectInfo.charAt(0)));
+        if (field != null) {
+            store.setSeeking(index, field);
         }
     }
+    
+    /**
+     * Creates a view onto a guard already in a store (used when a board is forked)
+     */
+    public ChaseGuard(GuardStore guardStore, int guardIndex) {
+        store = guardStore;
+        index = guardIndex;
+    }
+    
+    /**
+     * Parses the detection type of the guard, which is stored after the first semicolon
+     */
+    private DetectionType parseDetectionType(Character detectType) {
+        if (detectType.equals('B')) {
+            return DetectionType.BREATH;
+        } else if (detectType.equals('L')) {
+            return DetectionType.SIGHT;
+        }
+        return DetectionType.CIRCLE;
+    }
 
     /**********************************************************************************
      * Movement Handling
      **********************************************************************************/
     /**
-     * Finds the intended move direction of a guard, generated at random
-     * Help for random assignment from:
-     * https://stackoverflow.com/questions/124671/picking-a-random-element-from-a-set
-     * 
-     * attemptedDirection is stored a class attribute in case lastMove needs to be updated.
-     * Note that the class doesn't know if it should be yet, because move validity is handled
-     * by the GameBoard.
+     * Finds the intended move direction of a guard, reducing the larger axis of distance
+     * to the player. Seeking guards follow the distance field instead, unless the player
+     * cannot be reached by walking (in which case they chase directly, like other guards)
      *
      * @return intended direction of movement
      */
     @Override
 	public Direction getMoveDirection() {
-        
-        // find relative x/y distances between Player/Guard
-        int xDistance = (int) (location.getX() - playerLocation.getX());
-        int yDistance = (int) (location.getY() - playerLocation.getY());
-        
-        // if previous attempt failed, reset initial attempted axis to 0
-        if (failCount == 1) {
-            if (hDirections.contains(attemptedDirection)) {
-                xDistance = 0;
-            } else {
-                yDistance = 0;
-            }
-            
-            // if both axes are zero (b/c guard was aligned on one-axis and unable to move
-            // along the other), return null direction to skip
-            if ((xDistance == 0) & (yDistance == 0)) {
-//                failCount = 0;
-                return null;
-            }
-        }
-       
-        
-        if (Math.abs(xDistance) > Math.abs(yDistance)) {
-            if (xDistance >= 0) {
-                attemptedDirection = Direction.LEFT;
-            } else {
-                attemptedDirection = Direction.RIGHT;
-            }
-        } else {
-            if (yDistance >= 0) {
-                attemptedDirection = Direction.UP;
-            } else {
-                attemptedDirection = Direction.DOWN;
-            }
-        }
-        
-        return attemptedDirection;
+        return store.getMoveDirection(index);
     }
     
     /**
-     * If move succeeded, set lastMove to direction of attempted movement and reset validDirections
+     * If move succeeded, set lastMove to direction of attempted movement and reset the
+     * failure count
      */
     @Override
 	public void moveSucceeded() {
-        lastMove = attemptedDirection;
-        failCount = 0;
+        store.moveSucceeded(index);
     }
     
     /**
-     * If move failed, remove attempted direction from set and try again (provided set is
-     * non-empty)
+     * If move failed, try the other axis once (or, for seekers, the other steps toward the
+     * player), then give up for this turn
      */
     @Override
     public Direction moveFailed() {
-        failCount += 1;
-        if (failCount < 2) {
-            getMoveDirection();
-        } else {
-            failCount = 0;
-            return null;
-        }
-        return attemptedDirection;
-
+        return store.moveFailed(index);
     }
     
+
     /**********************************************************************************
      * SETTER
      **********************************************************************************/
     @Override
 	public void updateLocation(Point newLoc) {
-        location = newLoc;
+        store.setLocation(index, (int) newLoc.getX(), (int) newLoc.getY());
     }
     
     @Override
 	public void setPlayerLocation(Point playerLoc) {
-        playerLocation = playerLoc;
+        store.setPlayerLocation((int) playerLoc.getX(), (int) playerLoc.getY());
     }
     
     /**********************************************************************************
@@ -165,21 +137,26 @@ public class ChaseGuard implements Guard {
      **********************************************************************************/
     @Override
     public Direction getLastMove() {
-        return this.lastMove;
+        return store.getLastMove(index);
     }
     
     @Override
     public int getDetectionRadius() {
-        return this.detectionRadius;
+        return store.getDetectionRadius(index);
     }
 
     @Override
     public DetectionType getDetectionType() {
-        return this.detectionType;
+        return store.getDetectionType(index);
+    }
+    
+    @Override
+    public GuardType getGuardType() {
+        return GuardType.CHASE;
     }
     
     @Override
     public Point getLocation() {
-        return (Point) this.location.clone();
+        return store.getLocation(index);
     }
 }
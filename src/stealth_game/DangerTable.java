@@ -0,0 +1,296 @@
+package stealth_game;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * A space-time table of watched cells, for boards whose only guards are RouteGuards. Such guards
+ * move independently of the player (unless the player blocks one), so every guard returns to its
+ * start after twice its route length, and the whole board repeats with the least common multiple
+ * of those periods. The table stores the detection zone of each turn in that cycle as a row of
+ * bits in one flat array, which turns "is this cell watched at turn t" into a single lookup.
+ *
+ * Predictions assume the player stands still, blocking any guard that tries to enter their cell.
+ * The table is built without the player (who moves after it is built), so it also records where
+ * guards stand each turn: it only answers while no guard would walk into the player's cell before
+ * the turn asked about (see isEntered), and while no guard has actually been blocked. GameBoard
+ * checks both, and otherwise falls back to simulate(), which steps the guards forward from their
+ * current state with the player in place.
+ */
+public class DangerTable {
+
+    // largest tables built, in bits (both tables, rounded up to whole words per turn): 2 MB in
+    // all, held in two arrays
+    private static final long MAX_TABLE_BITS = 1L << 24;
+
+    // most detection cells marked while building (each guard's diamond, every turn of the
+    // cycle), which bounds the build at under a tenth of a second however small the board
+    // (a few tenths before the JIT has compiled it)
+    private static final long MAX_BUILD_CELLS = 1L << 20;
+
+    // board width, turns in the repeating cycle, and words per turn in each table
+    private int width;
+    private int period;
+    private int words;
+
+    // detected cells of turn 0, then of turns 1 through period (turn t > 0 uses row
+    // 1 + ((t - 1) mod period), since guards only face along their route after moving once);
+    // cell c of row r is bit (c mod 64) of word (r * words + c / 64)
+    private long[] phases;
+
+    // cells stood on by guards, for the same turns and laid out the same way
+    private long[] positions;
+
+    /**
+     * Builds the table for a board, or returns null if the board cannot have one: if it has
+     * guards other than RouteGuards, if its cycle is too long to store or build quickly, or if guards block
+     * each other (or run into walls) during the cycle
+     *
+     * @param gb -> the board, whose guards have not yet been blocked
+     * @return DangerTable -> the table, or null
+     */
+    public static DangerTable build(GameBoard gb) {
+        ArrayList<RouteGuard> routeGuards = new ArrayList<RouteGuard>();
+        Iterator<Guard> guardIter = gb.getGuards().iterator();
+        long period = 1;
+        long cellsPerTurn = 0;
+        int words = ((gb.getWidth() * gb.getHeight()) + 63) / 64;
+        while (guardIter.hasNext()) {
+            Guard guard = guardIter.next();
+            if (!(guard instanceof RouteGuard)) {
+                return null;
+            }
+            RouteGuard routeGuard = (RouteGuard) guard;
+            routeGuards.add(routeGuard);
+            period = lcm(period, routeGuard.getRoute().getPeriod());
+            int radius = routeGuard.getDetectionRadius();
+            cellsPerTurn += (2L * radius * (radius + 1)) + 1;
+            if ((period * cellsPerTurn > MAX_BUILD_CELLS) || ((2 * (period + 1) * words * 64L) > MAX_TABLE_BITS)) {
+                return null;
+            }
+        }
+
+        // walk the guards through one full cycle from their starting positions
+        Simulation sim = new Simulation(gb, routeGuards, true);
+        long[] phases = new long[((int) period + 1) * words];
+        long[] positions = new long[((int) period + 1) * words];
+        sim.detect(phases, 0);
+        sim.positions(positions, 0);
+        for (int turn = 1; turn <= period; turn++) {
+            if (!sim.step()) {
+                return null;
+            }
+            sim.detect(phases, turn * words);
+            sim.positions(positions, turn * words);
+        }
+        return new DangerTable(gb.getWidth(), (int) period, words, phases, positions);
+    }
+
+    private DangerTable(int width, int period, int words, long[] phases, long[] positions) {
+        this.width = width;
+        this.period = period;
+        this.words = words;
+        this.phases = phases;
+        this.positions = positions;
+    }
+
+    // reads a cell's bit from a turn's row of a table
+    private boolean get(long[] table, long turn, int cell) {
+        return ((table[(phaseOf(turn) * words) + (cell >>> 6)] >>> cell) & 1L) != 0;
+    }
+
+    // the entry used for a turn
+    private int phaseOf(long turn) {
+        return (turn == 0) ? 0 : (int) (1 + ((turn - 1) % period));
+    }
+
+    /**
+     * Checks whether a cell is watched at a turn, assuming no guard is ever blocked
+     *
+     * @param xCoord -> x coordinate of the cell
+     * @param yCoord -> y coordinate of the cell
+     * @param turn -> the turn, counted from the start of the level
+     * @return Boolean -> whether the cell is inside the detection zone at that turn
+     */
+    public Boolean isWatched(int xCoord, int yCoord, long turn) {
+        return get(phases, turn, (yCoord * width) + xCoord);
+    }
+
+    /**
+     * Checks whether any guard's route enters a cell after one turn, up to and including a later
+     * turn. If the player stands there, that guard would be blocked, and the table no longer
+     * holds from then on
+     *
+     * @param xCoord -> x coordinate of the cell
+     * @param yCoord -> y coordinate of the cell
+     * @param fromTurn -> the current turn
+     * @param toTurn -> the last turn to check
+     * @return Boolean -> whether a guard stands on the cell at any turn in between
+     */
+    public Boolean isEntered(int xCoord, int yCoord, long fromTurn, long toTurn) {
+        // positions repeat with the cycle, so no more than one cycle need be checked
+        long lastTurn = Math.min(toTurn, fromTurn + period);
+        int cell = (yCoord * width) + xCoord;
+        for (long turn = fromTurn + 1; turn <= lastTurn; turn++) {
+            if (get(positions, turn, cell)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Steps the guards of a board forward from their current state, as GameBoard would with
+     * the player standing still (and blocking guards), and finds the cells watched at the final
+     * turn
+     *
+     * @param gb -> the board (all of whose guards must be RouteGuards)
+     * @param turns -> how many turns to step forward
+     * @return BitSet -> watched cells, indexed by (y * width + x)
+     */
+    public static BitSet simulate(GameBoard gb, int turns) {
+        ArrayList<RouteGuard> routeGuards = new ArrayList<RouteGuard>();
+        Iterator<Guard> guardIter = gb.getGuards().iterator();
+        while (guardIter.hasNext()) {
+            routeGuards.add((RouteGuard) guardIter.next());
+        }
+        Simulation sim = new Simulation(gb, routeGuards, false);
+        for (int i = 0; i < turns; i++) {
+            sim.step();
+        }
+        long[] cells = new long[((gb.getWidth() * gb.getHeight()) + 63) / 64];
+        sim.detect(cells, 0);
+        return BitSet.valueOf(cells);
+    }
+
+    // least common multiple of two cycle lengths
+    private static long lcm(long a, long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            long t = x % y;
+            x = y;
+            y = t;
+        }
+        return (a / x) * b;
+    }
+
+    /**********************************************************************************
+     * Simulation
+     *
+     * A lightweight copy of the guards' state (position, facing, and successful move count),
+     * stepped with the same move rules as GameBoard: guards move one at a time in board
+     * order, and may not enter walls, closed doors, other guards, or the player (when stepping
+     * from the current state; the table leaves the player out, and records guard positions
+     * instead)
+     **********************************************************************************/
+    private static class Simulation {
+        private GameBoard gb;
+        private ArrayList<RouteGuard> guards;
+        private int[] guardX;
+        private int[] guardY;
+        private long[] moveCounts;
+        private Direction[] facing;
+        private HashSet<Point> occupied;
+
+        // the zone being found, reused turn to turn
+        private HashSet<Point> zone;
+
+        /**
+         * @param fromStart -> whether to begin from the guards' starting state (ignoring the
+         *                     player), rather than from their current state
+         */
+        Simulation(GameBoard gb, ArrayList<RouteGuard> guards, Boolean fromStart) {
+            this.gb = gb;
+            this.guards = guards;
+            guardX = new int[guards.size()];
+            guardY = new int[guards.size()];
+            moveCounts = new long[guards.size()];
+            facing = new Direction[guards.size()];
+            occupied = new HashSet<Point>();
+            zone = new HashSet<Point>();
+            for (int i = 0; i < guards.size(); i++) {
+                RouteGuard guard = guards.get(i);
+                Point loc = fromStart ? guard.getStartLocation() : guard.getLocation();
+                guardX[i] = (int) loc.getX();
+                guardY[i] = (int) loc.getY();
+                moveCounts[i] = fromStart ? 0 : guard.getMoveCount();
+                facing[i] = fromStart ? Direction.UP : guard.getLastMove();
+                occupied.add(loc);
+            }
+            if (!fromStart) {
+                occupied.add(gb.getPlayerLocation());
+            }
+        }
+
+        /**
+         * Moves every guard one step along its route
+         *
+         * @return Boolean -> whether every guard's move succeeded
+         */
+        Boolean step() {
+            Boolean allMoved = true;
+            for (int i = 0; i < guards.size(); i++) {
+                Direction move = guards.get(i).getRoute().getMove(moveCounts[i]);
+                Point current = new Point(guardX[i], guardY[i]);
+                Point next = new Point(guardX[i], guardY[i]);
+                if (move == Direction.UP) {
+                    next.translate(0, -1);
+                } else if (move == Direction.DOWN) {
+                    next.translate(0, 1);
+                } else if (move == Direction.LEFT) {
+                    next.translate(-1, 0);
+                } else {
+                    next.translate(1, 0);
+                }
+
+                // walls, doors, and cells off the board are never legal
+                String contents = gb.getElement((int) next.getX(), (int) next.getY());
+                if ((contents == null) || contents.equals("W") || contents.equals("D")
+                        || occupied.contains(next)) {
+                    allMoved = false;
+                    continue;
+                }
+                occupied.remove(current);
+                occupied.add(next);
+                guardX[i] = (int) next.getX();
+                guardY[i] = (int) next.getY();
+                moveCounts[i] += 1;
+                facing[i] = move;
+            }
+            return allMoved;
+        }
+
+        /**
+         * Marks the cells the guards stand on, in a row of bits starting at a word of a table
+         */
+        void positions(long[] table, int offset) {
+            for (int i = 0; i < guards.size(); i++) {
+                int cell = (guardY[i] * gb.getWidth()) + guardX[i];
+                table[offset + (cell >>> 6)] |= 1L << cell;
+            }
+        }
+
+        /**
+         * Marks the cells watched by the guards in their current state, in a row of bits
+         * starting at a word of a table
+         */
+        void detect(long[] table, int offset) {
+            zone.clear();
+            for (int i = 0; i < guards.size(); i++) {
+                RouteGuard guard = guards.get(i);
+                gb.addDetection(zone, guardX[i], guardY[i], guard.getDetectionRadius(),
+                        guard.getDetectionType(), facing[i]);
+            }
+            Iterator<Point> zoneIter = zone.iterator();
+            while (zoneIter.hasNext()) {
+                Point cell = zoneIter.next();
+                int index = ((int) cell.getY() * gb.getWidth()) + (int) cell.getX();
+                table[offset + (index >>> 6)] |= 1L << index;
+            }
+        }
+    }
+}
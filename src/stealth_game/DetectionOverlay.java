@@ -0,0 +1,200 @@
+package stealth_game;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Draws the guards' detection zone from a cell mask. The circles are painted once into a cached,
+ * transparent image, and each turn only the cells that entered or left the detection zone are
+ * redrawn or cleared. Painting the overlay is then a single image draw, no matter how many cells
+ * are being watched.
+ *
+ * On boards larger than the screen the cached image only covers a window of cells around the
+ * viewport, and only that window of the detection zone is ever built from the snapshot. The
+ * window is re-centered (and its masks reallocated) once the viewport leaves it; between moves
+ * the window-sized masks are cleared and reused, so an update allocates no masks.
+ */
+public class DetectionOverlay {
+
+    // extra cells cached on each side of the viewport, so small camera moves need no redraw
+    private static final int WINDOW_MARGIN = 16;
+
+    // board dimensions, in cells
+    private int width;
+    private int height;
+    private int cellSize;
+    private int circleSize;
+
+    // latest snapshot, and cells of the board where detection is never shown
+    private BoardSnapshot snapshot;
+    private BitSet hidden;
+
+    // detected cells of the window from the previous update, the mask the next update is built
+    // into (the two are swapped after each update), and the cells which changed between them;
+    // all are indexed within the window
+    private BitSet mask;
+    private BitSet nextMask;
+    private BitSet changed;
+
+    // cached window of the overlay, in cells, and the image holding its circles
+    private int windowX;
+    private int windowY;
+    private int windowWidth;
+    private int windowHeight;
+    private BufferedImage image;
+
+    /**
+     * Creates an empty overlay covering a board of the given size
+     *
+     * @param width -> board width, in cells
+     * @param height -> board height, in cells
+     * @param cellSize -> pixel size of each cell
+     * @param circleSize -> pixel diameter of each detection circle
+     */
+    public DetectionOverlay(int width, int height, int cellSize, int circleSize) {
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        this.circleSize = circleSize;
+        hidden = new BitSet(width * height);
+    }
+
+    /**
+     * Marks cells on which detection is never drawn (walls, which would otherwise be drawn on
+     * top of the overlay)
+     *
+     * @param cells -> the cells to hide
+     */
+    public void hideCells(Set<Point> cells) {
+        Iterator<Point> cellIter = cells.iterator();
+        while (cellIter.hasNext()) {
+            Point cell = cellIter.next();
+            hidden.set(cellIndex((int) cell.getX(), (int) cell.getY()));
+        }
+    }
+
+    /**
+     * Brings the cached image in line with a new snapshot's detection zone. Only cells of the
+     * window whose state changed since the previous update are touched
+     *
+     * @param snapshot -> the snapshot to show detection from
+     */
+    public void update(BoardSnapshot snapshot) {
+        this.snapshot = snapshot;
+        if (image == null) {
+            return;
+        }
+
+        // build the new mask, then find the cells that changed
+        buildMask(nextMask);
+        changed.clear();
+        changed.or(nextMask);
+        changed.xor(mask);
+        BitSet previous = mask;
+        mask = nextMask;
+        nextMask = previous;
+
+        // clear cells that are no longer detected and draw circles on newly detected cells
+        Graphics2D g = image.createGraphics();
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            drawCell(g, windowX + (i % windowWidth), windowY + (i / windowWidth));
+        }
+        g.dispose();
+    }
+
+    // fills a window mask with the detected cells inside the window, from the latest snapshot
+    private void buildMask(BitSet target) {
+        target.clear();
+        if (snapshot == null) {
+            return;
+        }
+        Set<Point> zone = snapshot.getDetectionZone(windowX, windowY,
+                windowX + windowWidth - 1, windowY + windowHeight - 1);
+        Iterator<Point> zoneIter = zone.iterator();
+        while (zoneIter.hasNext()) {
+            Point cell = zoneIter.next();
+            int xCoord = (int) cell.getX();
+            int yCoord = (int) cell.getY();
+            if (!hidden.get(cellIndex(xCoord, yCoord))) {
+                target.set(windowIndex(xCoord, yCoord));
+            }
+        }
+    }
+
+    /**
+     * Makes sure the cached window covers an inclusive range of cells (normally the viewport),
+     * rebuilding the window around that range if it does not
+     *
+     * @param minX, minY -> top left visible cell
+     * @param maxX, maxY -> bottom right visible cell
+     */
+    public void showRange(int minX, int minY, int maxX, int maxY) {
+        if ((image != null) && (minX >= windowX) && (minY >= windowY)
+                && (maxX < windowX + windowWidth) && (maxY < windowY + windowHeight)) {
+            return;
+        }
+
+        // center a new window on the requested range, clamped to the board
+        windowX = Math.max(0, minX - WINDOW_MARGIN);
+        windowY = Math.max(0, minY - WINDOW_MARGIN);
+        windowWidth = Math.min(width, maxX + WINDOW_MARGIN + 1) - windowX;
+        windowHeight = Math.min(height, maxY + WINDOW_MARGIN + 1) - windowY;
+        image = new BufferedImage(Math.max(1, windowWidth * cellSize),
+                Math.max(1, windowHeight * cellSize), BufferedImage.TYPE_INT_ARGB);
+        mask = new BitSet(windowWidth * windowHeight);
+        nextMask = new BitSet(windowWidth * windowHeight);
+        changed = new BitSet(windowWidth * windowHeight);
+        buildMask(mask);
+
+        // redraw every detected cell inside the new window
+        Graphics2D g = image.createGraphics();
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            drawCell(g, windowX + (i % windowWidth), windowY + (i / windowWidth));
+        }
+        g.dispose();
+    }
+
+    /**
+     * Draws the cached overlay at the window's position on the board
+     */
+    public void draw(Graphics g) {
+        if (image != null) {
+            g.drawImage(image, windowX * cellSize, windowY * cellSize, null);
+        }
+    }
+
+    // draws or clears a single cell of the cached window, according to the mask
+    private void drawCell(Graphics2D g, int xCoord, int yCoord) {
+        if ((xCoord < windowX) || (yCoord < windowY) || (xCoord >= windowX + windowWidth)
+                || (yCoord >= windowY + windowHeight)) {
+            return;
+        }
+        int pixelX = (xCoord - windowX) * cellSize;
+        int pixelY = (yCoord - windowY) * cellSize;
+        if (mask.get(windowIndex(xCoord, yCoord))) {
+            int offset = (cellSize - circleSize) / 2;
+            g.setComposite(AlphaComposite.SrcOver);
+            new Circle(pixelX + offset, pixelY + offset, circleSize, Color.YELLOW).draw(g);
+        } else {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(pixelX, pixelY, cellSize, cellSize);
+        }
+    }
+
+    // translates a cell to its position within the board
+    private int cellIndex(int xCoord, int yCoord) {
+        return (yCoord * width) + xCoord;
+    }
+
+    // translates a cell of the window to its position within the window masks
+    private int windowIndex(int xCoord, int yCoord) {
+        return ((yCoord - windowY) * windowWidth) + (xCoord - windowX);
+    }
+}
@@ -0,0 +1,121 @@
+package stealth_game;
+
+import java.awt.Point;
+import java.util.Set;
+
+/**
+ * The shapes of the cells a guard watches, for each detection type. Shapes can either be
+ * walked (adding every watched cell within a clipping rectangle to a zone), or tested for a
+ * single cell, which is all the game logic needs to decide whether the player has been seen.
+ *
+ *    - CIRCLE guards watch every cell within taxicab distance of their radius, except their own
+ *    - BREATH guards watch a widening cone in the direction of their last move: the row (or
+ *      column) i + 1 cells ahead of them is watched out to i cells on either side
+ *    - SIGHT guards watch the CIRCLE diamond, less the cells hidden behind walls and closed
+ *      doors, which is read from the SightTable of the cell they stand on
+ */
+public final class DetectionStencil {
+
+    private DetectionStencil() {
+    }
+
+    /**
+     * Adds the cells watched by a guard to a zone, keeping only cells inside a rectangle (the
+     * board, or part of it)
+     *
+     * @param zone -> the detection zone to add to
+     * @param xCoord, yCoord -> the guard's location
+     * @param radius -> the guard's detection radius
+     * @param type -> the guard's detection type
+     * @param lastMove -> the guard's facing (its last move), used for Breath detection
+     * @param sight -> the cells visible from the guard's location, used for Sight detection
+     * @param minX, minY -> top left cell of the clipping rectangle
+     * @param maxX, maxY -> bottom right cell of the clipping rectangle
+     */
+    public static void addCells(Set<Point> zone, int xCoord, int yCoord, int radius,
+            DetectionType type, Direction lastMove, SightTable sight, int minX, int minY,
+            int maxX, int maxY) {
+        if (type == DetectionType.SIGHT) {
+            sight.addCells(zone, xCoord, yCoord, minX, minY, maxX, maxY);
+        } else if (type == DetectionType.CIRCLE) {
+            // find all points surrounding guard, within taxicab distance of the radius
+            for (int row = Math.max(minY, yCoord - radius);
+                    row <= Math.min(maxY, yCoord + radius); row++) {
+                int span = radius - Math.abs(row - yCoord);
+                for (int col = Math.max(minX, xCoord - span);
+                        col <= Math.min(maxX, xCoord + span); col++) {
+                    // skip the guard's current location
+                    if ((col != xCoord) || (row != yCoord)) {
+                        zone.add(new Point(col, row));
+                    }
+                }
+            }
+        } else if (type == DetectionType.BREATH) {
+            // use last direction, and spread out detection
+            for (int i = 0; i < radius; i++) {
+                for (int offset = -i; offset <= i; offset++) {
+                    int col;
+                    int row;
+                    if (lastMove == Direction.UP) {
+                        col = xCoord + offset;
+                        row = yCoord - (i + 1);
+                    } else if (lastMove == Direction.DOWN) {
+                        col = xCoord + offset;
+                        row = yCoord + (i + 1);
+                    } else if (lastMove == Direction.LEFT) {
+                        col = xCoord - (i + 1);
+                        row = yCoord + offset;
+                    } else {
+                        col = xCoord + (i + 1);
+                        row = yCoord + offset;
+                    }
+                    if ((col >= minX) && (col <= maxX) && (row >= minY) && (row <= maxY)) {
+                        zone.add(new Point(col, row));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a guard watches a single cell (which is assumed to be on the board)
+     *
+     * @param col, row -> the cell to check
+     * @param xCoord, yCoord -> the guard's location
+     * @param radius -> the guard's detection radius
+     * @param type -> the guard's detection type
+     * @param lastMove -> the guard's facing (its last move), used for Breath detection
+     * @param sight -> the cells visible from the guard's location, used for Sight detection
+     * @return Boolean -> whether the cell is inside the guard's detection shape
+     */
+    public static Boolean covers(int col, int row, int xCoord, int yCoord, int radius,
+            DetectionType type, Direction lastMove, SightTable sight) {
+        int dx = col - xCoord;
+        int dy = row - yCoord;
+        if (type == DetectionType.SIGHT) {
+            return sight.isVisible(dx, dy);
+        } else if (type == DetectionType.CIRCLE) {
+            int distance = Math.abs(dx) + Math.abs(dy);
+            return (distance > 0) && (distance <= radius);
+        } else if (type == DetectionType.BREATH) {
+            // distance ahead of the guard, and distance to the side
+            int ahead;
+            int side;
+            if (lastMove == Direction.UP) {
+                ahead = -dy;
+                side = dx;
+            } else if (lastMove == Direction.DOWN) {
+                ahead = dy;
+                side = dx;
+            } else if (lastMove == Direction.LEFT) {
+                ahead = -dx;
+                side = dy;
+            } else {
+                ahead = dx;
+                side = dy;
+            }
+            return (ahead >= 1) && (ahead <= radius) && (Math.abs(side) <= ahead - 1);
+        }
+        return false;
+    }
+}
@@ -2,8 +2,9 @@ package stealth_game;
 
 /**
  * Holds the DetectionType enum, which specifies the method through which a guard detects the
- * player
+ * player. SIGHT guards watch the same diamond as CIRCLE guards, but cannot see through walls
+ * or closed doors
  */
 public enum DetectionType {
-    CIRCLE, BREATH;
+    CIRCLE, BREATH, SIGHT;
 }
@@ -0,0 +1,178 @@
+package stealth_game;
+
+/**
+ * A breadth-first distance field over the board, measuring the walking distance from a single
+ * source cell (the player) to every other cell. Walls and closed doors block movement; guards
+ * do not, since they move during the turn.
+ *
+ * One field is shared by every seeking ChaseGuard on a board, so a turn costs one search no
+ * matter how many hunters are chasing the player. The search is also lazy and resumable: it only
+ * expands as far as the cells actually asked about, and carries on from its frontier when a
+ * farther cell is requested. A field whose source and obstacles have not changed is reused as-is,
+ * and a source move or door change only restarts the search -- stale distances are discarded by
+ * bumping a generation counter rather than by clearing the arrays.
+ */
+public class DistanceField {
+
+    // returned for cells which cannot be reached from the source
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // board dimensions, and cells which cannot be walked through
+    private int width;
+    private int height;
+    private boolean[] blocked;
+
+    // distances are only valid for cells whose generation matches the current one
+    private int[] distance;
+    private int[] generation;
+    private int currentGeneration;
+
+    // breadth-first queue of cell indices, holding the unexpanded frontier between calls
+    private int[] queue;
+    private int queueHead;
+    private int queueTail;
+
+    // current source cell (-1 if none), and whether the field must be restarted before use
+    private int source;
+    private boolean dirty;
+
+    /**
+     * Creates a field covering a board of the given size, with no obstacles and no source
+     *
+     * @param width -> board width, in cells
+     * @param height -> board height, in cells
+     */
+    public DistanceField(int width, int height) {
+        this.width = width;
+        this.height = height;
+        blocked = new boolean[width * height];
+        source = -1;
+        dirty = true;
+    }
+
+    /**
+     * Copies the field's obstacles and source. The copy starts its own search when first asked
+     * for a distance
+     */
+    public DistanceField copy() {
+        DistanceField other = new DistanceField(width, height);
+        other.blocked = blocked.clone();
+        other.source = source;
+        return other;
+    }
+
+    /**
+     * Marks a cell as blocked (a wall or closed door) or open. Changing a cell invalidates
+     * the field
+     */
+    public void setBlocked(int xCoord, int yCoord, boolean isBlocked) {
+        int index = cellIndex(xCoord, yCoord);
+        if (blocked[index] != isBlocked) {
+            blocked[index] = isBlocked;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Moves the source of the field. Setting the same source again keeps the existing distances
+     */
+    public void setSource(int xCoord, int yCoord) {
+        int index = cellIndex(xCoord, yCoord);
+        if (index != source) {
+            source = index;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Finds the walking distance from the source to a cell, extending the search as far as
+     * needed to reach it
+     *
+     * @param xCoord -> x coordinate of the cell
+     * @param yCoord -> y coordinate of the cell
+     * @return int -> number of moves from the source, or UNREACHABLE
+     */
+    public int getDistance(int xCoord, int yCoord) {
+        if ((xCoord < 0) || (yCoord < 0) || (xCoord >= width) || (yCoord >= height)
+                || (source < 0)) {
+            return UNREACHABLE;
+        }
+        if (dirty) {
+            restart();
+        }
+        int index = cellIndex(xCoord, yCoord);
+        while ((generation[index] != currentGeneration) && (queueHead < queueTail)) {
+            expand(queue[queueHead++]);
+        }
+        return (generation[index] == currentGeneration) ? distance[index] : UNREACHABLE;
+    }
+
+    /**
+     * Finishes the search, settling every reachable cell. Afterwards the field can be read from
+     * several threads at once, since lookups no longer extend the search
+     */
+    public void complete() {
+        if (source < 0) {
+            return;
+        }
+        if (dirty) {
+            restart();
+        }
+        while (queueHead < queueTail) {
+            expand(queue[queueHead++]);
+        }
+    }
+
+    /**
+     * Discards all distances and seeds a new search from the source. Arrays are allocated on
+     * first use, so boards without seekers never pay for them
+     */
+    private void restart() {
+        if (distance == null) {
+            distance = new int[width * height];
+            generation = new int[width * height];
+            queue = new int[width * height];
+        }
+        currentGeneration += 1;
+        queueHead = 0;
+        queueTail = 0;
+        dirty = false;
+        if (!blocked[source]) {
+            visit(source, 0);
+        }
+    }
+
+    /**
+     * Settles the open, unvisited neighbors of a cell one step farther than the cell itself
+     */
+    private void expand(int index) {
+        int xCoord = index % width;
+        int next = distance[index] + 1;
+        if (index >= width) {
+            visit(index - width, next);
+        }
+        if (index < width * (height - 1)) {
+            visit(index + width, next);
+        }
+        if (xCoord > 0) {
+            visit(index - 1, next);
+        }
+        if (xCoord < width - 1) {
+            visit(index + 1, next);
+        }
+    }
+
+    // records a cell's distance and queues it, unless it is blocked or already settled
+    private void visit(int index, int dist) {
+        if ((!blocked[index]) && (generation[index] != currentGeneration)) {
+            generation[index] = currentGeneration;
+            distance[index] = dist;
+            queue[queueTail++] = index;
+        }
+    }
+
+    // translates a cell to its position within the arrays
+    private int cellIndex(int xCoord, int yCoord) {
+        return (yCoord * width) + xCoord;
+    }
+}
@@ -0,0 +1,352 @@
+package stealth_game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Live metrics of the running game: turn rate and latency, allocation per turn, the displayed
+ * board's guards and detection zone, level load time, and frame paint time. There is one set of
+ * metrics per process, registered with the platform MBean server when first used, so they can be
+ * watched from JConsole or any other JMX client.
+ *
+ * The same numbers can be served over HTTP in the OpenMetrics text format, for a local scraper:
+ * start the game with -Dstealth.metricsPort=<port> and read http://localhost:<port>/metrics. The
+ * endpoint only listens on the loopback address.
+ *
+ * Turns and level loads are recorded by GameEngine (on the simulation thread), and frames by
+ * GamePanel (on the Event Dispatch Thread). Only turns of the displayed board are counted, so
+ * inputs played ahead by speculation are counted once, when committed.
+ */
+public class EngineMetrics implements EngineMetricsMXBean {
+
+    public static final String OBJECT_NAME = "stealth_game:type=EngineMetrics";
+
+    private static EngineMetrics instance;
+
+    // the JVM's thread bean, looked up once as every turn reads it (null if it cannot count
+    // allocation)
+    private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = findCounter();
+
+    // timings, and the latest turn and frame
+    private final LatencyHistogram turnLatency;
+    private final LatencyHistogram frameTime;
+    private volatile long levelLoadNanos;
+    private volatile long lastTurnNanos;
+    private volatile long lastFrameNanos;
+
+    // the JVM's garbage collectors (looked up once)
+    private final List<GarbageCollectorMXBean> collectors;
+
+    // allocation per turn (-1 where unsupported), and in total
+    private volatile long lastTurnBytes;
+    private volatile long allocatedBytes;
+
+    // turns counted in the current second, and in the second before it
+    private long rateSecond;
+    private int rateTurns;
+    private int previousRateTurns;
+
+    // the snapshot currently displayed (null before the first level loads)
+    private volatile BoardSnapshot latest;
+
+    private EngineMetrics() {
+        turnLatency = new LatencyHistogram();
+        frameTime = new LatencyHistogram();
+        lastTurnBytes = -1;
+        collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    }
+
+    /**
+     * Gets the process's metrics, creating and registering them on first use. If they cannot
+     * be registered with JMX, they are still collected (and can still be served over HTTP)
+     */
+    public static synchronized EngineMetrics getInstance() {
+        if (instance == null) {
+            instance = new EngineMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance,
+                        new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Finds how many bytes the current thread has allocated so far, if the JVM can tell
+     *
+     * @return long -> bytes allocated by this thread, or -1 if unsupported
+     */
+    public static long threadAllocatedBytes() {
+        if (ALLOCATION_COUNTER == null) {
+            return -1;
+        }
+        return ALLOCATION_COUNTER.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean findCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return (com.sun.management.ThreadMXBean) threads;
+        }
+        return null;
+    }
+
+    /**********************************************************************************
+     * RECORDING
+     **********************************************************************************/
+
+    /**
+     * Records a turn of the displayed board
+     *
+     * @param nanos -> time spent simulating the turn
+     * @param bytes -> bytes allocated over the turn (-1 if unknown)
+     */
+    public void recordTurn(long nanos, long bytes) {
+        turnLatency.record(nanos);
+        lastTurnNanos = nanos;
+        lastTurnBytes = bytes;
+        if (bytes > 0) {
+            allocatedBytes += bytes;
+        }
+        long second = System.nanoTime() / 1000000000L;
+        synchronized (this) {
+            if (second != rateSecond) {
+                previousRateTurns = (second == rateSecond + 1) ? rateTurns : 0;
+                rateSecond = second;
+                rateTurns = 0;
+            }
+            rateTurns += 1;
+        }
+    }
+
+    public void recordFrame(long nanos) {
+        frameTime.record(nanos);
+        lastFrameNanos = nanos;
+    }
+
+    public void recordLevelLoad(long nanos) {
+        levelLoadNanos = nanos;
+    }
+
+    public void recordSnapshot(BoardSnapshot snapshot) {
+        latest = snapshot;
+    }
+
+    /**********************************************************************************
+     * MXBEAN ATTRIBUTES
+     **********************************************************************************/
+
+    @Override
+    public long getTurnCount() {
+        return turnLatency.getCount();
+    }
+
+    @Override
+    public synchronized double getTurnsPerSecond() {
+        long second = System.nanoTime() / 1000000000L;
+        if (second == rateSecond) {
+            return previousRateTurns;
+        } else if (second == rateSecond + 1) {
+            return rateTurns;
+        }
+        return 0;
+    }
+
+    @Override
+    public double getTurnLatencyP50Millis() {
+        return turnLatency.getPercentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getTurnLatencyP99Millis() {
+        return turnLatency.getPercentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getTurnLatencyMaxMillis() {
+        return turnLatency.getMax() / 1e6;
+    }
+
+    @Override
+    public long getAllocatedBytesPerTurn() {
+        return lastTurnBytes;
+    }
+
+    @Override
+    public int getGuardCount() {
+        BoardSnapshot snapshot = latest;
+        return (snapshot == null) ? 0 : snapshot.getGuardCount();
+    }
+
+    // (the snapshot builds its full zone on first request, so this is only paid when read)
+    @Override
+    public int getDetectionZoneSize() {
+        BoardSnapshot snapshot = latest;
+        return (snapshot == null) ? 0 : snapshot.getDetectionZone().size();
+    }
+
+    @Override
+    public double getLevelLoadMillis() {
+        return levelLoadNanos / 1e6;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frameTime.getCount();
+    }
+
+    @Override
+    public double getFrameP50Millis() {
+        return frameTime.getPercentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getFrameP99Millis() {
+        return frameTime.getPercentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getFrameMaxMillis() {
+        return frameTime.getMax() / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        turnLatency.reset();
+        frameTime.reset();
+        allocatedBytes = 0;
+    }
+
+    /**********************************************************************************
+     * LATEST VALUES (read by the performance overlay)
+     **********************************************************************************/
+
+    public long getLastTurnNanos() {
+        return lastTurnNanos;
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    // heap in use, in bytes
+    public long getHeapUsedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // garbage collections so far, over every collector
+    public long getGcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            total += Math.max(0, collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    /**********************************************************************************
+     * OPENMETRICS
+     **********************************************************************************/
+
+    /**
+     * Writes every metric in the OpenMetrics text format (times in seconds)
+     *
+     * @return String -> the exposition, ending in # EOF
+     */
+    public String toOpenMetrics() {
+        StringBuilder out = new StringBuilder();
+        appendMetric(out, "stealth_turns", "counter", null, "Turns played on the displayed board",
+                "stealth_turns_total " + getTurnCount());
+        appendMetric(out, "stealth_turns_per_second", "gauge", null,
+                "Turns played over the last second",
+                "stealth_turns_per_second " + getTurnsPerSecond());
+        appendSummary(out, "stealth_turn_latency_seconds", "Time spent simulating a turn",
+                turnLatency);
+        appendMetric(out, "stealth_turn_allocated_bytes", "gauge", "bytes",
+                "Bytes allocated by the simulation thread over the last turn",
+                "stealth_turn_allocated_bytes " + lastTurnBytes);
+        appendMetric(out, "stealth_allocated_bytes", "counter", "bytes",
+                "Bytes allocated by the simulation thread over all turns",
+                "stealth_allocated_bytes_total " + allocatedBytes);
+        appendMetric(out, "stealth_guards", "gauge", null, "Guards on the displayed board",
+                "stealth_guards " + getGuardCount());
+        appendMetric(out, "stealth_detection_zone_cells", "gauge", null,
+                "Cells watched by guards on the displayed board",
+                "stealth_detection_zone_cells " + getDetectionZoneSize());
+        appendMetric(out, "stealth_level_load_seconds", "gauge", "seconds",
+                "Time spent building the board of the last level loaded",
+                "stealth_level_load_seconds " + (levelLoadNanos / 1e9));
+        appendSummary(out, "stealth_frame_paint_seconds", "Time spent painting a frame",
+                frameTime);
+        out.append("# EOF\n");
+        return out.toString();
+    }
+
+    private static void appendMetric(StringBuilder out, String name, String type, String unit,
+            String help, String sample) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (unit != null) {
+            out.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+        }
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append(sample).append('\n');
+    }
+
+    private static void appendSummary(StringBuilder out, String name, String help,
+            LatencyHistogram histogram) {
+        out.append("# TYPE ").append(name).append(" summary\n");
+        out.append("# UNIT ").append(name).append(" seconds\n");
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        double[] quantiles = {0.5, 0.9, 0.99, 1.0};
+        for (double quantile : quantiles) {
+            out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getPercentile(quantile) / 1e9).append('\n');
+        }
+        out.append(name).append("_sum ").append(histogram.getSum() / 1e9).append('\n');
+        out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    /**
+     * Serves the metrics at /metrics on a loopback port, on a background thread
+     *
+     * @param port -> the port to listen on (0 picks a free one)
+     * @return HttpServer -> the running server
+     */
+    public HttpServer serveOpenMetrics(int port) throws IOException {
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = toOpenMetrics().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type",
+                        "application/openmetrics-text; version=1.0.0; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream stream = exchange.getResponseBody();
+                try {
+                    stream.write(body);
+                } finally {
+                    stream.close();
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,43 @@
+package stealth_game;
+
+/**
+ * The live metrics EngineMetrics exports over JMX (as stealth_game:type=EngineMetrics). Times are
+ * in milliseconds; percentiles are read from histograms precise to about 1.6%
+ */
+public interface EngineMetricsMXBean {
+
+    // turns played (on the displayed board), and how many were played over the last second
+    long getTurnCount();
+
+    double getTurnsPerSecond();
+
+    // time spent simulating a turn
+    double getTurnLatencyP50Millis();
+
+    double getTurnLatencyP99Millis();
+
+    double getTurnLatencyMaxMillis();
+
+    // bytes allocated by the simulation thread over the last turn (-1 if the JVM cannot tell)
+    long getAllocatedBytesPerTurn();
+
+    // the board currently displayed
+    int getGuardCount();
+
+    int getDetectionZoneSize();
+
+    // time spent building the board of the last level loaded (or restarted)
+    double getLevelLoadMillis();
+
+    // time spent painting a frame
+    long getFrameCount();
+
+    double getFrameP50Millis();
+
+    double getFrameP99Millis();
+
+    double getFrameMaxMillis();
+
+    // forgets every recorded turn and frame
+    void reset();
+}
@@ -4,7 +4,14 @@
 package stealth_game;
 
 import java.awt.Point;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import jdk.jfr.Event;
 
 /**
  * @author Austin Herrick
@@ -14,11 +21,21 @@ import java.util.*;
  * player, the goal, and all walls, guards, and "danger zones" of detection. When the player
  * successfully moves, GameBoard increments an internal turn timer and handles all turn transitions
  * including victory/defeat checking, guard movement, and the moving detection zone.
+ * 
+ * Guards are kept in board order (row by row, as parsed), and random guards draw from generators
+ * seeded by the board, so a board built with the same seed always plays out the same way for the
+ * same player inputs -- including when guard movement is spread across several threads.
+ * 
+ * Detection is evaluated lazily. The game itself only needs to know whether the player's cell is
+ * watched, which is answered from the guards near the player (found through the guard store's
+ * spatial index). The full detection zone is only built when asked for, and the display asks for
+ * the part around the viewport alone.
  *
  */
 public class GameBoard {
     
-    // Define board parameters
+    // Define board parameters (the level's name is its file name, as reported to profiling)
+    private String levelName;
     private int width;
     private int height;
     private String[][] boardArray;
@@ -26,6 +43,8 @@ public class GameBoard {
     // define Board characteristics
     private TreeSet<String> legalDestinations;
     private int turn;
+    private long lastTurnNanos;
+    private long lastTurnBytes;
     private Boolean victory;
     private Boolean defeat;
     
@@ -33,10 +52,43 @@ public class GameBoard {
     private Player player;
     private Point victorySquare;
     private HashSet<Point> walls;
-    private HashSet<Guard> guards;
-    private HashSet<Point> detectionZone;
+    private ArrayList<Guard> guards;
+    private GuardStore guardStore;
     private Boolean guardMovement;
     
+    // define detection (the full zone is built on request, and null until then; guards stop
+    // watching once a turn passes without guard movement)
+    private HashSet<Point> detectionZone;
+    private Boolean guardsWatching;
+    private int[] nearbyGuards;
+    
+    // define parallel guard movement (off unless an executor is supplied)
+    private ExecutorService guardExecutor;
+    private int parallelMinGuards;
+    private Random guardSeeds;
+    
+    // each guard's intended move, refilled every turn, and the point guard moves look up key
+    // squares with (neither is shared with forks)
+    private Direction[] intents;
+    private Point keyProbe;
+    
+    // Flight Recorder events finished while the board is speculative (null while it is not),
+    // recorded only if the board is committed
+    private ArrayList<Event> heldEvents;
+    
+    // define pathfinding (shared by all seeking guards)
+    private DistanceField distanceField;
+    private Boolean hasSeekers;
+    
+    // define line of sight (cached visibility, shared by all sight guards)
+    private VisibilityMap visibilityMap;
+    private Boolean hasSightGuards;
+    
+    // define danger prediction (built on first use, and only valid until a guard is blocked)
+    private DangerTable dangerTable;
+    private Boolean dangerTableBuilt;
+    private Boolean guardBlocked;
+    
     // define doors/keys
     private HashMap<Point, Integer> gateDoors;
     private HashMap<Point, Integer> gateKeys;
@@ -44,8 +96,6 @@ public class GameBoard {
     // define vision
     private Boolean darkLevel;
     private int visionRadius;
-    private HashSet<Point> fullZone;
-    private HashSet<Point> darknessZone;
     
     /**********************************************************************************
      * Constructor and Setup Methods
@@ -61,29 +111,51 @@ public class GameBoard {
      * @param filePath - the path to the CSV file used to initialize the board state
      */
     public GameBoard(String filePath, Boolean isDark, Integer vision) {
+        this(filePath, isDark, vision, new Random().nextLong());
+    }
+    
+    /**
+     * Initializes a GameBoard whose random guards are seeded from the given seed, so that
+     * boards built with the same seed behave identically
+     * 
+     * @param filePath - the path to the CSV file used to initialize the board state
+     * @param seed - seed for the random guards' movement
+     */
+    public GameBoard(String filePath, Boolean isDark, Integer vision, long seed) {
         
         // assign initial state vars
         turn = 0;
+        lastTurnNanos = 0;
+        lastTurnBytes = -1;
         victory = false;
         defeat = false;
         walls = new HashSet<Point>();
         gateDoors = new HashMap<Point, Integer>();
         gateKeys = new HashMap<Point, Integer>();
-        guards = new HashSet<Guard>();
-        detectionZone = new HashSet<Point>();
+        guards = new ArrayList<Guard>();
+        guardStore = new GuardStore();
+        guardSeeds = new Random(seed);
+        detectionZone = null;
+        guardsWatching = true;
         guardMovement = true;
+        dangerTableBuilt = false;
+        guardBlocked = false;
         
         // define vision area vars
-        fullZone = new HashSet<Point>();
-        darknessZone = new HashSet<Point>();
         darkLevel = isDark;
         visionRadius = vision;
         
         // parse level contents using LevelReader, while initializing Players & Guards
         LevelReader lr = new LevelReader(filePath);
         LinkedList<String[]> parsedFile = lr.getBoardList();
+        levelName = new File(filePath).getName().replaceFirst("\\.csv$", "");
         width = lr.getWidth();
         height = lr.getHeight();
+        guardStore.enableIndex(width, height);
+        distanceField = new DistanceField(width, height);
+        hasSeekers = false;
+        visibilityMap = new VisibilityMap(width, height);
+        hasSightGuards = false;
         parseBoard(parsedFile);
         
         // populate legalDestinations set (used to assess whether attempted moves are legal
@@ -93,6 +165,101 @@ public class GameBoard {
         legalDestinations.add("K"); // legal to move onto any key
     }
 
+    /**
+     * Copies a board, so that turns can be played on the copy without touching the original.
+     * Level contents which never change (walls, the goal, compiled routes, cached visibility)
+     * are shared, while everything a turn can change is copied
+     * 
+     * @param other -> the board to copy
+     */
+    private GameBoard(GameBoard other) {
+        levelName = other.levelName;
+        width = other.width;
+        height = other.height;
+        boardArray = new String[height][];
+        for (int row = 0; row < height; row++) {
+            boardArray[row] = other.boardArray[row].clone();
+        }
+        legalDestinations = other.legalDestinations;
+        turn = other.turn;
+        lastTurnNanos = other.lastTurnNanos;
+        lastTurnBytes = other.lastTurnBytes;
+        victory = other.victory;
+        defeat = other.defeat;
+        
+        // copy objects (guards are re-created as views onto the copied store)
+        player = new Player(other.player.getLocation());
+        victorySquare = other.victorySquare;
+        walls = other.walls;
+        distanceField = other.distanceField.copy();
+        hasSeekers = other.hasSeekers;
+        visibilityMap = other.visibilityMap.copy();
+        hasSightGuards = other.hasSightGuards;
+        guardStore = other.guardStore.copy(distanceField);
+        guards = new ArrayList<Guard>(other.guards.size());
+        for (int i = 0; i < guardStore.size(); i++) {
+            if (guardStore.getGuardType(i) == GuardType.ROUTE) {
+                guards.add(new RouteGuard(guardStore, i));
+            } else if (guardStore.getGuardType(i) == GuardType.RANDOM) {
+                guards.add(new RandomGuard(guardStore, i));
+            } else {
+                guards.add(new ChaseGuard(guardStore, i));
+            }
+        }
+        guardMovement = other.guardMovement;
+        detectionZone = other.detectionZone;
+        guardsWatching = other.guardsWatching;
+        guardExecutor = other.guardExecutor;
+        parallelMinGuards = other.parallelMinGuards;
+        guardSeeds = other.guardSeeds;
+        dangerTable = other.dangerTable;
+        dangerTableBuilt = other.dangerTableBuilt;
+        guardBlocked = other.guardBlocked;
+        gateDoors = new HashMap<Point, Integer>(other.gateDoors);
+        gateKeys = new HashMap<Point, Integer>(other.gateKeys);
+        darkLevel = other.darkLevel;
+        visionRadius = other.visionRadius;
+    }
+    
+    /**
+     * Copies the board, for trying out moves ahead of time (see GameEngine). Playing the same
+     * inputs on the copy and on this board gives identical results
+     * 
+     * @return GameBoard -> an independent copy of the board
+     */
+    public GameBoard fork() {
+        return new GameBoard(this);
+    }
+    
+    /**
+     * Marks the board as played ahead of time, or as committed. The turns of a speculative
+     * board may never happen, so their Flight Recorder events are held back: committing the
+     * board records them (with their original timings), while a board that is discarded
+     * records nothing. Forks start out committed
+     * 
+     * @param speculative -> whether the board is being played ahead
+     */
+    public void setSpeculative(Boolean speculative) {
+        if (speculative) {
+            if (heldEvents == null) {
+                heldEvents = new ArrayList<Event>();
+            }
+            return;
+        }
+        if (heldEvents != null) {
+            for (Event event : heldEvents) {
+                if (event.shouldCommit()) {
+                    event.commit();
+                }
+            }
+            heldEvents = null;
+        }
+    }
+    
+    public Boolean isSpeculative() {
+        return heldEvents != null;
+    }
+
     /**
      * Parses the LinkedList passed by LevelReader into the actual game board. Initializes player
      * and all guards as they are encountered
@@ -109,9 +276,6 @@ public class GameBoard {
             for (int col = 0; col < width; col++) {
                 boardArray[currentRow][col] = levelRow[col];
                 
-                // append to fullZone of points
-                fullZone.add(new Point(col, currentRow));
-                
                 // if cell contains a feature of note, initialize object
                 if (levelRow[col].equals("P")) {
                     Point playerLoc = new Point(col, currentRow);
@@ -120,6 +284,8 @@ public class GameBoard {
                     victorySquare = new Point(col, currentRow);
                 } else if (levelRow[col].equals("W")) {
                     walls.add(new Point(col, currentRow));
+                    distanceField.setBlocked(col, currentRow, true);
+                    visibilityMap.setBlocked(col, currentRow, true);
                 // if an Guard/Mob is detected, parse string and abbreviate array storage
                 } else if (levelRow[col].contains("M")) {
                     Point guardLoc = new Point(col, currentRow);
@@ -138,11 +304,6 @@ public class GameBoard {
             }
             currentRow += 1;
         }
-        
-        // if necessary, create vision area
-        if (darkLevel) {
-            updateVision();
-        }
     }
     
     /**
@@ -152,6 +313,8 @@ public class GameBoard {
         int lockNum = Character.getNumericValue(keyDoorString.charAt(1));
         if (keyDoorString.startsWith("D")) {
             gateDoors.put(keyDoorLoc, lockNum);
+            distanceField.setBlocked((int) keyDoorLoc.getX(), (int) keyDoorLoc.getY(), true);
+            visibilityMap.setBlocked((int) keyDoorLoc.getX(), (int) keyDoorLoc.getY(), true);
         } else {
             gateKeys.put(keyDoorLoc,  lockNum);
         }
@@ -167,17 +330,23 @@ public class GameBoard {
     private void parseGuard(String guardString, Point guardLoc) {
         // identify type of guard
         if (guardString.contains("P")) {
-            RouteGuard guard = new RouteGuard(guardLoc, guardString);
+            RouteGuard guard = new RouteGuard(guardStore, guardLoc, guardString);
             guards.add(guard);
-            updateDetection(guard);
         } else if (guardString.contains("R")) {
-            RandomGuard guard = new RandomGuard(guardLoc, guardString);
+            RandomGuard guard = new RandomGuard(guardStore, guardLoc, guardString, 
+                    guardSeeds.nextLong());
             guards.add(guard);
-            updateDetection(guard);
         } else if (guardString.contains("H")) {
-            ChaseGuard guard = new ChaseGuard(guardLoc, guardString);
+            ChaseGuard guard = new ChaseGuard(guardStore, guardLoc, guardString, null);
+            guards.add(guard);
+        } else if (guardString.contains("S")) {
+            ChaseGuard guard = new ChaseGuard(guardStore, guardLoc, guardString, distanceField);
+            hasSeekers = true;
             guards.add(guard);
-            updateDetection(guard);
+        }
+        if ((!guards.isEmpty()) 
+                && (guards.get(guards.size() - 1).getDetectionType() == DetectionType.SIGHT)) {
+            hasSightGuards = true;
         }
     }
     
@@ -247,6 +416,61 @@ public class GameBoard {
         }
     }
     
+    /**
+     * Attempts to move a guard in a particular direction, as moveObject does, but working
+     * straight from the guard store's coordinates so that nothing is allocated. Guards are
+     * stored in board order, so guards.get(index) is entry index of the store. Moves are applied
+     * on one thread, so a single probe point serves every key square lookup.
+     * 
+     * A guard can only uncover the square it leaves, so that is the only square that may need
+     * its goal or key restored
+     * 
+     * @param index -> the guard's position in board order
+     * @param direction -> the intended direction of movement
+     * @return Boolean -> whether the guard moved
+     */
+    private Boolean moveGuard(int index, Direction direction) {
+        if (direction == null) {
+            return false;
+        }
+        int prevX = guardStore.getX(index);
+        int prevY = guardStore.getY(index);
+        int newX = prevX;
+        int newY = prevY;
+        switch (direction) {
+            case UP:
+                newY -= 1;
+                break;
+            case DOWN:
+                newY += 1;
+                break;
+            case LEFT:
+                newX -= 1;
+                break;
+            default:
+                newX += 1;
+                break;
+        }
+        if ((!inBounds(newX, newY)) || (!legalDestinations.contains(boardArray[newY][newX]))) {
+            return false;
+        }
+        guardStore.setLocation(index, newX, newY);
+        boardArray[prevY][prevX] = "E";
+        boardArray[newY][newX] = "M";
+        if ((prevX == victorySquare.x) && (prevY == victorySquare.y)) {
+            boardArray[prevY][prevX] = "G";
+        } else if (!gateKeys.isEmpty()) {
+            if (keyProbe == null) {
+                keyProbe = new Point();
+            }
+            keyProbe.setLocation(prevX, prevY);
+            if (gateKeys.containsKey(keyProbe)) {
+                boardArray[prevY][prevX] = "K";
+            }
+        }
+        return true;
+    }
+    
     /**
      * Given a current location and an intended direction, finds the intended destination
      * 
@@ -318,8 +542,9 @@ public class GameBoard {
     /**********************************************************************************
      * Turn Transition Methods
      * 
-     * incrementTurn, updateDetection; are used to transition between turns. Handles end state
-     * checking, moves all guards, and calculates the new detection zone
+     * incrementTurn, moveGuards; are used to transition between turns. Handles end state
+     * checking and moves all guards. Detection is checked on demand, by isWatched and 
+     * getDetectionZone
      **********************************************************************************/
     
     /**
@@ -329,6 +554,10 @@ public class GameBoard {
      *    - Check if the player has lost the game
      */   
     public void incrementTurn() {
+        TurnEvent turnEvent = TurnEvent.start();
+        long turnStart = System.nanoTime();
+        long bytesStart = EngineMetrics.threadAllocatedBytes();
+        
         // increment actual turn
         turn += 1;
         
@@ -339,6 +568,8 @@ public class GameBoard {
         }
         
         // check if player received a key, and clear the relevant gates if so
+        TurnPhaseEvent keyPhase = TurnPhaseEvent.start(TurnPhaseEvent.KEYS);
+        long keyCells = gateKeys.size();
         Iterator<Point> keyIter = gateKeys.keySet().iterator();
         while (keyIter.hasNext()) {
             Point nextKey = keyIter.next();
@@ -347,6 +578,7 @@ public class GameBoard {
                 Iterator<Point> gateIter = gateDoors.keySet().iterator();
                 
                 // clear gates corresponding to found key
+                keyCells += gateDoors.size();
                 while (gateIter.hasNext()) {
                     Point nextGate = gateIter.next();
                     int keyCode = gateDoors.get(nextGate);
@@ -354,10 +586,17 @@ public class GameBoard {
                         int gX = (int) nextGate.getX();
                         int gY = (int) nextGate.getY();
                         boardArray[gY][gX] = "E";
+                        distanceField.setBlocked(gX, gY, false);
+                        visibilityMap.setBlocked(gX, gY, false);
                         gateIter.remove();
                     }
                 }
                 
+                // sight guards see through opened doors, so predicted detection must be redone
+                if (hasSightGuards) {
+                    dangerTableBuilt = false;
+                }
+                
                 // remove key from keySet and set square to empty
                 gateKeys.remove(nextKey);
                 int kX = (int) nextKey.getX();
@@ -368,140 +607,331 @@ public class GameBoard {
                 break;
             }
         }
+        keyPhase.finish(levelName, turn, guards.size(), keyCells, heldEvents);
+        
+        // point seeking guards' shared distance field at the player (it is only searched
+        // if a seeker asks for a distance)
+        distanceField.setSource((int) playerLocation.getX(), (int) playerLocation.getY());
         
-        // move all guards and update detection zone
-        detectionZone = new HashSet<Point>();
-        Iterator<Guard> iterGuard = guards.iterator();
-        while ((iterGuard.hasNext()) & (guardMovement)) {
-            Guard guard = iterGuard.next();
-            guard.setPlayerLocation(playerLocation); // this only matters for chaseGuards
-            Direction moveDir = guard.getMoveDirection();
-            Boolean didMove = moveObject(guard, moveDir);
+        // move all guards (the detection zone is now stale, and is rebuilt if requested)
+        detectionZone = null;
+        guardsWatching = guardMovement;
+        long guardCells = 0;
+        if (guardMovement) {
+            guardCells = moveGuards(playerLocation);
+        }
+        
+        // check if player has lost the game
+        TurnPhaseEvent detectionPhase = TurnPhaseEvent.start(TurnPhaseEvent.DETECTION);
+        Boolean caught = isWatched((int) playerLocation.getX(), (int) playerLocation.getY());
+        if (caught) {
+            defeat = true;
+        }
+        detectionPhase.finish(levelName, turn, guards.size(), 1, heldEvents);
+        turnEvent.finish(levelName, turn, guards.size(), keyCells + guardCells + 1, caught,
+                heldEvents);
+        
+        // time (and allocation, on this thread) spent on the turn, as reported to metrics
+        lastTurnNanos = System.nanoTime() - turnStart;
+        lastTurnBytes = (bytesStart < 0) ? -1 : EngineMetrics.threadAllocatedBytes() - bytesStart;
+    }
+    
+    /**
+     * Moves every guard. This happens in two phases:
+     *    - Each guard picks its intended move. Intents depend only on the guard itself and the
+     *      player, never on other guards, so they can be gathered in parallel
+     *    - Moves are applied one guard at a time in board order. This is the only phase where
+     *      guards interact, and it settles collisions the same way however intents were gathered
+     * Intents are only gathered in parallel on boards with an executor and enough guards;
+     * otherwise everything happens on the calling thread, with the same result
+     * 
+     * @param playerLocation -> the player's location for this turn
+     * @return long -> cells touched: each guard's choice, and each move
+     */
+    private long moveGuards(final Point playerLocation) {
+        if ((intents == null) || (intents.length != guards.size())) {
+            intents = new Direction[guards.size()];
+        }
+        final Direction[] turnIntents = intents;
+        Boolean parallel = (guardExecutor != null) && (guards.size() >= parallelMinGuards);
+        if (parallel && hasSeekers) {
+            // seekers share the distance field, which must not grow while being read
+            distanceField.complete();
+        }
+        
+        // gather intents, straight from the guard store's arrays
+        TurnPhaseEvent aiPhase = TurnPhaseEvent.start(TurnPhaseEvent.GUARD_AI);
+        guardStore.setPlayerLocation((int) playerLocation.getX(), (int) playerLocation.getY());
+        runGuardTasks(parallel, guards.size(), null, new GuardTask() {
+            @Override
+            public void run(int from, int to, Set<Point> zone) {
+                guardStore.computeIntents(from, to, turnIntents);
+            }
+        });
+        aiPhase.finish(levelName, turn, guards.size(), guards.size(), heldEvents);
+        
+        // apply moves in board order
+        TurnPhaseEvent movePhase = TurnPhaseEvent.start(TurnPhaseEvent.GUARD_MOVES);
+        long moves = 0;
+        for (int i = 0; i < guards.size(); i++) {
+            Guard guard = guards.get(i);
+            Boolean didMove = moveGuard(i, intents[i]);
             
             // hand move outcome according to guard type
             if (didMove) {
+                moves += 1;
                 guard.moveSucceeded();
             // random guards continue to attempt moves until all options are exhausted or
             // a successful move is found
             } else {
+                guardBlocked = true;
                 Direction nextDir = guard.moveFailed();
                 Boolean backupMove = false;
                 while ((!(nextDir == null)) & (!(backupMove))) {
-                    backupMove = moveObject(guard, nextDir);
+                    backupMove = moveGuard(i, nextDir);
                     if (backupMove) {
+                        moves += 1;
                         guard.moveSucceeded();
                     } else {
                         nextDir = guard.moveFailed();
                     }
                 }
             }
-            
-            // update detectionZone
-            updateDetection(guard);
         }
-        
-        // check if player has lost the game
-        if (detectionZone.contains(playerLocation)) {
-            defeat = true;
+        movePhase.finish(levelName, turn, guards.size(), moves, heldEvents);
+        return guards.size() + moves;
+    }
+    
+    /**
+     * Work on a range of items (guards, or entries in a list of guards). Tasks running in
+     * parallel add detected cells to a zone of their own, which is merged afterwards
+     */
+    private interface GuardTask {
+        void run(int from, int to, Set<Point> zone);
+    }
+    
+    /**
+     * Runs a task over a number of items, either in order on this thread (adding detection
+     * straight to the target zone), or split into contiguous chunks on the guard executor
+     * 
+     * @param parallel -> whether to use the guard executor
+     * @param count -> number of items to cover
+     * @param target -> zone receiving detected cells (null if the task detects nothing)
+     * @param task -> the work to run
+     */
+    private void runGuardTasks(Boolean parallel, int count, Set<Point> target, 
+            final GuardTask task) {
+        if ((!parallel) || (count == 0)) {
+            task.run(0, count, target);
+            return;
         }
         
-        // update vision area, if necessary
-        if (darkLevel) {
-            updateVision();
+        // four chunks per processor keeps threads busy when some chunks are slower
+        int chunkCount = Math.min(count, 4 * Runtime.getRuntime().availableProcessors());
+        ArrayList<Callable<HashSet<Point>>> chunks = new ArrayList<Callable<HashSet<Point>>>();
+        for (int c = 0; c < chunkCount; c++) {
+            final int start = (int) ((long) count * c / chunkCount);
+            final int end = (int) ((long) count * (c + 1) / chunkCount);
+            chunks.add(new Callable<HashSet<Point>>() {
+                @Override
+                public HashSet<Point> call() {
+                    HashSet<Point> zone = new HashSet<Point>();
+                    task.run(start, end, zone);
+                    return zone;
+                }
+            });
+        }
+        try {
+            for (Future<HashSet<Point>> result : guardExecutor.invokeAll(chunks)) {
+                if (target != null) {
+                    target.addAll(result.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while moving guards", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Guard movement failed", e.getCause());
         }
     }
     
     /**
-     * Update set of detected squares for a current guard's position, detection radius, and
-     * detection type
+     * Adds the cells watched by a guard in a given position to a detection zone. Also used to
+     * predict detection for guard positions other than the current ones (see DangerTable)
      * 
-     * @param guard -> the guard in question
-     */  
-    private void updateDetection(Guard guard) {
-        // retrieve necessary info
-        Point location = guard.getLocation();
-        int xCoord = (int) location.getX();
-        int yCoord = (int) location.getY();
-        int radius = guard.getDetectionRadius();
-        DetectionType type = guard.getDetectionType();
-        
-        if (type.equals(DetectionType.CIRCLE)) {
-            // find all points surrounding guard, and add to detection zone within taxicab distance
-            for (Integer col = xCoord - radius; col <= xCoord + radius; col++) {
-                for (Integer row = yCoord - radius; row <= yCoord + radius; row++) {
-                    // check that point is in bounds and not the guard's current location
-                    if ((!(col.equals(xCoord) & (row.equals(yCoord)))) & (inBounds(col, row))) {
-                        // check that point is within taxicab distance of radius
-                        int distance = Math.abs(col - xCoord) + Math.abs(row - yCoord);
-                        if (distance <= radius) {
-                            detectionZone.add(new Point(col, row));
-                        }
-                    }
-                }
+     * @param zone -> the detection zone to add to
+     * @param xCoord, yCoord -> the guard's location
+     * @param radius -> the guard's detection radius
+     * @param type -> the guard's detection type
+     * @param lastMove -> the guard's facing (its last move), used for Breath detection
+     */
+    public void addDetection(Set<Point> zone, int xCoord, int yCoord, int radius, 
+            DetectionType type, Direction lastMove) {
+        SightTable sight = (type == DetectionType.SIGHT) 
+                ? visibilityMap.getTable(xCoord, yCoord, radius) : null;
+        DetectionStencil.addCells(zone, xCoord, yCoord, radius, type, lastMove, sight, 
+                0, 0, width - 1, height - 1);
+    }
+    
+    /**
+     * Checks whether any guard currently watches a cell. Only guards close enough to reach the
+     * cell with the largest detection radius on the board are looked at
+     * 
+     * @param xCoord -> x coordinate of point to check
+     * @param yCoord -> y coordinate of point to check
+     * @return Boolean -> whether the cell is inside the detection zone
+     */
+    public Boolean isWatched(int xCoord, int yCoord) {
+        if ((!guardsWatching) || (!inBounds(xCoord, yCoord))) {
+            return false;
+        }
+        if ((nearbyGuards == null) || (nearbyGuards.length < guardStore.size())) {
+            nearbyGuards = new int[guardStore.size()];
+        }
+        int reach = guardStore.getMaxRadius();
+        int count = guardStore.query(xCoord - reach, yCoord - reach, xCoord + reach, 
+                yCoord + reach, nearbyGuards);
+        for (int i = 0; i < count; i++) {
+            int g = nearbyGuards[i];
+            if (DetectionStencil.covers(xCoord, yCoord, guardStore.getX(g), guardStore.getY(g), 
+                    guardStore.getDetectionRadius(g), guardStore.getDetectionType(g), 
+                    guardStore.getLastMove(g), sightTableOf(g))) {
+                return true;
             }
-        } else if (type.equals(DetectionType.BREATH)) {
-            Direction lastMove = guard.getLastMove();
-            // use last direction, and spread out detection
-            if (lastMove.equals(Direction.UP)) {
-                for (int i = 0; i < radius; i++) {
-                    for (int offset = -i; offset <= i; offset++) {
-                        if (inBounds(xCoord + offset, yCoord - (i + 1))) {
-                            detectionZone.add(new Point(xCoord + offset, yCoord - (i + 1)));
-                        }
-                    }
-                }
-            } else if (lastMove.equals(Direction.DOWN)) {
-                for (int i = 0; i < radius; i++) {
-                    for (int offset = -i; offset <= i; offset++) {
-                        if (inBounds(xCoord + offset, yCoord + (i + 1))) {
-                            detectionZone.add(new Point(xCoord + offset, yCoord + (i + 1)));
-                        }
-                    }
-                }
-            } else if (lastMove.equals(Direction.LEFT)) {
-                for (int i = 0; i < radius; i++) {
-                    for (int offset = -i; offset <= i; offset++) {
-                        if (inBounds(xCoord - (i + 1), yCoord + offset)) {
-                            detectionZone.add(new Point(xCoord - (i + 1), yCoord + offset));
-                        }
-                    }
-                }
-            } else if (lastMove.equals(Direction.RIGHT)) {
-                for (int i = 0; i < radius; i++) {
-                    for (int offset = -i; offset <= i; offset++) {
-                        if (inBounds(xCoord + (i + 1), yCoord + offset)) {
-                            detectionZone.add(new Point(xCoord + (i + 1), yCoord + offset));
-                        }
-                    }
+        }
+        return false;
+    }
+    
+    /**
+     * Builds the part of the detection zone inside an inclusive range of cells, from the
+     * guards whose detection could reach that range
+     * 
+     * @param minX, minY -> top left cell of the range
+     * @param maxX, maxY -> bottom right cell of the range
+     * @return HashSet<Point> -> the watched cells within the range
+     */
+    public HashSet<Point> getDetectionZone(int minX, int minY, int maxX, int maxY) {
+        HashSet<Point> zone = new HashSet<Point>();
+        if (!guardsWatching) {
+            return zone;
+        }
+        TurnPhaseEvent detectionPhase = TurnPhaseEvent.start(TurnPhaseEvent.DETECTION);
+        final int clipMinX = Math.max(0, minX);
+        final int clipMinY = Math.max(0, minY);
+        final int clipMaxX = Math.min(width - 1, maxX);
+        final int clipMaxY = Math.min(height - 1, maxY);
+        int reach = guardStore.getMaxRadius();
+        final int[] found = new int[guardStore.size()];
+        int count = guardStore.query(clipMinX - reach, clipMinY - reach, clipMaxX + reach, 
+                clipMaxY + reach, found);
+        Boolean parallel = (guardExecutor != null) && (count >= parallelMinGuards);
+        if (parallel && hasSightGuards) {
+            // visibility tables are cached as they are first used, which must not happen on
+            // several threads at once
+            for (int i = 0; i < count; i++) {
+                sightTableOf(found[i]);
+            }
+        }
+        runGuardTasks(parallel, count, zone, new GuardTask() {
+            @Override
+            public void run(int from, int to, Set<Point> zone) {
+                for (int i = from; i < to; i++) {
+                    int g = found[i];
+                    DetectionStencil.addCells(zone, guardStore.getX(g), guardStore.getY(g), 
+                            guardStore.getDetectionRadius(g), guardStore.getDetectionType(g), 
+                            guardStore.getLastMove(g), sightTableOf(g), clipMinX, clipMinY, 
+                            clipMaxX, clipMaxY);
                 }
             }
+        });
+        detectionPhase.finish(levelName, turn, guards.size(), zone.size(), heldEvents);
+        return zone;
+    }
+    
+    /**
+     * Finds the cells a sight guard can see from where it stands
+     * 
+     * @param index -> the guard's index in the guard store
+     * @return SightTable -> the visible cells, or null if the guard is not a sight guard
+     */
+    private SightTable sightTableOf(int index) {
+        if (guardStore.getDetectionType(index) != DetectionType.SIGHT) {
+            return null;
         }
+        return visibilityMap.getTable(guardStore.getX(index), guardStore.getY(index), 
+                guardStore.getDetectionRadius(index));
     }
     
     /**
-     * Updates the vision radius, for dark levels
-     */  
-    @SuppressWarnings("unchecked")
-    private void updateVision() {
-        
-        // reset darkness squares to all squares
-        darknessZone = (HashSet<Point>) fullZone.clone();
+     * Finds the cells visible from a cell, within a radius, with walls and closed doors as they
+     * currently stand. The table is never modified afterwards
+     * 
+     * @param xCoord, yCoord -> the viewer's location
+     * @param radius -> how far the viewer can see
+     * @return SightTable -> the visible cells
+     */
+    public SightTable getSightTable(int xCoord, int yCoord, int radius) {
+        return visibilityMap.getTable(xCoord, yCoord, radius);
+    }
+    
+    /**
+     * Checks whether a cell will be watched at a given turn, assuming the player stands still
+     * until then (blocking any guard that tries to enter their cell). On boards whose only guards
+     * are RouteGuards, this is answered from a DangerTable while no guard has been blocked and no
+     * route enters the player's cell before that turn, and by stepping copies of the guards
+     * forward otherwise.
+     * On other boards (whose guards react to the player) only the current turn can be checked
+     * 
+     * @param xCoord -> x coordinate of point to check
+     * @param yCoord -> y coordinate of point to check
+     * @param atTurn -> the turn to check, no earlier than the current turn
+     * @return Boolean -> whether the cell is inside the detection zone at that turn
+     */
+    public Boolean isCellWatched(int xCoord, int yCoord, int atTurn) {
+        if (atTurn < turn) {
+            throw new IllegalArgumentException("Cannot check detection for past turns");
+        }
+        if ((atTurn == turn) || (!guardMovement)) {
+            // (guards which no longer move watch nothing after the current turn)
+            return (atTurn == turn) && isWatched(xCoord, yCoord);
+        }
+        if (!inBounds(xCoord, yCoord)) {
+            return false;
+        }
         
-        // get playerLoc
+        // build the table on first use, then use it as long as it stays valid
+        if (!dangerTableBuilt) {
+            dangerTable = guardBlocked ? null : DangerTable.build(this);
+            dangerTableBuilt = true;
+        }
         Point playerLoc = player.getLocation();
-        int xCoord = (int) playerLoc.getX();
-        int yCoord = (int) playerLoc.getY();
-        
-        // find all points surrounding player, and remove from darkness zone
-        for (Integer col = xCoord - visionRadius; col <= xCoord + visionRadius; col++) {
-            for (Integer row = yCoord - visionRadius; row <= yCoord + visionRadius; row++) {
-                // check that point is in bounds and within taxicab distance
-                int distance = Math.abs(col - xCoord) + Math.abs(row - yCoord);
-                if ((distance <= visionRadius) & (inBounds(col, row))) {
-                    darknessZone.remove(new Point(col, row));
-                }
+        if ((dangerTable != null) && (!guardBlocked) && (!dangerTable.isEntered(
+                (int) playerLoc.getX(), (int) playerLoc.getY(), turn, atTurn))) {
+            return dangerTable.isWatched(xCoord, yCoord, atTurn);
+        }
+        Iterator<Guard> guardIter = guards.iterator();
+        while (guardIter.hasNext()) {
+            if (!(guardIter.next() instanceof RouteGuard)) {
+                throw new IllegalArgumentException(
+                        "Only boards with route guards alone can predict detection");
             }
-         }
+        }
+        return DangerTable.simulate(this, atTurn - turn).get((yCoord * width) + xCoord);
+    }
+    
+    /**
+     * Checks whether a cell lies inside the player's vision diamond. Vision follows the player,
+     * so it is derived from the player's current location rather than stored per cell
+     * 
+     * @param xCoord -> x coordinate of point to check
+     * @param yCoord -> y coordinate of point to check
+     * @return Boolean -> whether the cell is within taxicab distance of the player
+     */
+    private Boolean inVision(int xCoord, int yCoord) {
+        Point playerLoc = player.getLocation();
+        int distance = Math.abs(xCoord - (int) playerLoc.getX()) 
+                + Math.abs(yCoord - (int) playerLoc.getY());
+        return distance <= visionRadius;
     }
 
     
@@ -527,14 +957,18 @@ public class GameBoard {
         return (HashSet<Point>) this.walls.clone();
     }
     
+    // builds the full detection zone on first request after each turn
     @SuppressWarnings("unchecked")
     public HashSet<Point> getDetectionZone() {
+        if (this.detectionZone == null) {
+            this.detectionZone = getDetectionZone(0, 0, width - 1, height - 1);
+        }
         return (HashSet<Point>) this.detectionZone.clone();
     }
     
-    @SuppressWarnings("unchecked")
+    // returns the guards in board order
     public HashSet<Guard> getGuards() {
-        return (HashSet<Guard>) this.guards.clone();
+        return new LinkedHashSet<Guard>(this.guards);
     }
     
     @SuppressWarnings("unchecked")
@@ -547,6 +981,11 @@ public class GameBoard {
         return (HashMap<Point, Integer>) this.gateKeys.clone();
     }
     
+    // name of the level file, without its folder or extension
+    public String getLevelName() {
+        return this.levelName;
+    }
+    
     public Player getPlayer() {
         return this.player;
     }
@@ -563,6 +1002,16 @@ public class GameBoard {
         return this.width;
     }
     
+    // time spent on the last turn, and bytes allocated by it on the calling thread (-1 when the
+    // JVM cannot tell, and leaving out guard threads)
+    public long getLastTurnNanos() {
+        return this.lastTurnNanos;
+    }
+    
+    public long getLastTurnBytes() {
+        return this.lastTurnBytes;
+    }
+    
     public Integer getTurn() {
         return this.turn;
     }
@@ -581,10 +1030,41 @@ public class GameBoard {
     public void disableGuardMovement() {
         guardMovement = false;
     }
+    
+    // whether guards watch anything (they stop once a turn passes without guard movement)
+    public Boolean areGuardsWatching() {
+        return this.guardsWatching;
+    }
+    
+    /**
+     * Lets guard movement run on an executor, on turns with at least minGuards guards. Results
+     * are identical to moving guards on the calling thread. Pass null to stop using an executor
+     */
+    public void setParallelGuards(ExecutorService executor, int minGuards) {
+        guardExecutor = executor;
+        parallelMinGuards = minGuards;
+    }
 
-    @SuppressWarnings("unchecked")
+    // builds the set of darkened cells on request (the display draws darkness from the vision
+    // diamond directly, so this is not materialized every turn)
     public HashSet<Point> getDarknessZone() {
-        return (HashSet<Point>) this.darknessZone.clone();
+        HashSet<Point> darknessZone = new HashSet<Point>();
+        if (darkLevel) {
+            TurnPhaseEvent visionPhase = TurnPhaseEvent.start(TurnPhaseEvent.VISION);
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    if (!inVision(col, row)) {
+                        darknessZone.add(new Point(col, row));
+                    }
+                }
+            }
+            visionPhase.finish(levelName, turn, guards.size(), (long) width * height, heldEvents);
+        }
+        return darknessZone;
+    }
+    
+    public int getVisionRadius() {
+        return this.visionRadius;
     }
     
     // get dark status
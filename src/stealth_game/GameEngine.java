@@ -0,0 +1,574 @@
+package stealth_game;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * GameEngine runs the game simulation on its own thread, so that turn processing (guard movement,
+ * detection, vision) never blocks the Swing Event Dispatch Thread. The GUI submits commands, such
+ * as player inputs or level loads, to a queue which the simulation thread works through in
+ * order. After each command the simulation thread publishes an immutable BoardSnapshot through an
+ * atomic reference, and the GUI only ever reads the latest snapshot.
+ *
+ * Inputs are queued rather than dropped, so a held-down key produces one move per key repeat
+ * even while an earlier turn is still being computed.
+ *
+ * While the queue is empty, the simulation thread plays each possible input (four moves and a
+ * wait) ahead of time on a fork of the board, one input between checks of the queue. An input
+ * whose result is ready is then committed by swapping in the fork and publishing its prepared
+ * snapshot, so the time from keypress to screen no longer depends on how costly a turn is.
+ * Forks played ahead are marked speculative, so only the turns actually committed reach Flight
+ * Recorder.
+ * Speculation is switched off by setting the system property stealth.speculate to false. An input
+ * that throws while being played ahead points to a bug in forking, so it is not hidden: the
+ * exception is printed, speculation stops for that board, and the next awaitIdle call rethrows it.
+ *
+ * Setting the system property stealth.guardThreads above 1 gives boards a pool of that many
+ * threads for moving guards, which is used on boards with at least PARALLEL_MIN_GUARDS guards.
+ *
+ * Every board is built from a seed the engine picks, and every input reaching it is recorded in a
+ * Replay, which saveReplay writes out. Loading or restarting a level starts a new replay.
+ *
+ * While the heatmap is switched on, every published turn also starts a GuardHeatmap forecast on a
+ * background thread. Forecasts never hold up the simulation: one superseded by a newer turn
+ * before it starts is skipped, and the GUI is notified again once the latest one is ready.
+ */
+public class GameEngine {
+
+    // smallest guard count for which guard movement is spread across threads
+    public static final int PARALLEL_MIN_GUARDS = 1024;
+
+    // number of turns the random guard heatmap looks ahead
+    public static final int HEATMAP_TURNS = 8;
+
+    // command queue, and the thread consuming it
+    private LinkedBlockingQueue<Runnable> commands;
+    private Thread simulationThread;
+    private ExecutorService guardExecutor;
+    private ExecutorService heatmapExecutor;
+
+    // latest published state, and the callback run after each publish
+    private AtomicReference<BoardSnapshot> latestSnapshot;
+    private EngineMetrics metrics;
+    private volatile Runnable snapshotListener;
+
+    // latest requested and latest finished heatmaps (requested is null while switched off)
+    private AtomicReference<GuardHeatmap> requestedHeatmap;
+    private AtomicReference<GuardHeatmap> latestHeatmap;
+    private Boolean heatmapEnabled;
+
+    // simulation state (only ever touched from the simulation thread)
+    private GameBoard gb;
+    private String currentLevel;
+    private Boolean darkLevel;
+    private Integer visionRadius;
+    private int levelId;
+    private int boardId;
+    private Set<Point> walls;
+    private boolean[] heatmapWalls;
+
+    // seeds for new boards, and the replay of the current board
+    private Random boardSeeds;
+    private Replay replay;
+
+    // boards (and their snapshots) already played one input ahead of the current board
+    private Boolean speculate;
+    private Boolean speculationFailed;
+    private AtomicReference<RuntimeException> speculationFailure;
+    private EnumMap<PlayerInput, GameBoard> speculativeBoards;
+    private EnumMap<PlayerInput, BoardSnapshot> speculativeSnapshots;
+
+    /**
+     * Creates the engine and starts its simulation thread. No level is loaded until loadLevel
+     * is called
+     */
+    public GameEngine() {
+        commands = new LinkedBlockingQueue<Runnable>();
+        latestSnapshot = new AtomicReference<BoardSnapshot>();
+        metrics = EngineMetrics.getInstance();
+        requestedHeatmap = new AtomicReference<GuardHeatmap>();
+        latestHeatmap = new AtomicReference<GuardHeatmap>();
+        heatmapEnabled = false;
+        speculate = !"false".equals(System.getProperty("stealth.speculate"));
+        speculationFailed = false;
+        speculationFailure = new AtomicReference<RuntimeException>();
+        speculativeBoards = new EnumMap<PlayerInput, GameBoard>(PlayerInput.class);
+        speculativeSnapshots = new EnumMap<PlayerInput, BoardSnapshot>(PlayerInput.class);
+        levelId = 0;
+        boardId = 0;
+        boardSeeds = new Random();
+
+        simulationThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processCommands();
+            }
+        }, "StealthJava-simulation");
+        simulationThread.setDaemon(true);
+        simulationThread.start();
+
+        // forecasts run one at a time, beside the simulation
+        heatmapExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread worker = new Thread(r, "StealthJava-heatmap");
+                worker.setDaemon(true);
+                worker.setPriority(Thread.MIN_PRIORITY);
+                return worker;
+            }
+        });
+
+        // optional worker threads for boards with many guards
+        int guardThreads = Integer.getInteger("stealth.guardThreads", 0);
+        if (guardThreads > 1) {
+            guardExecutor = Executors.newFixedThreadPool(guardThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread worker = new Thread(r, "StealthJava-guards");
+                    worker.setDaemon(true);
+                    return worker;
+                }
+            });
+        }
+    }
+
+    /**********************************************************************************
+     * Commands
+     *
+     * loadLevel, reset, submit, waitTurns, waitUntilSafe, disableGuardMovement, and saveReplay
+     * queue work for the simulation thread.
+     * They return immediately, and can be called from any thread
+     **********************************************************************************/
+
+    /**
+     * Loads a new level, replacing the current one
+     *
+     * @param filePath - the path to the level CSV
+     * @param isDark - whether the level is dark
+     * @param vision - the player's vision radius on dark levels
+     */
+    public void loadLevel(final String filePath, final Boolean isDark, final Integer vision) {
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                currentLevel = filePath;
+                darkLevel = isDark;
+                visionRadius = vision;
+                gb = createBoard();
+                discardSpeculation();
+                levelId += 1;
+                boardId += 1;
+                walls = Collections.unmodifiableSet(gb.getWalls());
+                heatmapWalls = null;
+                publish();
+            }
+        });
+    }
+
+    /**
+     * Restarts the current level from its initial state
+     */
+    public void reset() {
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                if (currentLevel != null) {
+                    gb = createBoard();
+                    discardSpeculation();
+                    boardId += 1;
+                    publish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a player input. Inputs arriving after the level has been won or lost are ignored
+     *
+     * @param input - the move (or wait) to make
+     */
+    public void submit(final PlayerInput input) {
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                if ((gb == null) || gb.isVictory() || gb.isDefeat()) {
+                    return;
+                }
+                int turnBefore = gb.getTurn();
+                replay.record(input);
+                
+                // commit the input's result if it was already played ahead
+                GameBoard ready = speculativeBoards.get(input);
+                if (ready != null) {
+                    BoardSnapshot readySnapshot = speculativeSnapshots.get(input);
+                    ready.setSpeculative(false);
+                    gb = ready;
+                    discardSpeculation();
+                    recordTurn(turnBefore);
+                    publish(readySnapshot);
+                    return;
+                }
+                play(gb, input);
+                discardSpeculation();
+                recordTurn(turnBefore);
+                publish();
+            }
+        });
+    }
+
+    /**
+     * Waits a number of turns in one go. Only the final turn is published, and waiting stops
+     * early if the player is caught
+     *
+     * @param turns - the number of turns to wait
+     */
+    public void waitTurns(final int turns) {
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                fastForward(turns, null);
+            }
+        });
+    }
+
+    /**
+     * Waits until the cell next to the player in a direction is unwatched (checking after each
+     * turn), so that it is worth stepping toward. Only the final turn is published, and waiting
+     * stops early if the player is caught, or after a number of turns
+     *
+     * @param direction - direction of the cell to watch, from the player
+     * @param maxTurns - the most turns to wait
+     */
+    public void waitUntilSafe(final Direction direction, final int maxTurns) {
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                fastForward(maxTurns, direction);
+            }
+        });
+    }
+
+    /**
+     * Stops all guards on the current board
+     */
+    public void disableGuardMovement() {
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                if (gb != null) {
+                    if (!(gb.isVictory() || gb.isDefeat())) {
+                        replay.recordGuardsStopped();
+                    }
+                    gb.disableGuardMovement();
+                    discardSpeculation();
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the replay of the current board so far, claiming its current turn and outcome.
+     * Missing folders are created; a replay that cannot be written is reported and skipped
+     *
+     * @param filePath - where to write the replay
+     */
+    public void saveReplay(final String filePath) {
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                if (gb == null) {
+                    return;
+                }
+                replay.claim(gb.getTurn(), gb.isVictory(), gb.isDefeat());
+                File parent = new File(filePath).getAbsoluteFile().getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                try {
+                    replay.save(filePath);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Switches the random guard heatmap on or off. Switching it on forecasts the current board
+     * straight away
+     */
+    public void setHeatmapEnabled(final Boolean enabled) {
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                heatmapEnabled = enabled;
+                if (!enabled) {
+                    requestedHeatmap.set(null);
+                    latestHeatmap.set(null);
+                } else if (gb != null) {
+                    requestHeatmap();
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocks until every command queued before this call has been processed
+     *
+     * @throws IllegalStateException -> if playing an input ahead has failed since the last call
+     */
+    public void awaitIdle() {
+        final CountDownLatch done = new CountDownLatch(1);
+        commands.add(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RuntimeException failure = speculationFailure.getAndSet(null);
+        if (failure != null) {
+            throw new IllegalStateException("Playing an input ahead failed", failure);
+        }
+    }
+
+    /**********************************************************************************
+     * Simulation Thread
+     **********************************************************************************/
+
+    /**
+     * Main loop of the simulation thread: runs queued commands in order, forever
+     */
+    private void processCommands() {
+        while (true) {
+            // spend idle time playing inputs ahead, one at a time, until a command arrives
+            Runnable command = commands.poll();
+            try {
+                while ((command == null) && speculateNext()) {
+                    command = commands.poll();
+                }
+            } catch (RuntimeException e) {
+                // a fork bug: kept for awaitIdle, and no more speculation on this board
+                e.printStackTrace();
+                speculationFailure.set(e);
+                speculationFailed = true;
+            }
+            try {
+                if (command == null) {
+                    command = commands.take();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            // a failing command (such as an unreadable level) must not stop the simulation
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Advances the current board several turns in a tight loop, without building snapshots
+     * along the way, then publishes the result
+     *
+     * @param turns - the most turns to wait
+     * @param direction - direction (from the player) of the cell whose becoming unwatched
+     *                    ends the wait, or null to wait every turn
+     */
+    private void fastForward(int turns, Direction direction) {
+        if ((gb == null) || gb.isVictory() || gb.isDefeat() || (turns <= 0)) {
+            return;
+        }
+        for (int i = 0; i < turns; i++) {
+            gb.incrementTurn();
+            replay.record(PlayerInput.WAIT);
+            recordTurn(gb.getTurn() - 1);
+            if (gb.isDefeat() || gb.isVictory()) {
+                break;
+            }
+            if (direction != null) {
+                Point cell = gb.getPlayerLocation();
+                if (direction == Direction.UP) {
+                    cell.translate(0, -1);
+                } else if (direction == Direction.DOWN) {
+                    cell.translate(0, 1);
+                } else if (direction == Direction.LEFT) {
+                    cell.translate(-1, 0);
+                } else {
+                    cell.translate(1, 0);
+                }
+                if (!gb.isWatched((int) cell.getX(), (int) cell.getY())) {
+                    break;
+                }
+            }
+        }
+        discardSpeculation();
+        publish();
+    }
+
+    /**
+     * Plays a single input on a board
+     */
+    static void play(GameBoard board, PlayerInput input) {
+        if (input == PlayerInput.WAIT) {
+            board.incrementTurn();
+        } else {
+            board.moveObject(board.getPlayer(), input.getDirection());
+        }
+    }
+
+    /**
+     * Plays the next input not yet tried on a fork of the current board, and prepares its
+     * snapshot
+     *
+     * @return Boolean -> whether an input was played (false once every input is ready, or
+     *                    when the current board cannot take input)
+     */
+    private Boolean speculateNext() {
+        if ((!speculate) || speculationFailed || (gb == null) || gb.isVictory() 
+                || gb.isDefeat()) {
+            return false;
+        }
+        for (PlayerInput input : PlayerInput.values()) {
+            if (!speculativeBoards.containsKey(input)) {
+                GameBoard fork = gb.fork();
+                fork.setSpeculative(true);
+                play(fork, input);
+                speculativeSnapshots.put(input, new BoardSnapshot(fork, levelId, boardId, walls));
+                speculativeBoards.put(input, fork);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // reports the current board's last turn to the metrics, if it has moved on from a turn
+    private void recordTurn(int turnBefore) {
+        if (gb.getTurn() != turnBefore) {
+            metrics.recordTurn(gb.getLastTurnNanos(), gb.getLastTurnBytes());
+        }
+    }
+
+    // drops results played ahead of a board that is no longer current
+    private void discardSpeculation() {
+        speculativeBoards.clear();
+        speculativeSnapshots.clear();
+        speculationFailed = false;
+    }
+
+    /**
+     * Builds a fresh board for the current level, handing it the guard threads (if any), and
+     * starts its replay
+     */
+    private GameBoard createBoard() {
+        LevelLoadEvent loadEvent = LevelLoadEvent.start();
+        long loadStart = System.nanoTime();
+        long seed = boardSeeds.nextLong();
+        GameBoard board = new GameBoard(currentLevel, darkLevel, visionRadius, seed);
+        if (guardExecutor != null) {
+            board.setParallelGuards(guardExecutor, PARALLEL_MIN_GUARDS);
+        }
+        metrics.recordLevelLoad(System.nanoTime() - loadStart);
+        loadEvent.finish(board);
+        
+        // (the board has just read the level, so hashing it can only fail if it has since gone)
+        long levelHash = 0;
+        try {
+            levelHash = Replay.hashLevel(currentLevel);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        replay = new Replay(currentLevel, levelHash, seed, darkLevel, visionRadius);
+        return board;
+    }
+
+    /**
+     * Publishes a snapshot of the current board, and notifies the listener
+     */
+    private void publish() {
+        publish(new BoardSnapshot(gb, levelId, boardId, walls));
+    }
+
+    /**
+     * Publishes a prepared snapshot of the current board, and notifies the listener
+     */
+    private void publish(BoardSnapshot snapshot) {
+        latestSnapshot.set(snapshot);
+        metrics.recordSnapshot(snapshot);
+        if (heatmapEnabled) {
+            requestHeatmap();
+        }
+        Runnable listener = snapshotListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Starts a forecast of the current board in the background. Only the most recently
+     * requested forecast is ever computed and handed to the GUI
+     */
+    private void requestHeatmap() {
+        // (walls are the same for every board of a level, so the mask is built once)
+        if (heatmapWalls == null) {
+            heatmapWalls = GuardHeatmap.wallMask(walls, gb.getWidth(), gb.getHeight());
+        }
+        final GuardHeatmap heatmap = new GuardHeatmap(gb, HEATMAP_TURNS, boardId,
+                heatmapWalls);
+        requestedHeatmap.set(heatmap);
+        heatmapExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (requestedHeatmap.get() != heatmap) {
+                    return;
+                }
+                heatmap.compute();
+                if (requestedHeatmap.get() == heatmap) {
+                    latestHeatmap.set(heatmap);
+                    Runnable listener = snapshotListener;
+                    if (listener != null) {
+                        listener.run();
+                    }
+                }
+            }
+        });
+    }
+
+    /**********************************************************************************
+     * GETTERS/SETTERS
+     **********************************************************************************/
+
+    // returns the most recently published snapshot (null until a level has loaded)
+    public BoardSnapshot getSnapshot() {
+        return latestSnapshot.get();
+    }
+
+    // returns the most recently computed heatmap (null while the heatmap is off, or not yet
+    // computed)
+    public GuardHeatmap getHeatmap() {
+        return latestHeatmap.get();
+    }
+
+    // sets a callback which is run after every new snapshot (on the simulation thread), and
+    // after every new heatmap (on the heatmap thread)
+    public void setSnapshotListener(Runnable listener) {
+        this.snapshotListener = listener;
+    }
+}
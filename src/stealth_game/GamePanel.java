@@ -2,7 +2,11 @@ package stealth_game;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.image.BufferedImage;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.*;
 
@@ -10,18 +14,19 @@ import javax.swing.*;
  * GamePanel
  *
  * This class holds the primary game logic for how different objects interact
- * with the GUI. It creates calls to the underlying GameBoard to manipulate all
- * objects as necessary
+ * with the GUI. Player inputs are passed to a GameEngine, which runs the underlying 
+ * GameBoard on its own thread; the panel draws the snapshots the engine publishes
  */
 @SuppressWarnings("serial")
 public class GamePanel extends JPanel {
     
-    // Game Board information
-    private GameBoard gb;
-    private Player player;
+    // Simulation information (the GameBoard lives on the engine's thread; the display only
+    // reads the snapshots it publishes)
+    private GameEngine engine;
+    private BoardSnapshot snapshot; // the snapshot currently displayed
+    private AtomicBoolean statusUpdatePending;
     
     // Game Status information
-    private Integer currentTurn;
     private JLabel status; // Current status text, i.e. "Running..."
     private Boolean playing; // whether the game is running
     
@@ -30,24 +35,84 @@ public class GamePanel extends JPanel {
     private int boardWidth;
     private int boardHeight;
     
-    // drawable collections
-    private Sprite playerGraphic;
+    // viewport information (boards larger than the screen are shown through a camera, which
+    // follows the player and decides which range of cells is drawn). The camera position is
+    // in device pixels, so that it can follow the player smoothly while animating
+    private int viewportColumns;
+    private int viewportRows;
+    private int cameraX;
+    private int cameraY;
+    
+    // drawable collections (indexed by cell, so only drawables inside the viewport are visited)
+    private MovingSprite playerGraphic;
     private Sprite victorySquare;
-    private HashSet<Sprite> wallSprites;
-    private HashSet<Sprite> guardSprites;
-    private HashSet<Circle> detectionCircles;
-    private HashSet<Sprite> floor;
+    private SpatialGrid<GameObj> wallSprites;
+    private SpatialGrid<GameObj> guardSprites;
+    private MovingSprite[] guardSpriteList; // the same guard sprites, in snapshot order
+    private DetectionOverlay detectionOverlay;
+    private Sprite floorTile;
+    private ArrayList<GameObj> visibleObjects;
+    
+    // cached background (floor, grid lines, and walls) for a window of cells around the viewport
+    private BufferedImage background;
+    private int backgroundX;
+    private int backgroundY;
+    private int backgroundColumns;
+    private int backgroundRows;
+    
+    // animation mode: moves glide from one cell to the next over ANIMATION_NANOS, with a timer
+    // repainting at a fixed rate while a glide is in progress (and stopping once it finishes)
+    private static final long ANIMATION_NANOS = 120000000L;
+    private static final int FRAMES_PER_SECOND = 120;
+    private Boolean animationMode;
+    private javax.swing.Timer animationTimer;
+    private long animationStart;
+    
+    // turns to wait on the next space press, typed as digits on either the top row or the
+    // keypad (0 when none are typed, and cleared by any other key), and the most turns to wait
+    // for a cell to become safe
+    private static final int MAX_WAIT = 999;
+    private int pendingWait;
+    
+    // whether the random guard heatmap is shown (the engine computes it while it is on), and
+    // its shade at every alpha, built once so drawing a cell never creates a Color
+    private Boolean heatmapMode;
+    private static final Color[] HEAT_PALETTE = heatPalette();
+    
+    // performance overlay: its text is only rebuilt every HUD_REFRESH_NANOS, so drawing it costs
+    // a rectangle and a few strings per frame. It shows the time the last paint took, and
+    // separately the gap between the last two repaints (which, as the panel only repaints on
+    // input or while animating, includes idle time)
+    private static final long HUD_REFRESH_NANOS = 250000000L;
+    private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+    private static final Font HUD_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private Boolean hudMode;
+    private String[] hudLines;
+    private long hudRefreshed;
+    private long lastPaintStart;
+    private long repaintInterval;
     
     // drawable keys/gates
-    private HashSet<Sprite> keySprites;
-    private HashSet<Square> gateSquares;
+    private SpatialGrid<GameObj> keySprites;
+    private SpatialGrid<GameObj> gateSquares;
+    
+    // images are loaded once, pre-scaled to the tile size, and shared between all sprites
+    private AssetCache assets;
+    
+    // tile sizing: baseTileSize is the configured cell size in screen points, zoom scales it, and
+    // renderScale is the display's scaling factor (2.0 on most high-DPI monitors). The board is 
+    // drawn in device pixels, so tileSize is the final pixel size every asset is scaled to
+    private int baseTileSize;
+    private double zoom;
+    private double renderScale;
+    private int tileSize;
     
     // define wall/floor images
     private String wallImage;
     private String floorImage;
     
     // define darkness
-    private HashSet<Square> darknessSquares;
+    private Area darknessArea;
     private Boolean darkLevel;
     private int visionRadius;
     
@@ -67,6 +132,27 @@ public class GamePanel extends JPanel {
         pastKeys = "";
         darkLevel = false;
         visionRadius = 6;
+        assets = new AssetCache();
+        visibleObjects = new ArrayList<GameObj>();
+        
+        // the cell size can be configured with -Dstealth.tileSize=<pixels>
+        baseTileSize = Integer.getInteger("stealth.tileSize", 30);
+        zoom = 1.0;
+        renderScale = 1.0;
+        tileSize = baseTileSize;
+        
+        // the animation timer only runs while moves are being animated
+        animationMode = false;
+        animationTimer = new javax.swing.Timer(1000 / FRAMES_PER_SECOND, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                repaint();
+            }
+        });
+        animationTimer.setCoalesce(true);
+        heatmapMode = false;
+        hudMode = false;
+        pendingWait = 0;
         
         // creates border around the court area, JComponent method
         setBorder(BorderFactory.createLineBorder(Color.BLACK));
@@ -75,30 +161,95 @@ public class GamePanel extends JPanel {
         // keyboard focus, key events are handled by its key listener.
         setFocusable(true);
         
-        // loads requested starter level
+        // start the simulation; whenever it publishes a turn, repaint and refresh the status
+        // text (status updates are coalesced, so a burst of turns only queues one of them)
+        playing = true;
+        statusUpdatePending = new AtomicBoolean(false);
+        engine = new GameEngine();
+        engine.setSnapshotListener(new Runnable() {
+            @Override
+            public void run() {
+                repaint();
+                if (statusUpdatePending.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            clientSideTurnIncrementor();
+                        }
+                    });
+                }
+            }
+        });
+        
+        // loads requested starter level (waiting for it, so the panel can be sized)
         currentLevel = filePath;
         this.status = status;
         setCurrentLevel(currentLevel, 0, darkLevel, visionRadius, 0);
+        engine.awaitIdle();
+        syncSnapshot();
         
         // This key listener detects intended player movement by registering keyboard inputs
         addKeyListener(new KeyAdapter() {
             @Override
 			public void keyPressed(KeyEvent e) {
-                if (playing) {
-                    if (e.getKeyCode() == KeyEvent.VK_LEFT) {
-                        gb.moveObject(player, Direction.LEFT);
+                // a typed count only lasts until the next key that is not a digit
+                int digit = digitOf(e.getKeyCode());
+                int typedWait = pendingWait;
+                if (digit < 0) {
+                    pendingWait = 0;
+                }
+                
+                // zoom controls work whether or not the level is still being played
+                if ((e.getKeyCode() == KeyEvent.VK_EQUALS) || (e.getKeyCode() == KeyEvent.VK_PLUS)
+                        || (e.getKeyCode() == KeyEvent.VK_ADD)) {
+                    setZoom(zoom * 1.25);
+                } else if ((e.getKeyCode() == KeyEvent.VK_MINUS) 
+                        || (e.getKeyCode() == KeyEvent.VK_SUBTRACT)) {
+                    setZoom(zoom / 1.25);
+                } else if ((digit == 0) && (pendingWait == 0)) {
+                    setZoom(1.0);
+                } else if (e.getKeyCode() == KeyEvent.VK_M) {
+                    animationMode = !animationMode;
+                } else if (e.getKeyCode() == KeyEvent.VK_H) {
+                    heatmapMode = !heatmapMode;
+                    engine.setHeatmapEnabled(heatmapMode);
+                    repaint();
+                } else if (e.getKeyCode() == KeyEvent.VK_F3) {
+                    hudMode = !hudMode;
+                    hudLines = null;
+                    repaint();
+                } else if ((e.getKeyCode() == KeyEvent.VK_S) && (snapshot != null)) {
+                    // the replay covers the attempt so far, including a finished one
+                    String replayPath = "replays/" + snapshot.getLevelName() + "-" 
+                            + System.currentTimeMillis() + ".sjr";
+                    engine.saveReplay(replayPath);
+                    status.setText("Replay saved to " + replayPath);
+                } else if (playing) {
+                    // inputs are queued for the simulation thread (held keys queue up too)
+                    if (digit >= 0) {
+                        // digits build up a number of turns for the next wait
+                        pendingWait = Math.min(MAX_WAIT, (pendingWait * 10) + digit);
+                    } else if (e.isShiftDown() && (arrowDirection(e.getKeyCode()) != null)) {
+                        // shift + arrow waits until the cell in that direction is unwatched
+                        engine.waitUntilSafe(arrowDirection(e.getKeyCode()), MAX_WAIT);
+                        pastKeys += " ";
+                    } else if ((e.getKeyCode() == KeyEvent.VK_SPACE) && (typedWait > 1)) {
+                        engine.waitTurns(typedWait);
+                        pastKeys += " ";
+                    } else if (e.getKeyCode() == KeyEvent.VK_LEFT) {
+                        engine.submit(PlayerInput.LEFT);
                         pastKeys += "L";
                     } else if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
-                        gb.moveObject(player, Direction.RIGHT);
+                        engine.submit(PlayerInput.RIGHT);
                         pastKeys += "R";
                     } else if (e.getKeyCode() == KeyEvent.VK_DOWN) {
                         pastKeys += "D";
-                        gb.moveObject(player, Direction.DOWN);
+                        engine.submit(PlayerInput.DOWN);
                     } else if (e.getKeyCode() == KeyEvent.VK_UP) {
                         pastKeys += "U";
-                        gb.moveObject(player, Direction.UP);
+                        engine.submit(PlayerInput.UP);
                     } else if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-                        gb.incrementTurn();
+                        engine.submit(PlayerInput.WAIT);
                         pastKeys += " ";
                     } else if (e.getKeyCode() == KeyEvent.VK_A) {
                         pastKeys += "A";
@@ -107,16 +258,61 @@ public class GamePanel extends JPanel {
                     } else {
                         pastKeys += " ";
                     }
-                    // update GUI, check for victory/defeat, etc
-                    clientSideTurnIncrementor();
+                    
+                    // konami (only the last ten keys can complete the code, and once entered
+                    // it is forgotten, so that the next key cannot complete it again)
+                    if (pastKeys.length() > 10) {
+                        pastKeys = pastKeys.substring(pastKeys.length() - 10);
+                    }
+                    if (pastKeys.equals("UUDDLRLRBA")) {
+                        engine.disableGuardMovement();
+                        pastKeys = "";
+                    }
                 }
             }
         });
     }
     
     /**
-     * Sets the current level to the filepath of choice, then resets the stage.
-     * Also initializes first time setup -- victory square assignment, loading the walls, etc.
+     * Translates a digit key, on the top row or the keypad, to its digit
+     * 
+     * @param keyCode -> the key pressed
+     * @return int -> the digit, or -1 for other keys
+     */
+    private int digitOf(int keyCode) {
+        if ((keyCode >= KeyEvent.VK_0) && (keyCode <= KeyEvent.VK_9)) {
+            return keyCode - KeyEvent.VK_0;
+        } else if ((keyCode >= KeyEvent.VK_NUMPAD0) && (keyCode <= KeyEvent.VK_NUMPAD9)) {
+            return keyCode - KeyEvent.VK_NUMPAD0;
+        }
+        return -1;
+    }
+    
+    /**
+     * Translates an arrow key to its direction
+     * 
+     * @param keyCode -> the key pressed
+     * @return Direction -> the arrow's direction, or null for other keys
+     */
+    private Direction arrowDirection(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_UP:
+                return Direction.UP;
+            case KeyEvent.VK_DOWN:
+                return Direction.DOWN;
+            case KeyEvent.VK_LEFT:
+                return Direction.LEFT;
+            case KeyEvent.VK_RIGHT:
+                return Direction.RIGHT;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Sets the current level to the filepath of choice. The level is loaded by the engine, and
+     * first time setup -- victory square assignment, loading the walls, etc. -- happens once
+     * its first snapshot arrives
      */
     public void setCurrentLevel(String filePath, int levelCount, 
             Boolean isDark, Integer vision, Integer tileset) {
@@ -128,164 +324,223 @@ public class GamePanel extends JPanel {
         // set wall/floor image based on levelCount
         updateTileset(tileset);
         
-        // first time setup
-        gb = new GameBoard(currentLevel, darkLevel, visionRadius);
+        // load the level on the simulation thread
+        engine.loadLevel(currentLevel, darkLevel, visionRadius);
+        requestFocusInWindow();
+    }
+    
+    /**
+     * Changes the zoom level, keeping the current game state. All drawables are rebuilt at the
+     * new tile size (assets for zoom levels seen before come straight from the cache)
+     * 
+     * @param newZoom -> the requested zoom, relative to the configured tile size
+     */
+    public void setZoom(double newZoom) {
+        zoom = Math.max(0.25, Math.min(4.0, newZoom));
+        if (snapshot == null) {
+            return;
+        }
+        updateTileSize();
+        updateViewport();
+        revalidate();
+    }
+    
+    /**
+     * Recomputes the tile size from the configured size, zoom, and display scale, and rebuilds
+     * all drawables if it changed
+     */
+    private void updateTileSize() {
+        int newTileSize = Math.max(4, (int) Math.round(baseTileSize * zoom * renderScale));
+        if (newTileSize != tileSize) {
+            tileSize = newTileSize;
+            buildStaticDrawables();
+            recreateMovables(false);
+        }
+        repaint();
+    }
+    
+    /**
+     * Creates the drawables which don't change during a level -- walls, floor, the victory
+     * square -- at the current tile size
+     */
+    private void buildStaticDrawables() {
         
-        // find board dimensions
-        boardWidth = gb.getWidth() * 30;
-        boardHeight = gb.getHeight() * 30;
+        // find board dimensions, and drop the cached background
+        boardWidth = snapshot.getWidth() * tileSize;
+        boardHeight = snapshot.getHeight() * tileSize;
+        background = null;
         
          // translate all walls into shapes (only done once, since walls cannot be changed)
-        HashSet<Point> wallCoords = gb.getWalls();
-        wallSprites = new HashSet<Sprite>();
+        Set<Point> wallCoords = snapshot.getWalls();
+        wallSprites = new SpatialGrid<GameObj>(snapshot.getWidth(), snapshot.getHeight());
         Iterator<Point> wallIter = wallCoords.iterator();
         while (wallIter.hasNext()) {
             Point nextWall = wallIter.next();
-            Sprite wall = createSprite(nextWall, 30, wallImage);
-            wallSprites.add(wall);
+            Sprite wall = createSprite(nextWall, tileSize, wallImage);
+            wallSprites.add((int) nextWall.getX(), (int) nextWall.getY(), wall);
         }
         
-        // store floor tiles for every square (drawn underneath all objects)
-        HashSet<Point> fullGrid = new HashSet<Point>();
-        for (int row = 0; row < gb.getHeight(); row++) {
-            for (int col = 0; col < gb.getWidth(); col++) {
-                fullGrid.add(new Point(col, row));
-            }
-        }
-        floor = new HashSet<Sprite>();
-        Iterator<Point> floorIter = fullGrid.iterator();
-        while (floorIter.hasNext()) {
-            Point nextFloor = floorIter.next();
-            Sprite floorTile = createSprite(nextFloor, 30, floorImage);
-            floor.add(floorTile);
-        }
+        // every cell shares the same floor tile, which is moved across the viewport when drawn
+        floorTile = createSprite(new Point(0, 0), tileSize, floorImage);
         
         // create a Square to store the victory square (only done once, since victorySquare
         // doesn't move
-        Point victoryPoint = gb.getVictorySquare();
-        victorySquare = createSprite(victoryPoint, 25, "files/assets/altar.png");
+        Point victoryPoint = snapshot.getVictorySquare();
+        victorySquare = createSprite(victoryPoint, (tileSize * 5) / 6, "files/assets/altar.png");
         
-        // resets the level
-        reset();
+        // the detection overlay is cached per level, and updated incrementally each turn
+        // (walls are drawn underneath it, as part of the background, so it skips wall cells)
+        detectionOverlay = new DetectionOverlay(snapshot.getWidth(), snapshot.getHeight(), tileSize, 
+                (tileSize * 2) / 3);
+        detectionOverlay.hideCells(wallCoords);
+        guardSpriteList = null;
     }
     
     /**
      * (Re-)set the game to its initial state.
-     * 
-     * Note that string formatting help was found via StackOverflow here: 
-     * https://stackoverflow.com/questions/6431933/how-to-format-strings-in-java
      */
     public void reset() {
-        gb = new GameBoard(currentLevel, darkLevel, visionRadius);
-        player = gb.getPlayer();
-        currentTurn = gb.getTurn();
-        status.setText(String.format("It's Stealth Time! Currently turn: %d", currentTurn));
-        playing = true;
-        
-        // recreate all movable shapes & repaint
-        recreateMovables();
-        repaint();
+        engine.reset();
 
         // Make sure that this component has the keyboard focus
         requestFocusInWindow();
     }
     
     /**
-     * After the player attempts a move, update client side information.
+     * Gets the engine behind the panel, so the game can be driven without a keyboard (as the
+     * rendering benchmarks do)
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+    
+    /**
+     * Brings the displayed state up to date with the engine's latest snapshot. When the
+     * snapshot belongs to a newly loaded level, the static drawables are rebuilt as well.
+     * In animation mode, moves made on the same board are animated from the positions
+     * currently on screen (waits of several turns jump straight to their result)
+     */
+    private void syncSnapshot() {
+        BoardSnapshot latest = engine.getSnapshot();
+        if ((latest == null) || (latest == snapshot)) {
+            return;
+        }
+        Boolean newLevel = (snapshot == null) || (latest.getLevelId() != snapshot.getLevelId());
+        Boolean animate = animationMode && (!newLevel) 
+                && (latest.getBoardId() == snapshot.getBoardId())
+                && (latest.getTurn() - snapshot.getTurn() <= 1);
+        snapshot = latest;
+        if (newLevel) {
+            updateViewport();
+            buildStaticDrawables();
+            revalidate();
+        }
+        recreateMovables(animate);
+        if (animate) {
+            animationStart = System.nanoTime();
+            animationTimer.start();
+        }
+    }
+    
+    /**
+     * Finds how far along the current animation is, from 0 (previous turn) to 1 (current turn)
+     */
+    private double animationProgress() {
+        if (!animationTimer.isRunning()) {
+            return 1.0;
+        }
+        double progress = (System.nanoTime() - animationStart) / (double) ANIMATION_NANOS;
+        if (progress >= 1.0) {
+            animationTimer.stop();
+            return 1.0;
+        }
+        return progress;
+    }
+    
+    /**
+     * After the engine publishes a turn, update client side information.
      * This is the GUI equivalent of GameBoard's incrementTurn method
+     * 
+     * Note that string formatting help was found via StackOverflow here: 
+     * https://stackoverflow.com/questions/6431933/how-to-format-strings-in-java
      */
     private void clientSideTurnIncrementor() {
-      
-        // recreate all movable shapes
-        recreateMovables();
+        statusUpdatePending.set(false);
+        BoardSnapshot latest = engine.getSnapshot();
       
         // update turn display
-        currentTurn = gb.getTurn();
+        int currentTurn = latest.getTurn();
         status.setText(String.format("It's Stealth Time! Currently turn: %d", currentTurn));
-        repaint();
+        playing = true;
       
         // check if player has won or lost
-        if (gb.isVictory()) {
+        if (latest.isVictory()) {
             status.setText(String.format("Level Complete after %d turns!", currentTurn));
             playing = false;
-        } else if (gb.isDefeat()) {
+        } else if (latest.isDefeat()) {
             status.setText(String.format("You were caught after %d turns!", currentTurn));
             playing = false;
         } 
-      
-        // konami
-        if (pastKeys.contains("UUDDLRLRBA")) {
-            gb.disableGuardMovement();
-        }
-        // clear buffer every 1000 keys
-        if (pastKeys.length() > 1000) {
-            pastKeys = "";
-        }
     }
     
     /**********************************************************************************
      * Mutable Display Methods
      * 
-     * recreateMovables, createSquare, createCircle, coordinateToPixels handle drawing of moving
+     * recreateMovables, createSquare, createDarknessArea, coordinateToPixels handle drawing of moving
      * objects
      **********************************************************************************/
     /**
-     * Called after incrementing the turn or resetting the level. Recreates shapes for all
-     * non-static display elements -- the player, all guards, and the detection zone
+     * Called after a new snapshot arrives. Recreates shapes for all non-static display 
+     * elements -- the player, all guards, and the detection zone
+     * 
+     * @param animate -> whether the player and guards should glide from where they are
+     *                   currently drawn, rather than appear directly in their new cells
      */
-    private void recreateMovables() {
+    private void recreateMovables(Boolean animate) {
+        TurnPhaseEvent rebuildPhase = TurnPhaseEvent.start(TurnPhaseEvent.REBUILD);
       
         // updates player location graphically
-        Point playerLoc = player.getLocation();
-        playerGraphic = createSprite(playerLoc, 30, "files/assets/donald.png");
+        Point playerLoc = snapshot.getPlayerLocation();
+        playerGraphic = createMovingSprite(animate ? playerGraphic : null, playerLoc, 
+                "files/assets/donald.png");
       
-        // create guard squares
-        HashSet<Guard> guards = gb.getGuards();
-        Iterator<Guard> guardIter = guards.iterator();
-        guardSprites = new HashSet<Sprite>();
-        while (guardIter.hasNext()) {
-            Guard guard = guardIter.next();
-            Point guardLoc = guard.getLocation();
+        // create guard squares (guards keep their order between snapshots of the same board)
+        MovingSprite[] previousGuards = guardSpriteList;
+        if ((previousGuards == null) || (previousGuards.length != snapshot.getGuardCount())) {
+            animate = false;
+        }
+        guardSpriteList = new MovingSprite[snapshot.getGuardCount()];
+        guardSprites = new SpatialGrid<GameObj>(snapshot.getWidth(), snapshot.getHeight());
+        for (int i = 0; i < snapshot.getGuardCount(); i++) {
+            Point guardLoc = snapshot.getGuardLocation(i);
           
             // clarify guard type via sprite
             String imageFile = "files/assets/chaos_spawn.png";
-            if (guard instanceof RouteGuard) {
+            if (snapshot.getGuardType(i) == GuardType.ROUTE) {
                 imageFile = "files/assets/paladin.png";
-            } else if (guard instanceof ChaseGuard) {
+            } else if (snapshot.getGuardType(i) == GuardType.CHASE) {
                 imageFile = "files/assets/centaur.png";
             }
-            Sprite guardSprite = createSprite(guardLoc, 30, imageFile);
-            guardSprites.add(guardSprite);
+            MovingSprite guardSprite = createMovingSprite(animate ? previousGuards[i] : null, 
+                    guardLoc, imageFile);
+            guardSprites.add((int) guardLoc.getX(), (int) guardLoc.getY(), guardSprite);
+            guardSpriteList[i] = guardSprite;
         }
       
-        // create detectionZone circles
-        HashSet<Point> dZoneCoords = gb.getDetectionZone();
-        detectionCircles = new HashSet<Circle>();
-        Iterator<Point> dZoneIter = dZoneCoords.iterator();
-        while (dZoneIter.hasNext()) {
-            Point nextDetection = dZoneIter.next();
-            Circle detectionCircle = createCircle(nextDetection, 20, Color.YELLOW);
-            detectionCircles.add(detectionCircle);
-        }
-        
-        // create darkness squares, if needed
-        Boolean isDark = gb.getDarkness();
-        darknessSquares = new HashSet<Square>();
-        if (isDark) {
-            HashSet<Point> darknessZone = gb.getDarknessZone();
-            Iterator<Point> darkIter = darknessZone.iterator();
-            while (darkIter.hasNext()) {
-                Point nextDark = darkIter.next();
-                Square darkSquare = createSquare(nextDark, 30, Color.BLACK);
-                darknessSquares.add(darkSquare);
-            }
+        // update the detection overlay (only changed cells near the viewport are redrawn)
+        detectionOverlay.update(snapshot);
+        
+        // create darkness area, if needed
+        darknessArea = null;
+        if (snapshot.isDark()) {
+            darknessArea = createDarknessArea(playerLoc, snapshot.getVisionRadius());
         }
         
         // create Keys & Gates
-        keySprites = new HashSet<Sprite>();
-        gateSquares = new HashSet<Square>();
-        HashMap<Point, Integer> keys = gb.getKeys();
-        HashMap<Point, Integer> doors = gb.getDoors();
+        keySprites = new SpatialGrid<GameObj>(snapshot.getWidth(), snapshot.getHeight());
+        gateSquares = new SpatialGrid<GameObj>(snapshot.getWidth(), snapshot.getHeight());
+        Map<Point, Integer> keys = snapshot.getKeys();
+        Map<Point, Integer> doors = snapshot.getDoors();
         Iterator<Point> doorIter = doors.keySet().iterator();
         while (doorIter.hasNext()) {
             Point nextDoor = doorIter.next();
@@ -299,8 +554,8 @@ public class GamePanel extends JPanel {
             } else if (keyCode == 4) {
                 doorColor = Color.RED;
             }
-            Square doorSquare = createSquare(nextDoor, 30, doorColor);
-            gateSquares.add(doorSquare);
+            Square doorSquare = createSquare(nextDoor, tileSize, doorColor);
+            gateSquares.add((int) nextDoor.getX(), (int) nextDoor.getY(), doorSquare);
         }
         Iterator<Point> keyIter = keys.keySet().iterator();
         while (keyIter.hasNext()) {
@@ -315,10 +570,13 @@ public class GamePanel extends JPanel {
             } else if (keyCode == 4) {
                 fileName = "files/assets/ring_red.png";
             }
-            Sprite keyAmulet = createSprite(nextKey, 30, fileName);
-            keySprites.add(keyAmulet);
+            Sprite keyAmulet = createSprite(nextKey, tileSize, fileName);
+            keySprites.add((int) nextKey.getX(), (int) nextKey.getY(), keyAmulet);
         }
         
+        // (cells touched: one per sprite rebuilt)
+        rebuildPhase.finish(snapshot.getLevelName(), snapshot.getTurn(), snapshot.getGuardCount(),
+                1 + snapshot.getGuardCount() + keys.size() + doors.size());
     }
     
     /**
@@ -339,30 +597,63 @@ public class GamePanel extends JPanel {
     }
     
     /**
-     * Given a starting point, a color, and a size, handles all steps necessary to construct a
-     * circle on the GUI (representing detection zones)
+     * Builds the darkened region for dark levels: the whole board, with the diamond of cells
+     * within taxicab distance of the player cut out. The outline of the diamond is a staircase,
+     * so the shape has a number of vertices proportional to the vision radius, independent of
+     * how many cells are dark
      * 
-     * @param p -> the point, in grid coordinates
-     * @param size -> and int specifying dimensions
-     * @param color -> the color of the rectangle
-     * @return Square -> the constructed rectangle object
+     * @param p -> the player location, in grid coordinates
+     * @param radius -> the player's vision radius
+     * @return Area -> the region to be filled with darkness
      */
-    private Circle createCircle(Point p, int size, Color color) {
-        Point pixelLoc = coordinateToPixels(p, size);
+    private Area createDarknessArea(Point p, int radius) {
+        TurnPhaseEvent visionPhase = TurnPhaseEvent.start(TurnPhaseEvent.VISION);
+        int xCoord = (int) p.getX();
+        int yCoord = (int) p.getY();
+        
+        // trace the right edge of the diamond top to bottom, then the left edge bottom to top
+        Polygon visible = new Polygon();
+        for (int dy = -radius; dy <= radius; dy++) {
+            int halfWidth = radius - Math.abs(dy);
+            visible.addPoint((xCoord + halfWidth + 1) * tileSize, (yCoord + dy) * tileSize);
+            visible.addPoint((xCoord + halfWidth + 1) * tileSize, (yCoord + dy + 1) * tileSize);
+        }
+        for (int dy = radius; dy >= -radius; dy--) {
+            int halfWidth = radius - Math.abs(dy);
+            visible.addPoint((xCoord - halfWidth) * tileSize, (yCoord + dy + 1) * tileSize);
+            visible.addPoint((xCoord - halfWidth) * tileSize, (yCoord + dy) * tileSize);
+        }
+        
+        Area darkness = new Area(new Rectangle(0, 0, boardWidth, boardHeight));
+        darkness.subtract(new Area(visible));
+        visionPhase.finish(snapshot.getLevelName(), snapshot.getTurn(), snapshot.getGuardCount(),
+                (2L * radius * (radius + 1)) + 1);
+        return darkness;
+    }
+    
+    /**
+     * Constructs a full-cell sprite which moves into the given cell. It starts from the position
+     * the previous sprite is currently drawn at, or directly in the cell if there is none
+     */
+    private MovingSprite createMovingSprite(MovingSprite previous, Point p, String filePath) {
+        Point pixelLoc = coordinateToPixels(p, tileSize);
         int xCoord = (int) pixelLoc.getX();
         int yCoord = (int) pixelLoc.getY();
-        Circle myCircle = new Circle(xCoord, yCoord, size, color);
-        return myCircle;
+        int startX = (previous != null) ? previous.getPx() : xCoord;
+        int startY = (previous != null) ? previous.getPy() : yCoord;
+        return new MovingSprite(startX, startY, xCoord, yCoord, tileSize, 
+                assets.getImage(filePath, tileSize));
     }
     
     /**
-     * Constructs altar
+     * Constructs a sprite for an image asset. The image comes from the asset cache, already
+     * scaled to the sprite's size and shared by every sprite that uses it
      */
     private Sprite createSprite(Point p, int size, String filePath) {
         Point pixelLoc = coordinateToPixels(p, size);
         int xCoord = (int) pixelLoc.getX();
         int yCoord = (int) pixelLoc.getY();
-        Sprite sprite = new Sprite(xCoord, yCoord, size, filePath);
+        Sprite sprite = new Sprite(xCoord, yCoord, size, assets.getImage(filePath, size));
         return sprite;
     }
     
@@ -381,15 +672,15 @@ public class GamePanel extends JPanel {
         }
         int xCoord = (int) p.getX();
         int yCoord = (int) p.getY();
-        int offset = (30 - size) / 2;
-        return new Point((xCoord * 30) + offset, (yCoord * 30) + offset);
+        int offset = (tileSize - size) / 2;
+        return new Point((xCoord * tileSize) + offset, (yCoord * tileSize) + offset);
     }
     
     /**********************************************************************************
      * Main Painting Methods
      * 
      * paintComponent, getPreferredSize -> Creates actual displays for visuals on screen,
-     * sets initial window size
+     * sets initial window size. updateViewport and updateCamera decide which cells are visible
      **********************************************************************************/
     
     /**
@@ -417,84 +708,279 @@ public class GamePanel extends JPanel {
     }
     
     
+    /**
+     * Finds the largest viewport, in cells, which fits on screen. Boards smaller than that are
+     * shown whole, exactly as before; larger boards are scrolled by the camera
+     */
+    private void updateViewport() {
+        int maxColumns = 48;
+        int maxRows = 33;
+        if (!GraphicsEnvironment.isHeadless()) {
+            Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+            maxColumns = Math.max(10, (screen.width - 100) / pointsPerTile());
+            maxRows = Math.max(10, (screen.height - 200) / pointsPerTile());
+        }
+        viewportColumns = Math.min(snapshot.getWidth(), maxColumns);
+        viewportRows = Math.min(snapshot.getHeight(), maxRows);
+    }
+    
+    /**
+     * Centers the camera on the player's drawn position, clamped so that it never scrolls past
+     * the board edge. The visible range depends on the panel's current size, so this is redone 
+     * on every paint
+     */
+    private void updateCamera() {
+        int viewWidth = viewWidth();
+        int viewHeight = viewHeight();
+        int playerCenterX = playerGraphic.getPx() + (tileSize / 2);
+        int playerCenterY = playerGraphic.getPy() + (tileSize / 2);
+        cameraX = Math.max(0, Math.min(playerCenterX - (viewWidth / 2), boardWidth - viewWidth));
+        cameraY = Math.max(0, Math.min(playerCenterY - (viewHeight / 2), 
+                boardHeight - viewHeight));
+    }
+    
+    // size of the panel, in device pixels
+    private int viewWidth() {
+        int panelWidth = (getWidth() > 0) ? getWidth() : viewportColumns * pointsPerTile();
+        return (int) Math.ceil(panelWidth * renderScale);
+    }
+    
+    private int viewHeight() {
+        int panelHeight = (getHeight() > 0) ? getHeight() : viewportRows * pointsPerTile();
+        return (int) Math.ceil(panelHeight * renderScale);
+    }
+    
+    // size of a tile in screen points (before the display's scaling is applied)
+    private int pointsPerTile() {
+        return Math.max(1, (int) Math.round(baseTileSize * zoom));
+    }
+    
+    /**
+     * Makes sure the cached background covers an inclusive range of cells, redrawing it around
+     * that range if it does not. The background holds everything that never changes during a
+     * level (floor, grid lines and walls), so a frame only needs to copy it once
+     */
+    private void updateBackground(int minX, int minY, int maxX, int maxY) {
+        if ((background != null) && (minX >= backgroundX) && (minY >= backgroundY)
+                && (maxX < backgroundX + backgroundColumns) 
+                && (maxY < backgroundY + backgroundRows)) {
+            return;
+        }
+        
+        // cache a few extra cells on each side, so small camera moves need no redraw
+        int margin = 8;
+        backgroundX = Math.max(0, minX - margin);
+        backgroundY = Math.max(0, minY - margin);
+        backgroundColumns = Math.min(snapshot.getWidth(), maxX + margin + 1) - backgroundX;
+        backgroundRows = Math.min(snapshot.getHeight(), maxY + margin + 1) - backgroundY;
+        int lastX = backgroundX + backgroundColumns - 1;
+        int lastY = backgroundY + backgroundRows - 1;
+        background = new BufferedImage(backgroundColumns * tileSize, backgroundRows * tileSize,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D bg = background.createGraphics();
+        bg.translate(-backgroundX * tileSize, -backgroundY * tileSize);
+        
+        // draw floor (this MUST be drawn first)
+        for (int row = backgroundY; row <= lastY; row++) {
+            for (int col = backgroundX; col <= lastX; col++) {
+                floorTile.setPx(col * tileSize);
+                floorTile.setPy(row * tileSize);
+                floorTile.draw(bg);
+            }
+        }
+        
+        // draw boundaries of grid
+        bg.setColor(getForeground());
+        for (int r = backgroundY; r <= lastY + 1; r++) {
+            bg.drawLine(backgroundX * tileSize, r * tileSize, (lastX + 1) * tileSize, r * tileSize);
+        }
+        for (int c = backgroundX; c <= lastX + 1; c++) {
+            bg.drawLine(c * tileSize, backgroundY * tileSize, c * tileSize, (lastY + 1) * tileSize);
+        }
+        
+        // draw all walls
+        drawLayer(bg, wallSprites, backgroundX, backgroundY, lastX, lastY);
+        bg.dispose();
+    }
+    
+    /**
+     * Draws every object of a layer that lies within the visible range of cells
+     */
+    private void drawLayer(Graphics g, SpatialGrid<GameObj> layer, 
+            int minX, int minY, int maxX, int maxY) {
+        visibleObjects.clear();
+        layer.query(minX, minY, maxX, maxY, visibleObjects);
+        for (GameObj obj : visibleObjects) {
+            obj.draw(g);
+        }
+    }
+    
+    /**
+     * Draws the performance overlay in the top left corner: the time between frames, the time
+     * spent painting the last frame and simulating the last turn, heap in use, and garbage
+     * collections so far. The figures are read from EngineMetrics, and only refreshed a few times
+     * a second so they can be read (and so most frames only draw the cached text)
+     */
+    private void drawHud(Graphics g, long now) {
+        if ((hudLines == null) || (now - hudRefreshed >= HUD_REFRESH_NANOS)) {
+            EngineMetrics metrics = EngineMetrics.getInstance();
+            hudLines = new String[] {
+                String.format("paint %7.2f ms", metrics.getLastFrameNanos() / 1e6),
+                String.format("gap   %7.2f ms between repaints", repaintInterval / 1e6),
+                String.format("turn  %7.2f ms", metrics.getLastTurnNanos() / 1e6),
+                String.format("heap  %7d MB", metrics.getHeapUsedBytes() / (1024 * 1024)),
+                String.format("gc    %7d", metrics.getGcCount())
+            };
+            hudRefreshed = now;
+        }
+        g.setFont(HUD_FONT);
+        FontMetrics fontMetrics = g.getFontMetrics();
+        int lineHeight = fontMetrics.getHeight();
+        int width = 0;
+        for (String line : hudLines) {
+            width = Math.max(width, fontMetrics.stringWidth(line));
+        }
+        g.setColor(HUD_BACKGROUND);
+        g.fillRect(0, 0, width + 12, (lineHeight * hudLines.length) + 8);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < hudLines.length; i++) {
+            g.drawString(hudLines[i], 6, 4 + fontMetrics.getAscent() + (i * lineHeight));
+        }
+    }
+    
+    /**
+     * Builds the heatmap shade at each alpha value
+     */
+    private static Color[] heatPalette() {
+        Color[] palette = new Color[256];
+        for (int alpha = 0; alpha < palette.length; alpha++) {
+            palette[alpha] = new Color(255, 64, 0, alpha);
+        }
+        return palette;
+    }
+    
+    /**
+     * Shades the visible cells by how many random guards are expected to watch them over the
+     * next few turns. Nothing is drawn until the forecast for the displayed turn is ready
+     */
+    private void drawHeatmap(Graphics g, int minX, int minY, int maxX, int maxY) {
+        GuardHeatmap heatmap = engine.getHeatmap();
+        if ((heatmap == null) || (heatmap.getBoardId() != snapshot.getBoardId()) 
+                || (heatmap.getTurn() != snapshot.getTurn())) {
+            return;
+        }
+        for (int row = minY; row <= maxY; row++) {
+            for (int col = minX; col <= maxX; col++) {
+                double heat = Math.min(1.0, heatmap.getHeat(col, row));
+                if (heat >= 0.01) {
+                    g.setColor(HEAT_PALETTE[(int) (40 + (160 * heat))]);
+                    g.fillRect(col * tileSize, row * tileSize, tileSize, tileSize);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Draws every guard near the visible range of cells, at its animated position. The range
+     * is widened by a cell, to include guards moving in from just outside the view
+     */
+    private void drawGuards(Graphics g, double progress, int minX, int minY, int maxX, int maxY) {
+        visibleObjects.clear();
+        guardSprites.query(minX - 1, minY - 1, maxX + 1, maxY + 1, visibleObjects);
+        for (GameObj obj : visibleObjects) {
+            ((MovingSprite) obj).interpolate(progress);
+            obj.draw(g);
+        }
+    }
+    
     /**
      * Draws the game board and all components.
      * 
-     * The array itself is drawn with 30x30 pixel squares, calculated using the height/width
-     * of the GameBoard. Other objects are drawn after creation, handled above.
+     * The array itself is drawn with tileSize x tileSize pixel squares, calculated using the
+     * height/width of the GameBoard. Drawing happens in device pixels: any display scaling is
+     * removed from the graphics context and folded into tileSize instead, so that pre-scaled
+     * assets are copied 1:1. Only cells inside the camera's view are drawn: the graphics context
+     * is shifted by the camera offset, and each layer is queried for the visible range.
+     * 
+     * Painting only reads the engine's latest snapshot, never the live GameBoard. Static 
+     * content comes from cached images, so a frame costs a handful of image copies plus the
+     * visible movables -- cheap enough to repaint at a fixed rate while animating.
      */
     @Override
     public void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
+        if (lastPaintStart != 0) {
+            repaintInterval = paintStart - lastPaintStart;
+        }
+        lastPaintStart = paintStart;
         super.paintComponent(g);
-        
-        // draw floor (this MUST be drawn first)
-        Iterator<Sprite> floorIter = floor.iterator();
-        while (floorIter.hasNext()) {
-            Sprite floorTile = floorIter.next();
-            floorTile.draw(g);
+        syncSnapshot();
+        if (snapshot == null) {
+            return;
         }
+        Graphics2D g2 = (Graphics2D) g.create();
         
-        // draw boundaries of grid
-        for (int r = 0; r <= boardHeight; r += 30) {
-            g.drawLine(0, r,  boardWidth,  r);
-        }
-        for (int c = 0; c <= boardWidth; c += 30) {
-            g.drawLine(c, 0,  c,  boardHeight);
+        // pick up the display scale (rebuilding drawables if it changed), then draw unscaled
+        AffineTransform transform = g2.getTransform();
+        if (transform.getScaleX() != renderScale) {
+            renderScale = transform.getScaleX();
+            updateTileSize();
         }
+        g2.setTransform(AffineTransform.getTranslateInstance(
+                Math.round(transform.getTranslateX()), Math.round(transform.getTranslateY())));
         
-        // draw all detectionZone circles
-        // (This happens BEFORE wall-drawing, so that detection that overlaps walls is ignored)
-        Iterator<Circle> detectObjIter = detectionCircles.iterator();
-        while (detectObjIter.hasNext()) {
-            Circle dCircle = detectObjIter.next();
-            dCircle.draw(g);
+        // place the player, then find the visible range of cells around them
+        double progress = animationProgress();
+        playerGraphic.interpolate(progress);
+        updateCamera();
+        int minX = cameraX / tileSize;
+        int minY = cameraY / tileSize;
+        int maxX = Math.min(snapshot.getWidth() - 1, (cameraX + viewWidth() - 1) / tileSize);
+        int maxY = Math.min(snapshot.getHeight() - 1, (cameraY + viewHeight() - 1) / tileSize);
+        g2.translate(-cameraX, -cameraY);
+        
+        // draw floor, grid and walls (this MUST be drawn first)
+        updateBackground(minX, minY, maxX, maxY);
+        g2.drawImage(background, backgroundX * tileSize, backgroundY * tileSize, null);
+        
+        // draw the random guard forecast, if shown
+        if (heatmapMode) {
+            drawHeatmap(g2, minX, minY, maxX, maxY);
         }
         
+        // draw the detectionZone overlay
+        // (This skips wall cells, so that detection that overlaps walls is ignored)
+        detectionOverlay.showRange(minX, minY, maxX, maxY);
+        detectionOverlay.draw(g2);
+        
         // draw key objects
-        victorySquare.draw(g);
-        playerGraphic.draw(g);
+        victorySquare.draw(g2);
+        playerGraphic.draw(g2);
         
         // draw all guards
-        Iterator<Sprite> guardObjIter = guardSprites.iterator();
-        while (guardObjIter.hasNext()) {
-            Sprite guard = guardObjIter.next();
-            guard.draw(g);
-        }
-            
-        // draw all walls
-        Iterator<Sprite> wallObjIter = wallSprites.iterator();
-        while (wallObjIter.hasNext()) {
-            Sprite wall = wallObjIter.next();
-            wall.draw(g);
-        }
+        drawGuards(g2, progress, minX, minY, maxX, maxY);
         
         // draw all gates & keys
-        Iterator<Sprite> keyIter = keySprites.iterator();
-        while (keyIter.hasNext()) {
-            Sprite key = keyIter.next();
-            key.draw(g);
-        } 
-        Iterator<Square> gateIter = gateSquares.iterator();
-        while (gateIter.hasNext()) {
-            Square gate = gateIter.next();
-            gate.draw(g);
-        }   
-        
-        // draw darkness squares, if needed
-        Boolean isDark = gb.getDarkness();
-        if (isDark) {
-            Iterator<Square> darkSquareIter = darknessSquares.iterator();
-            while (darkSquareIter.hasNext()) {
-                Square dSquare = darkSquareIter.next();
-                dSquare.draw(g);
-            }
+        drawLayer(g2, keySprites, minX, minY, maxX, maxY);
+        drawLayer(g2, gateSquares, minX, minY, maxX, maxY);
+        
+        // draw darkness, if needed
+        if (darknessArea != null) {
+            g2.setColor(Color.BLACK);
+            g2.fill(darknessArea);
         }
+        g2.dispose();
+        EngineMetrics.getInstance().recordFrame(System.nanoTime() - paintStart);
         
+        // draw the performance overlay over everything, in screen points
+        if (hudMode) {
+            drawHud(g, paintStart);
+        }
     }
     
     @Override
     public Dimension getPreferredSize() {
-        return new Dimension(boardWidth, boardHeight);
+        return new Dimension(viewportColumns * pointsPerTile(), viewportRows * pointsPerTile());
     }
 
 }
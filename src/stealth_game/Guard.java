@@ -10,6 +10,7 @@ import java.awt.Point;
 public interface Guard extends Movable {
     public int getDetectionRadius();
     public DetectionType getDetectionType();
+    public GuardType getGuardType();
     public Direction getMoveDirection();
     public Direction getLastMove();
     public Direction moveFailed();
@@ -0,0 +1,314 @@
+package stealth_game;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A forecast of where the board's RandomGuards will be watching over the next few turns. Each turn
+ * a random guard steps in one of its legal directions with equal chance (or stays put if it has
+ * none), so its position and facing form a Markov chain. The chain is stepped forward as a
+ * probability distribution over (cell, facing) states, and each state's detection is weighted by
+ * its probability, giving the expected number of random guards watching (or standing on) each cell
+ * at each turn. The heatmap keeps the highest of those expectations over the forecast.
+ *
+ * Legality is judged as GameBoard.checkMoveLegality judges it, from the board as it stands when
+ * the heatmap is made, except that cells holding the player or another guard count as open: they
+ * are expected to move. Other guards are left out of the forecast entirely.
+ *
+ * A heatmap copies what it needs from the board when created (on the board's thread), and can
+ * then be computed on any thread. Walls never change, so the engine builds a wall mask once per
+ * level and each heatmap copies it, marking only the doors still closed; a board without random
+ * guards copies nothing at all.
+ */
+public class GuardHeatmap {
+
+    // directions in ordinal order, and the cell offsets of each
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int FACINGS = DIRECTIONS.length;
+
+    // which board and turn the forecast starts from, and how many turns it covers
+    private final int boardId;
+    private final int turn;
+    private final int turns;
+
+    // board dimensions, and cells which guards may not step onto and cannot see through (walls
+    // and closed doors; null when there are no random guards)
+    private final int width;
+    private final int height;
+    private final boolean[] blocked;
+
+    // the random guards: location, facing, and detection
+    private final int guardCount;
+    private final int[] guardX;
+    private final int[] guardY;
+    private final byte[] guardFacing;
+    private final int[] guardRadius;
+    private final DetectionType[] guardDetection;
+
+    // highest expected number of watching guards per cell, over the forecast (null until
+    // computed)
+    private volatile double[] heat;
+
+    /**
+     * Copies the random guards and board layout from a board, building its wall mask. Must be
+     * called from the thread that owns the board
+     *
+     * @param gb -> the board to forecast
+     * @param turns -> number of turns to look ahead
+     * @param boardId -> identifier of the board instance (see GameEngine)
+     */
+    public GuardHeatmap(GameBoard gb, int turns, int boardId) {
+        this(gb, turns, boardId, wallMask(gb.getWalls(), gb.getWidth(), gb.getHeight()));
+    }
+
+    /**
+     * Copies the random guards and board layout from a board. Must be called from the thread
+     * that owns the board
+     *
+     * @param gb -> the board to forecast
+     * @param turns -> number of turns to look ahead
+     * @param boardId -> identifier of the board instance (see GameEngine)
+     * @param walls -> the board's wall mask (see wallMask), which is only read
+     */
+    public GuardHeatmap(GameBoard gb, int turns, int boardId, boolean[] walls) {
+        this.boardId = boardId;
+        this.turn = gb.getTurn();
+        this.turns = turns;
+        this.width = gb.getWidth();
+        this.height = gb.getHeight();
+
+        // copy the random guards (and nothing else) in board order
+        HashSet<Guard> guards = gb.getGuards();
+        int[] xs = new int[guards.size()];
+        int[] ys = new int[guards.size()];
+        byte[] facings = new byte[guards.size()];
+        int[] radii = new int[guards.size()];
+        DetectionType[] detections = new DetectionType[guards.size()];
+        int count = 0;
+        Iterator<Guard> guardIter = guards.iterator();
+        while (guardIter.hasNext()) {
+            Guard guard = guardIter.next();
+            if (guard.getGuardType() == GuardType.RANDOM) {
+                Point location = guard.getLocation();
+                xs[count] = (int) location.getX();
+                ys[count] = (int) location.getY();
+                facings[count] = (byte) guard.getLastMove().ordinal();
+                radii[count] = guard.getDetectionRadius();
+                detections[count] = guard.getDetectionType();
+                count += 1;
+            }
+        }
+        guardCount = count;
+        guardX = Arrays.copyOf(xs, count);
+        guardY = Arrays.copyOf(ys, count);
+        guardFacing = Arrays.copyOf(facings, count);
+        guardRadius = Arrays.copyOf(radii, count);
+        guardDetection = Arrays.copyOf(detections, count);
+
+        // walls and closed doors are the only cells that never open up during the forecast
+        if (count == 0) {
+            blocked = null;
+        } else {
+            blocked = walls.clone();
+            Iterator<Point> doorIter = gb.getDoors().keySet().iterator();
+            while (doorIter.hasNext()) {
+                Point door = doorIter.next();
+                blocked[((int) door.getY() * width) + (int) door.getX()] = true;
+            }
+        }
+    }
+
+    /**
+     * Marks a board's walls, as the mask heatmaps of that board are built from
+     *
+     * @param walls -> the board's walls
+     * @param width -> board width, in cells
+     * @param height -> board height, in cells
+     * @return boolean[] -> whether each cell (y * width + x) is a wall
+     */
+    public static boolean[] wallMask(Set<Point> walls, int width, int height) {
+        boolean[] mask = new boolean[width * height];
+        Iterator<Point> wallIter = walls.iterator();
+        while (wallIter.hasNext()) {
+            Point wall = wallIter.next();
+            mask[((int) wall.getY() * width) + (int) wall.getX()] = true;
+        }
+        return mask;
+    }
+
+    /**
+     * Runs the forecast. Each guard's distribution is kept as a short list of the states it
+     * can be in (which only grows by a step each turn), and is stepped through one shared dense
+     * array, so the work follows the guards' reach rather than the board's size
+     */
+    public void compute() {
+        int cells = width * height;
+        VisibilityMap sight = null;
+        for (int g = 0; g < guardCount; g++) {
+            if (guardDetection[g] == DetectionType.SIGHT) {
+                sight = new VisibilityMap(width, height);
+                for (int c = 0; c < cells; c++) {
+                    if (blocked[c]) {
+                        sight.setBlocked(c % width, c / width, true);
+                    }
+                }
+                break;
+            }
+        }
+
+        // each guard starts certain of its state
+        int[][] states = new int[guardCount][];
+        double[][] probs = new double[guardCount][];
+        for (int g = 0; g < guardCount; g++) {
+            states[g] = new int[] {(((guardY[g] * width) + guardX[g]) * FACINGS) + guardFacing[g]};
+            probs[g] = new double[] {1.0};
+        }
+
+        // scratch arrays: next distribution (dense, by state), and this turn's expectations
+        double[] next = new double[cells * FACINGS];
+        int[] nextStates = new int[cells * FACINGS];
+        double[] turnHeat = new double[cells];
+        int[] touched = new int[cells];
+        double[] result = new double[cells];
+
+        for (int t = 1; t <= turns; t++) {
+            int touchedCount = 0;
+            for (int g = 0; g < guardCount; g++) {
+                // step the chain: each state spreads evenly over its legal moves
+                int nextCount = 0;
+                for (int s = 0; s < states[g].length; s++) {
+                    int cell = states[g][s] / FACINGS;
+                    int cellX = cell % width;
+                    int cellY = cell / width;
+                    int moves = 0;
+                    for (int d = 0; d < FACINGS; d++) {
+                        if (canEnter(cellX + deltaX(d), cellY + deltaY(d))) {
+                            moves += 1;
+                        }
+                    }
+                    if (moves == 0) {
+                        nextCount = spread(states[g][s], probs[g][s], next, nextStates,
+                                nextCount);
+                        continue;
+                    }
+                    for (int d = 0; d < FACINGS; d++) {
+                        int toX = cellX + deltaX(d);
+                        int toY = cellY + deltaY(d);
+                        if (canEnter(toX, toY)) {
+                            nextCount = spread((((toY * width) + toX) * FACINGS) + d,
+                                    probs[g][s] / moves, next, nextStates, nextCount);
+                        }
+                    }
+                }
+
+                // gather the new distribution back into its short list
+                states[g] = Arrays.copyOf(nextStates, nextCount);
+                probs[g] = new double[nextCount];
+                for (int s = 0; s < nextCount; s++) {
+                    probs[g][s] = next[states[g][s]];
+                    next[states[g][s]] = 0.0;
+                }
+
+                // weight each state's detection (and the cell itself) by its probability
+                for (int s = 0; s < nextCount; s++) {
+                    int cell = states[g][s] / FACINGS;
+                    int cellX = cell % width;
+                    int cellY = cell / width;
+                    Direction facing = DIRECTIONS[states[g][s] % FACINGS];
+                    int radius = guardRadius[g];
+                    SightTable table = (guardDetection[g] == DetectionType.SIGHT)
+                            ? sight.getTable(cellX, cellY, radius) : null;
+                    for (int row = Math.max(0, cellY - radius);
+                            row <= Math.min(height - 1, cellY + radius); row++) {
+                        for (int col = Math.max(0, cellX - radius);
+                                col <= Math.min(width - 1, cellX + radius); col++) {
+                            if (((col == cellX) && (row == cellY))
+                                    || DetectionStencil.covers(col, row, cellX, cellY, radius,
+                                            guardDetection[g], facing, table)) {
+                                int index = (row * width) + col;
+                                if (turnHeat[index] == 0.0) {
+                                    touched[touchedCount++] = index;
+                                }
+                                turnHeat[index] += probs[g][s];
+                            }
+                        }
+                    }
+                }
+            }
+
+            // keep the highest expectation per cell, and clear this turn's
+            for (int i = 0; i < touchedCount; i++) {
+                int index = touched[i];
+                result[index] = Math.max(result[index], turnHeat[index]);
+                turnHeat[index] = 0.0;
+            }
+        }
+        heat = result;
+    }
+
+    // adds probability to a state of the next distribution, listing the state when first seen
+    private static int spread(int state, double prob, double[] next, int[] nextStates,
+            int nextCount) {
+        if (next[state] == 0.0) {
+            nextStates[nextCount++] = state;
+        }
+        next[state] += prob;
+        return nextCount;
+    }
+
+    // checks whether a random guard could step onto a cell
+    private Boolean canEnter(int xCoord, int yCoord) {
+        return (xCoord >= 0) && (yCoord >= 0) && (xCoord < width) && (yCoord < height)
+                && (!blocked[(yCoord * width) + xCoord]);
+    }
+
+    private static int deltaX(int direction) {
+        return (DIRECTIONS[direction] == Direction.LEFT) ? -1
+                : ((DIRECTIONS[direction] == Direction.RIGHT) ? 1 : 0);
+    }
+
+    private static int deltaY(int direction) {
+        return (DIRECTIONS[direction] == Direction.UP) ? -1
+                : ((DIRECTIONS[direction] == Direction.DOWN) ? 1 : 0);
+    }
+
+    /**********************************************************************************
+     * GETTERS
+     **********************************************************************************/
+
+    /**
+     * Finds the highest expected number of random guards watching (or standing on) a cell on
+     * any turn of the forecast. Returns 0 until the heatmap has been computed
+     */
+    public double getHeat(int xCoord, int yCoord) {
+        double[] computed = this.heat;
+        if ((computed == null) || (xCoord < 0) || (yCoord < 0) || (xCoord >= width)
+                || (yCoord >= height)) {
+            return 0.0;
+        }
+        return computed[(yCoord * width) + xCoord];
+    }
+
+    public Boolean isComputed() {
+        return this.heat != null;
+    }
+
+    public int getBoardId() {
+        return this.boardId;
+    }
+
+    public int getTurn() {
+        return this.turn;
+    }
+
+    public int getTurns() {
+        return this.turns;
+    }
+
+    public int getGuardCount() {
+        return this.guardCount;
+    }
+}
@@ -0,0 +1,684 @@
+package stealth_game;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Holds the state of every guard on a board in parallel primitive arrays (structure of arrays),
+ * with guard i's state spread across index i of each array. RouteGuard, RandomGuard and ChaseGuard
+ * objects are thin views onto one index of a store, so a guard costs a few dozen bytes of array
+ * slots instead of a graph of small heap objects, and a turn's update walks flat arrays.
+ *
+ * Directions are stored as Direction ordinals, with NO_DIRECTION for "none". The movement rules
+ * for each guard type live here, and are dispatched on the guard's type:
+ *    - Route guards count their successful moves, and read each move from a shared RouteTable
+ *    - Random guards keep a bitmask of directions not yet tried this turn, and a random number
+ *      generator state which steps exactly like java.util.Random
+ *    - Chase guards count failed attempts, and seekers follow the board's DistanceField
+ *
+ * A store belonging to a board can also index its guards spatially, in square buckets of cells,
+ * so that the guards near a cell (or a range of cells) are found without visiting every guard.
+ */
+public class GuardStore {
+
+    // marks a missing direction in the direction arrays
+    public static final byte NO_DIRECTION = -1;
+
+    // constants of java.util.Random's linear congruential generator
+    private static final long RNG_MULTIPLIER = 0x5DEECE66DL;
+    private static final long RNG_ADDEND = 0xBL;
+    private static final long RNG_MASK = (1L << 48) - 1;
+
+    // all directions, in ordinal order, and the bitmask with every direction set
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int ALL_DIRECTIONS = (1 << DIRECTIONS.length) - 1;
+    private static final GuardType[] GUARD_TYPES = GuardType.values();
+    private static final DetectionType[] DETECTION_TYPES = DetectionType.values();
+
+    // number of cells along each side of a spatial index bucket
+    private static final int BUCKET_SIZE = 8;
+
+    // number of guards, and capacity of the arrays
+    private int size;
+    private int capacity;
+
+    // core information
+    private int[] guardX;
+    private int[] guardY;
+    private byte[] type;
+    private byte[] detectionType;
+    private int[] detectionRadius;
+    private byte[] lastMove;
+    private byte[] attemptedMove;
+
+    // route guards: route, starting location, and successful move count (the route cursor)
+    private RouteTable[] routes;
+    private int[] startX;
+    private int[] startY;
+    private long[] moveCount;
+
+    // random guards: untried directions, and generator state
+    private byte[] untriedMoves;
+    private long[] rngState;
+
+    // chase guards: failed attempts, and (for seekers) the queued steps toward the player
+    private byte[] failCount;
+    private boolean[] seeking;
+    private byte[] seekOptions;
+    private byte[] seekCount;
+    private byte[] seekIndex;
+
+    // shared by all chase guards
+    private int playerX;
+    private int playerY;
+    private DistanceField seekingField;
+
+    // compiled routes, shared between guards walking the same route
+    private HashMap<String, RouteTable> routeCache;
+
+    // spatial index (null until enabled): guard indices per bucket, and each guard's bucket
+    // and slot within it, so a guard can be moved between buckets in constant time
+    private int bucketColumns;
+    private int bucketRows;
+    private int[][] bucketGuards;
+    private int[] bucketCounts;
+    private int[] guardBucket;
+    private int[] guardSlot;
+
+    // largest detection radius of any guard, which bounds how far away a watching guard can be
+    private int maxRadius;
+
+    /**
+     * Creates an empty store, with room for a few guards
+     */
+    public GuardStore() {
+        routeCache = new HashMap<String, RouteTable>();
+        resize(4);
+    }
+
+    /**
+     * Adds a guard, growing the arrays if needed
+     *
+     * @return int -> the new guard's index
+     */
+    public int add(GuardType guardType, int xCoord, int yCoord, int radius,
+            DetectionType detection) {
+        if (size == capacity) {
+            resize(capacity * 2);
+        }
+        int index = size;
+        size += 1;
+        guardX[index] = xCoord;
+        guardY[index] = yCoord;
+        type[index] = (byte) guardType.ordinal();
+        detectionType[index] = (byte) detection.ordinal();
+        detectionRadius[index] = radius;
+        lastMove[index] = (byte) Direction.UP.ordinal();
+        attemptedMove[index] = NO_DIRECTION;
+        startX[index] = xCoord;
+        startY[index] = yCoord;
+        untriedMoves[index] = (byte) ALL_DIRECTIONS;
+        maxRadius = Math.max(maxRadius, radius);
+        if (bucketGuards != null) {
+            insert(index, bucketOf(xCoord, yCoord));
+        }
+        return index;
+    }
+
+    /**
+     * Copies the store, so the copy's guards can move without affecting this store's guards.
+     * Compiled routes are immutable, and are shared
+     *
+     * @param field -> the distance field the copy's seekers follow (the copying board's own)
+     * @return GuardStore -> the copy
+     */
+    public GuardStore copy(DistanceField field) {
+        GuardStore other = new GuardStore();
+        other.size = size;
+        other.capacity = capacity;
+        other.guardX = guardX.clone();
+        other.guardY = guardY.clone();
+        other.type = type.clone();
+        other.detectionType = detectionType.clone();
+        other.detectionRadius = detectionRadius.clone();
+        other.lastMove = lastMove.clone();
+        other.attemptedMove = attemptedMove.clone();
+        other.routes = routes.clone();
+        other.startX = startX.clone();
+        other.startY = startY.clone();
+        other.moveCount = moveCount.clone();
+        other.untriedMoves = untriedMoves.clone();
+        other.rngState = rngState.clone();
+        other.failCount = failCount.clone();
+        other.seeking = seeking.clone();
+        other.seekOptions = seekOptions.clone();
+        other.seekCount = seekCount.clone();
+        other.seekIndex = seekIndex.clone();
+        other.playerX = playerX;
+        other.playerY = playerY;
+        other.seekingField = (seekingField == null) ? null : field;
+        other.routeCache = routeCache;
+        other.maxRadius = maxRadius;
+        other.guardBucket = guardBucket.clone();
+        other.guardSlot = guardSlot.clone();
+        if (bucketGuards != null) {
+            other.bucketColumns = bucketColumns;
+            other.bucketRows = bucketRows;
+            other.bucketCounts = bucketCounts.clone();
+            other.bucketGuards = new int[bucketGuards.length][];
+            for (int b = 0; b < bucketGuards.length; b++) {
+                if (bucketGuards[b] != null) {
+                    other.bucketGuards[b] = bucketGuards[b].clone();
+                }
+            }
+        }
+        return other;
+    }
+
+    // grows every array to a new capacity
+    private void resize(int newCapacity) {
+        capacity = newCapacity;
+        guardX = Arrays.copyOf(nonNull(guardX), capacity);
+        guardY = Arrays.copyOf(nonNull(guardY), capacity);
+        type = Arrays.copyOf(nonNull(type), capacity);
+        detectionType = Arrays.copyOf(nonNull(detectionType), capacity);
+        detectionRadius = Arrays.copyOf(nonNull(detectionRadius), capacity);
+        lastMove = Arrays.copyOf(nonNull(lastMove), capacity);
+        attemptedMove = Arrays.copyOf(nonNull(attemptedMove), capacity);
+        routes = Arrays.copyOf((routes == null) ? new RouteTable[0] : routes, capacity);
+        startX = Arrays.copyOf(nonNull(startX), capacity);
+        startY = Arrays.copyOf(nonNull(startY), capacity);
+        moveCount = Arrays.copyOf((moveCount == null) ? new long[0] : moveCount, capacity);
+        untriedMoves = Arrays.copyOf(nonNull(untriedMoves), capacity);
+        rngState = Arrays.copyOf((rngState == null) ? new long[0] : rngState, capacity);
+        failCount = Arrays.copyOf(nonNull(failCount), capacity);
+        seeking = Arrays.copyOf((seeking == null) ? new boolean[0] : seeking, capacity);
+        seekOptions = Arrays.copyOf(nonNull(seekOptions), capacity);
+        seekCount = Arrays.copyOf(nonNull(seekCount), capacity);
+        seekIndex = Arrays.copyOf(nonNull(seekIndex), capacity);
+        guardBucket = Arrays.copyOf(nonNull(guardBucket), capacity);
+        guardSlot = Arrays.copyOf(nonNull(guardSlot), capacity);
+    }
+
+    private static int[] nonNull(int[] array) {
+        return (array == null) ? new int[0] : array;
+    }
+
+    private static byte[] nonNull(byte[] array) {
+        return (array == null) ? new byte[0] : array;
+    }
+
+    /**
+     * Gives a route guard its route, compiling each distinct route string once
+     */
+    public void setRoute(int index, String route) {
+        RouteTable table = routeCache.get(route);
+        if (table == null) {
+            table = new RouteTable(route);
+            routeCache.put(route, table);
+        }
+        routes[index] = table;
+    }
+
+    /**
+     * Seeds a random guard's generator, scrambling the seed as java.util.Random does
+     */
+    public void setSeed(int index, long seed) {
+        rngState[index] = (seed ^ RNG_MULTIPLIER) & RNG_MASK;
+    }
+
+    /**
+     * Makes a chase guard follow the store's distance field
+     */
+    public void setSeeking(int index, DistanceField field) {
+        seekingField = field;
+        seeking[index] = true;
+    }
+
+    /**********************************************************************************
+     * Spatial Index
+     *
+     * Guards are bucketed by the cell they stand on. Queries return every guard in the buckets
+     * overlapping a range of cells, which may include guards just outside the range
+     **********************************************************************************/
+
+    /**
+     * Starts indexing guards over a board of the given size. Guards already in the store are
+     * indexed immediately, and later guards as they are added or moved
+     *
+     * @param width -> board width, in cells
+     * @param height -> board height, in cells
+     */
+    public void enableIndex(int width, int height) {
+        bucketColumns = Math.max(1, (width + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        bucketRows = Math.max(1, (height + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        bucketGuards = new int[bucketColumns * bucketRows][];
+        bucketCounts = new int[bucketColumns * bucketRows];
+        for (int i = 0; i < size; i++) {
+            insert(i, bucketOf(guardX[i], guardY[i]));
+        }
+    }
+
+    /**
+     * Collects the guards in the buckets overlapping an inclusive range of cells. Without an
+     * index, every guard is returned
+     *
+     * @param minX, minY -> top left cell of the range
+     * @param maxX, maxY -> bottom right cell of the range
+     * @param found -> receives the guard indices (must have room for every guard in the store)
+     * @return int -> the number of guards found
+     */
+    public int query(int minX, int minY, int maxX, int maxY, int[] found) {
+        if (bucketGuards == null) {
+            for (int i = 0; i < size; i++) {
+                found[i] = i;
+            }
+            return size;
+        }
+        int firstColumn = Math.max(0, Math.floorDiv(minX, BUCKET_SIZE));
+        int firstRow = Math.max(0, Math.floorDiv(minY, BUCKET_SIZE));
+        int lastColumn = Math.min(bucketColumns - 1, Math.floorDiv(maxX, BUCKET_SIZE));
+        int lastRow = Math.min(bucketRows - 1, Math.floorDiv(maxY, BUCKET_SIZE));
+        int count = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstColumn; col <= lastColumn; col++) {
+                int bucket = (row * bucketColumns) + col;
+                if (bucketCounts[bucket] > 0) {
+                    System.arraycopy(bucketGuards[bucket], 0, found, count, bucketCounts[bucket]);
+                    count += bucketCounts[bucket];
+                }
+            }
+        }
+        return count;
+    }
+
+    // adds a guard to the end of a bucket, growing the bucket if needed
+    private void insert(int index, int bucket) {
+        int[] members = bucketGuards[bucket];
+        if (members == null) {
+            members = new int[4];
+            bucketGuards[bucket] = members;
+        } else if (bucketCounts[bucket] == members.length) {
+            members = Arrays.copyOf(members, members.length * 2);
+            bucketGuards[bucket] = members;
+        }
+        members[bucketCounts[bucket]] = index;
+        guardBucket[index] = bucket;
+        guardSlot[index] = bucketCounts[bucket];
+        bucketCounts[bucket] += 1;
+    }
+
+    // removes a guard from its bucket, filling its slot with the bucket's last guard
+    private void remove(int index) {
+        int bucket = guardBucket[index];
+        int last = bucketGuards[bucket][bucketCounts[bucket] - 1];
+        bucketGuards[bucket][guardSlot[index]] = last;
+        guardSlot[last] = guardSlot[index];
+        bucketCounts[bucket] -= 1;
+    }
+
+    // finds the bucket holding a cell (cells off the board are clamped to the edge buckets)
+    private int bucketOf(int xCoord, int yCoord) {
+        int col = Math.min(bucketColumns - 1, Math.max(0, xCoord / BUCKET_SIZE));
+        int row = Math.min(bucketRows - 1, Math.max(0, yCoord / BUCKET_SIZE));
+        return (row * bucketColumns) + col;
+    }
+
+    /**********************************************************************************
+     * Movement Handling
+     *
+     * The per-guard methods behind the Guard interface, dispatched on guard type
+     **********************************************************************************/
+
+    /**
+     * Finds the intended moves of a range of guards, in one pass over the arrays
+     *
+     * @param from -> first guard index (inclusive)
+     * @param to -> last guard index (exclusive)
+     * @param intents -> receives each guard's intended direction, or null
+     */
+    public void computeIntents(int from, int to, Direction[] intents) {
+        for (int i = from; i < to; i++) {
+            byte move;
+            switch (GUARD_TYPES[type[i]]) {
+                case ROUTE:
+                    move = routeMove(i);
+                    break;
+                case RANDOM:
+                    move = randomMove(i);
+                    break;
+                default:
+                    move = chaseMove(i);
+                    break;
+            }
+            intents[i] = toDirection(move);
+        }
+    }
+
+    /**
+     * Finds the intended move direction of a guard
+     */
+    public Direction getMoveDirection(int index) {
+        switch (GUARD_TYPES[type[index]]) {
+            case ROUTE:
+                return toDirection(routeMove(index));
+            case RANDOM:
+                return toDirection(randomMove(index));
+            default:
+                return toDirection(chaseMove(index));
+        }
+    }
+
+    /**
+     * Records a successful move in the guard's most recently attempted direction
+     */
+    public void moveSucceeded(int index) {
+        switch (GUARD_TYPES[type[index]]) {
+            case ROUTE:
+                lastMove[index] = routeMove(index);
+                moveCount[index] += 1;
+                break;
+            case RANDOM:
+                lastMove[index] = attemptedMove[index];
+                untriedMoves[index] = (byte) ALL_DIRECTIONS;
+                break;
+            default:
+                lastMove[index] = attemptedMove[index];
+                failCount[index] = 0;
+                break;
+        }
+    }
+
+    /**
+     * Records a failed move, and finds the next direction to attempt this turn
+     *
+     * @return Direction -> the next direction to try, or null to stop trying
+     */
+    public Direction moveFailed(int index) {
+        switch (GUARD_TYPES[type[index]]) {
+            case ROUTE:
+                // route guards wait for the way to clear
+                return null;
+            case RANDOM:
+                // remove the attempted direction, and try another (if any are left)
+                untriedMoves[index] &= (byte) ~(1 << attemptedMove[index]);
+                if (untriedMoves[index] == 0) {
+                    untriedMoves[index] = (byte) ALL_DIRECTIONS;
+                    return null;
+                }
+                return toDirection(randomMove(index));
+            default:
+                return chaseFailed(index);
+        }
+    }
+
+    /**
+     * Route guards read the direction of their next successful move from the route
+     */
+    private byte routeMove(int index) {
+        return (byte) routes[index].getMove(moveCount[index]).ordinal();
+    }
+
+    /**
+     * Random guards pick uniformly among the directions not yet tried this turn, in
+     * ordinal order
+     */
+    private byte randomMove(int index) {
+        int untried = untriedMoves[index];
+        int pick = nextInt(index, Integer.bitCount(untried));
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            if ((untried & (1 << d)) != 0) {
+                if (pick == 0) {
+                    attemptedMove[index] = (byte) d;
+                    break;
+                }
+                pick -= 1;
+            }
+        }
+        return attemptedMove[index];
+    }
+
+    /**
+     * Steps a random guard's generator, returning a value in [0, bound). This is
+     * java.util.Random's nextInt(bound), so guards seeded alike choose alike
+     */
+    private int nextInt(int index, int bound) {
+        int bits = nextBits(index);
+        if ((bound & -bound) == bound) {
+            return (int) ((bound * (long) bits) >> 31);
+        }
+        int value = bits % bound;
+        while (bits - value + (bound - 1) < 0) {
+            bits = nextBits(index);
+            value = bits % bound;
+        }
+        return value;
+    }
+
+    // advances a generator, returning its next 31 bits
+    private int nextBits(int index) {
+        long state = ((rngState[index] * RNG_MULTIPLIER) + RNG_ADDEND) & RNG_MASK;
+        rngState[index] = state;
+        return (int) (state >>> (48 - 31));
+    }
+
+    /**
+     * Chase guards reduce the larger axis of distance to the player; after a failure they try
+     * the other axis. Seekers instead take the first step found toward the player along the
+     * distance field, falling back to chasing directly if the player cannot be reached
+     */
+    private byte chaseMove(int index) {
+        if (seeking[index] && (failCount[index] == 0) && findSeekOptions(index)) {
+            seekIndex[index] = 0;
+            attemptedMove[index] = seekOption(index, 0);
+            return attemptedMove[index];
+        }
+
+        // find relative x/y distances between Player/Guard
+        int xDistance = guardX[index] - playerX;
+        int yDistance = guardY[index] - playerY;
+
+        // if previous attempt failed, reset initial attempted axis to 0
+        if (failCount[index] == 1) {
+            if (isHorizontal(attemptedMove[index])) {
+                xDistance = 0;
+            } else {
+                yDistance = 0;
+            }
+
+            // if both axes are zero (b/c guard was aligned on one-axis and unable to move
+            // along the other), return no direction to skip
+            if ((xDistance == 0) && (yDistance == 0)) {
+                return NO_DIRECTION;
+            }
+        }
+
+        if (Math.abs(xDistance) > Math.abs(yDistance)) {
+            attemptedMove[index] = ordinal((xDistance >= 0) ? Direction.LEFT : Direction.RIGHT);
+        } else {
+            attemptedMove[index] = ordinal((yDistance >= 0) ? Direction.UP : Direction.DOWN);
+        }
+        return attemptedMove[index];
+    }
+
+    /**
+     * Seekers try each other step toward the player, then give up. Other chase guards retry
+     * once along the other axis
+     */
+    private Direction chaseFailed(int index) {
+        if (seeking[index] && (seekCount[index] > 0)) {
+            seekIndex[index] += 1;
+            if (seekIndex[index] < seekCount[index]) {
+                attemptedMove[index] = seekOption(index, seekIndex[index]);
+                return toDirection(attemptedMove[index]);
+            }
+            seekCount[index] = 0;
+            return null;
+        }
+
+        failCount[index] += 1;
+        if (failCount[index] < 2) {
+            chaseMove(index);
+        } else {
+            failCount[index] = 0;
+            return null;
+        }
+        return toDirection(attemptedMove[index]);
+    }
+
+    /**
+     * Collects every direction leading to a cell one move closer to the player, preferring
+     * the axis with the larger distance (as plain chase guards do). Options are packed two
+     * bits apiece into seekOptions
+     *
+     * @return Boolean -> whether any such direction exists
+     */
+    private Boolean findSeekOptions(int index) {
+        int xCoord = guardX[index];
+        int yCoord = guardY[index];
+        seekCount[index] = 0;
+        seekOptions[index] = 0;
+        int current = seekingField.getDistance(xCoord, yCoord);
+        if (current == DistanceField.UNREACHABLE) {
+            return false;
+        }
+
+        // order candidate directions: the larger axis first, each toward the player first
+        int xDistance = xCoord - playerX;
+        int yDistance = yCoord - playerY;
+        Direction xToward = (xDistance >= 0) ? Direction.LEFT : Direction.RIGHT;
+        Direction yToward = (yDistance >= 0) ? Direction.UP : Direction.DOWN;
+        Direction[] order;
+        if (Math.abs(xDistance) > Math.abs(yDistance)) {
+            order = new Direction[] {xToward, yToward, opposite(yToward), opposite(xToward)};
+        } else {
+            order = new Direction[] {yToward, xToward, opposite(xToward), opposite(yToward)};
+        }
+
+        // keep the directions which step closer to the player
+        for (Direction dir : order) {
+            int nextX = xCoord;
+            int nextY = yCoord;
+            if (dir == Direction.UP) {
+                nextY -= 1;
+            } else if (dir == Direction.DOWN) {
+                nextY += 1;
+            } else if (dir == Direction.LEFT) {
+                nextX -= 1;
+            } else {
+                nextX += 1;
+            }
+            if (seekingField.getDistance(nextX, nextY) < current) {
+                seekOptions[index] |= (byte) (dir.ordinal() << (2 * seekCount[index]));
+                seekCount[index] += 1;
+            }
+        }
+        return seekCount[index] > 0;
+    }
+
+    // unpacks one of a seeker's queued steps
+    private byte seekOption(int index, int option) {
+        return (byte) ((seekOptions[index] >> (2 * option)) & 3);
+    }
+
+    /**********************************************************************************
+     * Direction Helpers
+     **********************************************************************************/
+
+    private static Direction toDirection(byte move) {
+        return (move == NO_DIRECTION) ? null : DIRECTIONS[move];
+    }
+
+    private static byte ordinal(Direction dir) {
+        return (byte) dir.ordinal();
+    }
+
+    private static Boolean isHorizontal(byte move) {
+        return (move == Direction.LEFT.ordinal()) || (move == Direction.RIGHT.ordinal());
+    }
+
+    // finds the reverse of a direction
+    private static Direction opposite(Direction dir) {
+        switch (dir) {
+            case UP:
+                return Direction.DOWN;
+            case DOWN:
+                return Direction.UP;
+            case LEFT:
+                return Direction.RIGHT;
+            default:
+                return Direction.LEFT;
+        }
+    }
+
+    /**********************************************************************************
+     * GETTERS/SETTERS
+     **********************************************************************************/
+    public int size() {
+        return this.size;
+    }
+
+    public int getX(int index) {
+        return this.guardX[index];
+    }
+
+    public int getY(int index) {
+        return this.guardY[index];
+    }
+
+    public Point getLocation(int index) {
+        return new Point(this.guardX[index], this.guardY[index]);
+    }
+
+    // moves a guard, keeping the spatial index (if any) in step
+    public void setLocation(int index, int xCoord, int yCoord) {
+        this.guardX[index] = xCoord;
+        this.guardY[index] = yCoord;
+        if (this.bucketGuards != null) {
+            int bucket = bucketOf(xCoord, yCoord);
+            if (bucket != this.guardBucket[index]) {
+                remove(index);
+                insert(index, bucket);
+            }
+        }
+    }
+
+    public GuardType getGuardType(int index) {
+        return GUARD_TYPES[this.type[index]];
+    }
+
+    public int getDetectionRadius(int index) {
+        return this.detectionRadius[index];
+    }
+
+    public DetectionType getDetectionType(int index) {
+        return DETECTION_TYPES[this.detectionType[index]];
+    }
+
+    public Direction getLastMove(int index) {
+        return toDirection(this.lastMove[index]);
+    }
+
+    public RouteTable getRoute(int index) {
+        return this.routes[index];
+    }
+
+    public Point getStartLocation(int index) {
+        return new Point(this.startX[index], this.startY[index]);
+    }
+
+    public long getMoveCount(int index) {
+        return this.moveCount[index];
+    }
+
+    public int getMaxRadius() {
+        return this.maxRadius;
+    }
+
+    // chase guards all chase the same player, so the location is kept once per store
+    public void setPlayerLocation(int xCoord, int yCoord) {
+        this.playerX = xCoord;
+        this.playerY = yCoord;
+    }
+}
@@ -0,0 +1,9 @@
+package stealth_game;
+
+/**
+ * Holds the GuardType enum, which identifies how a guard chooses its moves (and therefore how it
+ * is drawn)
+ */
+public enum GuardType {
+    ROUTE, RANDOM, CHASE;
+}
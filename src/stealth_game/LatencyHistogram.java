@@ -0,0 +1,121 @@
+package stealth_game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, in nanoseconds, precise enough to read percentiles from. Durations
+ * below 128ns get a bucket each; above that, each power of two is split into 64 buckets, so a
+ * duration is only ever rounded by less than 1/64 (about 1.6%) of itself. The whole range of a
+ * long fits in a few thousand buckets, so recording is one array increment, with no allocation.
+ *
+ * Recording and reading are safe from any thread. A read taken while durations are being
+ * recorded may be a moment out of date, but never corrupt.
+ */
+public class LatencyHistogram {
+
+    // durations below SUB_COUNT have a bucket each; each power of two above is split into
+    // HALF_COUNT buckets
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT / 2;
+    private static final int BUCKETS = SUB_COUNT + ((64 - SUB_BITS) * HALF_COUNT);
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        count = new AtomicLong();
+        sum = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records a duration (negative durations are recorded as 0)
+     *
+     * @param nanos -> the duration, in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long largest = max.get();
+        while ((value > largest) && (!max.compareAndSet(largest, value))) {
+            largest = max.get();
+        }
+    }
+
+    /**
+     * Forgets every recorded duration
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Finds the duration below which a fraction of recorded durations fall (rounded up to the
+     * top of its bucket, and never past the largest duration recorded)
+     *
+     * @param fraction -> from 0 to 1, e.g. 0.99 for the 99th percentile
+     * @return long -> the duration, in nanoseconds (0 if nothing has been recorded)
+     */
+    public long getPercentile(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // finds the bucket of a duration
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BITS - 1);
+        return SUB_COUNT + ((shift - 1) * HALF_COUNT) + (int) ((value >> shift) - HALF_COUNT);
+    }
+
+    // finds the largest duration that falls in a bucket
+    private static long highestIn(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = ((bucket - SUB_COUNT) / HALF_COUNT) + 1;
+        long sub = ((bucket - SUB_COUNT) % HALF_COUNT) + HALF_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**********************************************************************************
+     * GETTERS
+     **********************************************************************************/
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+}
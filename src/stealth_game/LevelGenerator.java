@@ -0,0 +1,336 @@
+package stealth_game;
+
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Generates levels of any size, for benchmarks and load tests which need boards far larger than
+ * the shipped ones. Levels are written in the same CSV format as the hand-built levels, and the
+ * same seed and settings always produce the same level.
+ *
+ * A generated level has the player in the top left corner and the goal in the bottom right, with
+ * a winding path between the two kept clear of walls, doors and guards, so the goal can always be
+ * reached (guards permitting). The rest of the board is filled in this order:
+ *    - walls, each open cell becoming a wall with the given density
+ *    - key and door pairs, numbered 1 to 9 in turn (a number repeats after the ninth pair)
+ *    - guards, whose type and detection are drawn from weighted mixes. Patrol guards walk a
+ *      rectangular loop, starting rightward
+ * Guards are never placed within two cells of the player's start. Darkness is not part of a
+ * level's CSV file: it is carried by the generator, and written into the level's levelParser.json
+ * entry by toJson.
+ */
+public class LevelGenerator {
+
+    // cells around the player's start kept clear of guards, in taxicab distance
+    private static final int SAFE_RADIUS = 2;
+
+    // number of key and door pairs that can be told apart
+    private static final int LOCK_NUMBERS = 9;
+
+    // board size, and seed
+    private final int width;
+    private final int height;
+    private final long seed;
+
+    // contents
+    private double wallDensity;
+    private int guardCount;
+    private int lockCount;
+
+    // guard type weights: patrol, random, hunter, seeker
+    private int[] guardMix;
+
+    // detection type weights: circle, breath, sight; and largest detection radius
+    private int[] detectionMix;
+    private int maxRadius;
+
+    // darkness
+    private Boolean darkLevel;
+    private int visionRadius;
+
+    /**
+     * Creates a generator for an empty board (walls at 10% density, no guards, doors or
+     * darkness). Use the setters to fill it in
+     *
+     * @param width -> board width, in cells (at least 2)
+     * @param height -> board height, in cells (at least 2)
+     * @param seed -> seed for every random choice made in generating the level
+     */
+    public LevelGenerator(int width, int height, long seed) {
+        if ((width < 2) || (height < 2)) {
+            throw new IllegalArgumentException("Generated levels must be at least 2x2");
+        }
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        wallDensity = 0.1;
+        guardCount = 0;
+        lockCount = 0;
+        guardMix = new int[] {1, 1, 1, 1};
+        detectionMix = new int[] {1, 1, 1};
+        maxRadius = 3;
+        darkLevel = false;
+        visionRadius = 6;
+    }
+
+    /**********************************************************************************
+     * SETTINGS
+     **********************************************************************************/
+
+    /**
+     * @param density -> chance of each open cell becoming a wall, from 0 to 1
+     */
+    public void setWallDensity(double density) {
+        if ((density < 0) || (density > 1)) {
+            throw new IllegalArgumentException("Wall density must be between 0 and 1");
+        }
+        this.wallDensity = density;
+    }
+
+    public void setGuardCount(int count) {
+        this.guardCount = count;
+    }
+
+    /**
+     * Sets the relative weights of each guard type. A weight of 0 leaves the type out
+     *
+     * @param patrol, random, hunter, seeker -> weights of each type
+     */
+    public void setGuardMix(int patrol, int random, int hunter, int seeker) {
+        this.guardMix = checkWeights(new int[] {patrol, random, hunter, seeker});
+    }
+
+    /**
+     * Sets the relative weights of each detection type, and the largest detection radius (each
+     * guard's radius is drawn evenly from 1 up to it)
+     *
+     * @param circle, breath, sight -> weights of each type
+     * @param radius -> largest detection radius
+     */
+    public void setDetectionMix(int circle, int breath, int sight, int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("Detection radius must be at least 1");
+        }
+        this.detectionMix = checkWeights(new int[] {circle, breath, sight});
+        this.maxRadius = radius;
+    }
+
+    /**
+     * @param count -> number of key and door pairs
+     */
+    public void setLockCount(int count) {
+        this.lockCount = count;
+    }
+
+    /**
+     * @param isDark -> whether the level is dark
+     * @param vision -> how far the player can see on a dark level
+     */
+    public void setDarkness(Boolean isDark, int vision) {
+        this.darkLevel = isDark;
+        this.visionRadius = vision;
+    }
+
+    // checks a mix has no negative weights, and at least one positive one
+    private static int[] checkWeights(int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mix weights cannot be negative");
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Mix weights cannot all be 0");
+        }
+        return weights;
+    }
+
+    /**********************************************************************************
+     * GENERATION
+     **********************************************************************************/
+
+    /**
+     * Generates the level
+     *
+     * @return String[][] -> the contents of each cell, by row then column
+     */
+    public String[][] generate() {
+        Random random = new Random(seed);
+        String[][] board = new String[height][width];
+        boolean[] reserved = new boolean[width * height];
+
+        // clear a path from the player to the goal, stepping right or down at random
+        int col = 0;
+        int row = 0;
+        reserved[0] = true;
+        while ((col < width - 1) || (row < height - 1)) {
+            if ((row == height - 1) || ((col < width - 1) && random.nextBoolean())) {
+                col += 1;
+            } else {
+                row += 1;
+            }
+            reserved[(row * width) + col] = true;
+        }
+
+        // scatter walls off the path
+        for (row = 0; row < height; row++) {
+            for (col = 0; col < width; col++) {
+                Boolean wall = (!reserved[(row * width) + col])
+                        && (random.nextDouble() < wallDensity);
+                board[row][col] = wall ? "W" : "E";
+            }
+        }
+        board[0][0] = "P";
+        board[height - 1][width - 1] = "G";
+
+        // place keys and doors in pairs
+        for (int i = 0; i < lockCount; i++) {
+            int lock = (i % LOCK_NUMBERS) + 1;
+            placeAt(board, reserved, random, "K" + lock, 0);
+            placeAt(board, reserved, random, "D" + lock, 0);
+        }
+
+        // place guards
+        for (int i = 0; i < guardCount; i++) {
+            placeAt(board, reserved, random, guardString(random), SAFE_RADIUS);
+        }
+        return board;
+    }
+
+    /**
+     * Writes the level as a CSV file
+     *
+     * @param filePath -> where to write the level
+     */
+    public void write(String filePath) throws FileNotFoundException {
+        String[][] board = generate();
+        PrintWriter writer = new PrintWriter(filePath);
+        try {
+            StringBuilder line = new StringBuilder();
+            for (int row = 0; row < height; row++) {
+                line.setLength(0);
+                for (int col = 0; col < width; col++) {
+                    if (col > 0) {
+                        line.append(',');
+                    }
+                    line.append(board[row][col]);
+                }
+                writer.println(line);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Builds the level's entry for levelParser.json, which is where darkness is set
+     *
+     * @param filePath -> path the level's CSV file was written to
+     * @param levelIndex -> the level's position in its level list
+     * @return JSONObject -> the entry, keyed as levelParser.json keys it
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject toJson(String filePath, int levelIndex) {
+        JSONObject entry = new JSONObject();
+        entry.put("filename", filePath);
+        entry.put("tileset", 0);
+        entry.put("darkLevel", darkLevel);
+        entry.put("visionRadius", visionRadius);
+        entry.put("expansion", false);
+        entry.put("levelIndex", levelIndex);
+        return entry;
+    }
+
+    /**
+     * Puts an element on a random empty cell, off the reserved path and at least a given
+     * distance from the player's start
+     */
+    private void placeAt(String[][] board, boolean[] reserved, Random random, String element,
+            int clearance) {
+        // random probing finds a cell quickly unless the board is nearly full
+        int attempts = 4 * width * height;
+        for (int i = 0; i < attempts; i++) {
+            int index = random.nextInt(width * height);
+            int col = index % width;
+            int row = index / width;
+            if ((!reserved[index]) && board[row][col].equals("E") && (col + row > clearance)) {
+                board[row][col] = element;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Board is too full to place " + element
+                + " - lower the wall density, guard count or lock count");
+    }
+
+    /**
+     * Draws a guard's type, detection and (for patrols) route
+     */
+    private String guardString(Random random) {
+        String[] types = {"P", "R", "H", "S"};
+        String[] detections = {"C", "B", "L"};
+        String type = types[pick(guardMix, random)];
+        String guard = type + "M;" + detections[pick(detectionMix, random)]
+                + (1 + random.nextInt(maxRadius));
+        if (type.equals("P")) {
+            int across = 1 + random.nextInt(4);
+            int down = 1 + random.nextInt(4);
+            StringBuilder route = new StringBuilder(";");
+            appendMoves(route, 'R', across);
+            appendMoves(route, 'D', down);
+            appendMoves(route, 'L', across);
+            appendMoves(route, 'U', down);
+            guard += route;
+        }
+        return guard;
+    }
+
+    private static void appendMoves(StringBuilder route, char move, int count) {
+        for (int i = 0; i < count; i++) {
+            route.append(move);
+        }
+    }
+
+    // picks an index with chance proportional to its weight
+    private static int pick(int[] weights, Random random) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int roll = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    /**********************************************************************************
+     * GETTERS
+     **********************************************************************************/
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public Boolean isDark() {
+        return this.darkLevel;
+    }
+
+    public int getVisionRadius() {
+        return this.visionRadius;
+    }
+}
@@ -0,0 +1,59 @@
+package stealth_game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event timing the engine building a board from a level file, when a level is
+ * loaded or restarted. Cells touched is every cell of the board, each of which is parsed once
+ */
+@Name("stealth_game.LevelLoad")
+@Label("Level Load")
+@Category({"StealthJava", "Levels"})
+@Description("Time spent building a board from a level file")
+public class LevelLoadEvent extends Event {
+
+    @Label("Level")
+    String level;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Guard Count")
+    int guardCount;
+
+    @Label("Cells Touched")
+    long cellsTouched;
+
+    /**
+     * Starts timing a load
+     */
+    public static LevelLoadEvent start() {
+        LevelLoadEvent event = new LevelLoadEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stops timing the load, and records it if a recording wants it
+     *
+     * @param board -> the board that was built
+     */
+    public void finish(GameBoard board) {
+        end();
+        if (shouldCommit()) {
+            this.level = board.getLevelName();
+            this.width = board.getWidth();
+            this.height = board.getHeight();
+            this.guardCount = board.getGuards().size();
+            this.cellsTouched = (long) width * height;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package stealth_game;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A sprite which travels between two positions. The display sets how far along the trip the
+ * sprite is before drawing it, which is used to animate moves between turns.
+ */
+public class MovingSprite extends Sprite {
+
+    // start and end of the trip, in pixels
+    private int startX;
+    private int startY;
+    private int endX;
+    private int endY;
+
+    public MovingSprite(int startX, int startY, int endX, int endY, int size, BufferedImage img) {
+        super(endX, endY, size, img);
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+    }
+
+    /**
+     * Places the sprite part way along its trip
+     *
+     * @param progress -> fraction of the trip completed, from 0 (start) to 1 (end)
+     */
+    public void interpolate(double progress) {
+        this.setPx(startX + (int) Math.round((endX - startX) * progress));
+        this.setPy(startY + (int) Math.round((endY - startY) * progress));
+    }
+}
@@ -0,0 +1,27 @@
+package stealth_game;
+
+/**
+ * Holds the PlayerInput enum, which lists every action a player can take on their turn: a move in
+ * one of the four directions, or waiting in place
+ */
+public enum PlayerInput {
+    UP, DOWN, LEFT, RIGHT, WAIT;
+    
+    /**
+     * Returns the direction of movement for this input, or null when waiting
+     */
+    public Direction getDirection() {
+        switch (this) {
+            case UP:
+                return Direction.UP;
+            case DOWN:
+                return Direction.DOWN;
+            case LEFT:
+                return Direction.LEFT;
+            case RIGHT:
+                return Direction.RIGHT;
+            default:
+                return null;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package stealth_game;
 
 import java.awt.Point;
-import java.util.*;
+import java.util.Random;
 
 /**
  * @author Austin Herrick
@@ -10,123 +10,105 @@ import java.util.*;
  * players, their current location, and how new directions of movement are generated.
  * 
  * Random Guards sometimes attempt movement several times (due to illegal selected moves), and
- * therefore store information about directions of movement not yet attempted.
+ * therefore store information about directions of movement not yet attempted. Each guard draws
+ * from its own random number generator, and picks among the remaining directions in a fixed
+ * order, so a guard seeded the same way always makes the same choices.
+ * 
+ * The guard's state lives in a GuardStore; this object is a view onto one index of it.
  *
  */
 public class RandomGuard implements Guard {
     
-    // Core information
-    private Point location;
-    private int detectionRadius;
-    private DetectionType detectionType;
-    
-    // Directional information
-    private Direction lastMove;
-    private Direction attemptedDirection;
-    private HashSet<Direction> validDirections;
+    // the store holding this guard's state, and the guard's index within it
+    private GuardStore store;
+    private int index;
 
     /**********************************************************************************
      * Constructor and Setup Methods
      **********************************************************************************/
 
     /**
-     * Sets initial location, parses detection string to find radius/type, resets valid direction
-     * list, and initializes lastMove to UP (used for Breath detection to find "facing")
+     * Creates a standalone guard with a random seed, backed by a store of its own
      */
     public RandomGuard(Point locationInitial, String guardBuilder) {
-        location = locationInitial;
-        parseDetection(guardBuilder);
-        lastMove = Direction.UP;
-        resetValidDirections();
+        this(new GuardStore(), locationInitial, guardBuilder, new Random().nextLong());
     }
     
     /**
-     * Parses the detection radius and type of the guard, which is stored after the first
-     * semicolon
+     * Adds a guard to a store: sets initial location, parses detection string to find 
+     * radius/type, and seeds the guard's random number generator (lastMove starts as UP, 
+     * which is used for Breath detection to find "facing")
      */
-    private void parseDetection(String guardBuilder) {
+    public RandomGuard(GuardStore guardStore, Point locationInitial, String guardBuilder, 
+            long seed) {
+        store = guardStore;
         String[] segments = guardBuilder.split(";");
         String detectInfo = segments[segments.length - 1];
-        detectionRadius = Character.getNumericValue(detectInfo.charAt(1));
-        Character detectType = detectInfo.charAt(0);
-        if (detectType.equals('C')) {
-            detectionType = DetectionType.CIRCLE;
-        } else if (detectType.equals('B')) {
-            detectionType = DetectionType.BREATH;
-        }
+        index = store.add(GuardType.RANDOM, (int) locationInitial.getX(), 
+                (int) locationInitial.getY(), Character.getNumericValue(detectInfo.charAt(1)),
+                parseDetectionType(detectInfo.charAt(0)));
+        store.setSeed(index, seed);
+    }
+    
+    /**
+     * Creates a view onto a guard already in a store (used when a board is forked)
+     */
+    public RandomGuard(GuardStore guardStore, int guardIndex) {
+        store = guardStore;
+        index = guardIndex;
     }
     
     /**
-     * Refreshes validDirections to include all cardinal directions again
+     * Parses the detection type of the guard, which is stored after the first semicolon
      */
-    private void resetValidDirections() {
-        validDirections = new HashSet<Direction>();
-        for (Direction d: Direction.values()) {
-            validDirections.add(d);
+    private DetectionType parseDetectionType(Character detectType) {
+        if (detectType.equals('B')) {
+            return DetectionType.BREATH;
+        } else if (detectType.equals('L')) {
+            return DetectionType.SIGHT;
         }
+        return DetectionType.CIRCLE;
     }
 
     /**********************************************************************************
      * Movement Handling
      **********************************************************************************/
     /**
-     * Finds the intended move direction of a guard, generated at random
-     * Help for random assignment from:
-     * https://stackoverflow.com/questions/124671/picking-a-random-element-from-a-set
-     * 
-     * attemptedDirection is stored a class attribute in case lastMove needs to be updated.
-     * Note that the class doesn't know if it should be yet, because move validity is handled
-     * by the GameBoard.
+     * Finds the intended move direction of a guard, chosen at random among the directions
+     * not yet attempted this turn
      *
      * @return intended direction of movement
      */
     @Override
 	public Direction getMoveDirection() {
-        
-        int index = new Random().nextInt(validDirections.size());
-        Iterator<Direction> iter = validDirections.iterator();
-        for (int i = 0; i < index; i++) {
-            iter.next();
-        }
-        attemptedDirection = iter.next();
-        return attemptedDirection;
+        return store.getMoveDirection(index);
     }
     
     /**
-     * If move succeeded, set lastMove to direction of attempted movement and reset validDirections
+     * If move succeeded, set lastMove to direction of attempted movement and reset the
+     * untried directions
      */
     @Override
 	public void moveSucceeded() {
-        lastMove = attemptedDirection;
-        resetValidDirections();
+        store.moveSucceeded(index);
     }
     
     /**
-     * If move failed, remove attempted direction from set and try again (provided set is
-     * non-empty)
+     * If move failed, remove attempted direction from the untried directions and try again 
+     * (provided any are left)
      */
     @Override
     public Direction moveFailed() {
-        validDirections.remove(attemptedDirection);
-        if (validDirections.size() > 0) {
-            getMoveDirection();
-        } else {
-            validDirections = new HashSet<Direction>();
-            for (Direction d: Direction.values()) {
-                validDirections.add(d);
-            }
-            return null;
-        }
-        return attemptedDirection;
-
+        return store.moveFailed(index);
     }
     
+
     /**********************************************************************************
      * SETTER
      **********************************************************************************/
     @Override
 	public void updateLocation(Point newLoc) {
-        location = newLoc;
+        store.setLocation(index, (int) newLoc.getX(), (int) newLoc.getY());
     }
     
     @Override
@@ -138,21 +120,26 @@ public class RandomGuard implements Guard {
      **********************************************************************************/
     @Override
     public Direction getLastMove() {
-        return this.lastMove;
+        return store.getLastMove(index);
     }
     
     @Override
     public int getDetectionRadius() {
-        return this.detectionRadius;
+        return store.getDetectionRadius(index);
     }
 
     @Override
     public DetectionType getDetectionType() {
-        return this.detectionType;
+        return store.getDetectionType(index);
+    }
+    
+    @Override
+    public GuardType getGuardType() {
+        return GuardType.RANDOM;
     }
     
     @Override
     public Point getLocation() {
-        return (Point) this.location.clone();
+        return store.getLocation(index);
     }
 }
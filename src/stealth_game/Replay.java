@@ -0,0 +1,363 @@
+package stealth_game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * A recorded attempt at a level: the level played, a hash of its contents, the seed its random
+ * guards were built with, and every input that reached the board, along with the turn count and
+ * outcome the attempt claims. Since a board built from the same level and seed always plays out
+ * the same way for the same inputs, this is all ReplayVerifier needs to check the claim.
+ *
+ * Replays are stored in a compact binary format:
+ *    - the magic bytes "SJRP" and a format version byte
+ *    - the level's path (a varint length, then UTF-8), as the game loaded it
+ *    - a flags byte (dark level, claimed victory, claimed defeat), then the vision radius, claimed
+ *      turn count and input count as varints
+ *    - the level's content hash and the guard seed, as 8 bytes each
+ *    - the inputs, at 3 bits each, packed from the lowest bit of each byte up
+ * An input is one of the five PlayerInputs, or the code for guards being stopped. A thousand
+ * turns take under 400 bytes.
+ *
+ * Reading never trusts the lengths in a file: the level path is capped, and inputs are only read
+ * as far as the stream actually goes, so a corrupt or crafted file fails with an IOException
+ * rather than a huge allocation.
+ */
+public class Replay {
+
+    // format identification
+    private static final byte[] MAGIC = {'S', 'J', 'R', 'P'};
+    private static final int VERSION = 1;
+
+    // longest level path read (replays come from anywhere, so lengths read are never trusted)
+    private static final int MAX_LEVEL_PATH_BYTES = 4096;
+
+    // input codes (3 bits each): the five player inputs, then guards being stopped
+    private static final PlayerInput[] INPUT_CODES = {
+        PlayerInput.WAIT, PlayerInput.UP, PlayerInput.DOWN, PlayerInput.LEFT, PlayerInput.RIGHT
+    };
+    public static final int GUARDS_STOPPED = 5;
+    private static final int CODE_BITS = 3;
+
+    // flags
+    private static final int FLAG_DARK = 1;
+    private static final int FLAG_VICTORY = 2;
+    private static final int FLAG_DEFEAT = 4;
+
+    // the level and board settings
+    private String level;
+    private long levelHash;
+    private long seed;
+    private Boolean darkLevel;
+    private int visionRadius;
+
+    // inputs, packed CODE_BITS apiece
+    private byte[] inputs;
+    private int inputCount;
+
+    // the claimed result
+    private int turns;
+    private Boolean victory;
+    private Boolean defeat;
+
+    /**
+     * Starts an empty replay of a level
+     *
+     * @param level -> path of the level's CSV file, as the game loaded it
+     * @param levelHash -> hash of the level's contents (see hashLevel)
+     * @param seed -> seed the board's random guards were built with
+     * @param darkLevel -> whether the level was played dark
+     * @param visionRadius -> the player's vision radius on dark levels
+     */
+    public Replay(String level, long levelHash, long seed, Boolean darkLevel, int visionRadius) {
+        this.level = level;
+        this.levelHash = levelHash;
+        this.seed = seed;
+        this.darkLevel = darkLevel;
+        this.visionRadius = visionRadius;
+        inputs = new byte[64];
+        inputCount = 0;
+        turns = 0;
+        victory = false;
+        defeat = false;
+    }
+
+    /**
+     * Hashes a level file's contents (64-bit FNV-1a), so a replay can be matched against the
+     * exact level it was recorded on
+     *
+     * @param filePath -> path of the level's CSV file
+     * @return long -> the hash
+     */
+    public static long hashLevel(String filePath) throws IOException {
+        byte[] contents = Files.readAllBytes(new File(filePath).toPath());
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : contents) {
+            hash ^= (b & 0xFF);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**********************************************************************************
+     * RECORDING
+     **********************************************************************************/
+
+    /**
+     * Records an input played on the board
+     *
+     * @param input -> the move (or wait) played
+     */
+    public void record(PlayerInput input) {
+        for (int code = 0; code < INPUT_CODES.length; code++) {
+            if (INPUT_CODES[code] == input) {
+                append(code);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records every guard on the board being stopped
+     */
+    public void recordGuardsStopped() {
+        append(GUARDS_STOPPED);
+    }
+
+    /**
+     * Sets the result the replay claims
+     *
+     * @param turns -> the turn count reached
+     * @param victory -> whether the level was won
+     * @param defeat -> whether the player was caught
+     */
+    public void claim(int turns, Boolean victory, Boolean defeat) {
+        this.turns = turns;
+        this.victory = victory;
+        this.defeat = defeat;
+    }
+
+    // appends an input code, growing the packed array as needed
+    private void append(int code) {
+        int bit = inputCount * CODE_BITS;
+        if ((bit + CODE_BITS + 7) / 8 > inputs.length) {
+            inputs = Arrays.copyOf(inputs, inputs.length * 2);
+        }
+        inputs[bit >> 3] |= (byte) (code << (bit & 7));
+        if ((bit & 7) + CODE_BITS > 8) {
+            inputs[(bit >> 3) + 1] |= (byte) (code >> (8 - (bit & 7)));
+        }
+        inputCount += 1;
+    }
+
+    /**
+     * Reads back a recorded input
+     *
+     * @param index -> the input's position, from 0
+     * @return int -> the input's code (see inputOf), or GUARDS_STOPPED
+     */
+    public int getCode(int index) {
+        int bit = index * CODE_BITS;
+        int word = inputs[bit >> 3] & 0xFF;
+        if ((bit >> 3) + 1 < inputs.length) {
+            word |= (inputs[(bit >> 3) + 1] & 0xFF) << 8;
+        }
+        return (word >> (bit & 7)) & ((1 << CODE_BITS) - 1);
+    }
+
+    /**
+     * Gets the player input for a code
+     *
+     * @param code -> an input code other than GUARDS_STOPPED
+     * @return PlayerInput -> the input, or null if the code is not a player input
+     */
+    public static PlayerInput inputOf(int code) {
+        return (code < INPUT_CODES.length) ? INPUT_CODES[code] : null;
+    }
+
+    /**********************************************************************************
+     * READING AND WRITING
+     **********************************************************************************/
+
+    /**
+     * Writes the replay in its binary format
+     *
+     * @param out -> the stream to write to (left open)
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        byte[] levelBytes = level.getBytes(StandardCharsets.UTF_8);
+        writeVarint(data, levelBytes.length);
+        data.write(levelBytes);
+        int flags = (darkLevel ? FLAG_DARK : 0) | (victory ? FLAG_VICTORY : 0)
+                | (defeat ? FLAG_DEFEAT : 0);
+        data.writeByte(flags);
+        writeVarint(data, visionRadius);
+        writeVarint(data, turns);
+        writeVarint(data, inputCount);
+        data.writeLong(levelHash);
+        data.writeLong(seed);
+        data.write(inputs, 0, ((inputCount * CODE_BITS) + 7) / 8);
+        data.flush();
+    }
+
+    /**
+     * Reads a replay in its binary format
+     *
+     * @param in -> the stream to read from (left open)
+     * @return Replay -> the replay read
+     * @throws IOException -> if the stream fails, or does not hold a well-formed replay
+     */
+    public static Replay read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a replay file");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version: " + version);
+        }
+        int levelLength = readVarint(data);
+        if (levelLength > MAX_LEVEL_PATH_BYTES) {
+            throw new IOException("Corrupt replay: level path of " + levelLength + " bytes");
+        }
+        byte[] levelBytes = new byte[levelLength];
+        data.readFully(levelBytes);
+        int flags = data.readUnsignedByte();
+        int vision = readVarint(data);
+        int claimedTurns = readVarint(data);
+        int count = readVarint(data);
+        if (count > Integer.MAX_VALUE / CODE_BITS) {
+            throw new IOException("Corrupt replay: too many inputs");
+        }
+        long hash = data.readLong();
+        long replaySeed = data.readLong();
+
+        Replay replay = new Replay(new String(levelBytes, StandardCharsets.UTF_8), hash,
+                replaySeed, (flags & FLAG_DARK) != 0, vision);
+        replay.claim(claimedTurns, (flags & FLAG_VICTORY) != 0, (flags & FLAG_DEFEAT) != 0);
+
+        // (read in pieces as the bytes arrive, so a false count cannot size the buffer)
+        int inputBytes = ((count * CODE_BITS) + 7) / 8;
+        byte[] packed = data.readNBytes(inputBytes);
+        if (packed.length < inputBytes) {
+            throw new IOException("Corrupt replay: " + count + " inputs claimed, but only "
+                    + ((packed.length * 8) / CODE_BITS) + " stored");
+        }
+        replay.inputs = (packed.length > 0) ? packed : new byte[1];
+        replay.inputCount = count;
+        return replay;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(out);
+        } catch (IOException e) {
+            // writing to memory cannot fail
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static Replay fromBytes(byte[] bytes) throws IOException {
+        return read(new ByteArrayInputStream(bytes));
+    }
+
+    public void save(String filePath) throws IOException {
+        OutputStream out = new FileOutputStream(filePath);
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    public static Replay load(String filePath) throws IOException {
+        InputStream in = new FileInputStream(filePath);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    // writes a non-negative int, 7 bits per byte, lowest bits first
+    private static void writeVarint(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Corrupt replay: negative length");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Corrupt replay: varint too long");
+    }
+
+    /**********************************************************************************
+     * GETTERS
+     **********************************************************************************/
+
+    public String getLevel() {
+        return level;
+    }
+
+    public long getLevelHash() {
+        return levelHash;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Boolean isDarkLevel() {
+        return darkLevel;
+    }
+
+    public int getVisionRadius() {
+        return visionRadius;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getTurns() {
+        return turns;
+    }
+
+    public Boolean isVictory() {
+        return victory;
+    }
+
+    public Boolean isDefeat() {
+        return defeat;
+    }
+}
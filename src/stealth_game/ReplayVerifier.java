@@ -0,0 +1,175 @@
+package stealth_game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks replays by playing them again on a fresh GameBoard, with no display: the level must be
+ * the one the replay was recorded on (matched by its content hash), and replaying every input
+ * must reach exactly the turn count and outcome the replay claims. Inputs after the level was won
+ * or lost are rejected, since the game never records them, and so are runs in which the guards
+ * were stopped with the cheat code, which are not legitimate attempts.
+ *
+ * Replays come from anywhere, so the level path in one is never trusted: it must lead to a file
+ * inside the levels folder once resolved against it (no absolute paths, and no ".." out of it).
+ *
+ * A verifier can be shared between threads. Level hashes are cached, so checking many replays of
+ * the same few levels only reads each level's file to build its boards.
+ *
+ * Run from the command line to check replay files (or folders of them):
+ *    java -cp <classes> stealth_game.ReplayVerifier [-levels <dir>] <replay>...
+ * Level paths in replays are resolved against the -levels folder (the working directory by
+ * default), as the game stores them relative to the repository root.
+ */
+public class ReplayVerifier {
+
+    // folder level paths are resolved against (and must stay within)
+    private Path baseDir;
+
+    // content hash of each level read so far, by resolved path
+    private ConcurrentHashMap<String, Long> levelHashes;
+
+    /**
+     * @param baseDir -> folder level paths are resolved against, and must stay within
+     */
+    public ReplayVerifier(File baseDir) {
+        this.baseDir = baseDir.toPath().toAbsolutePath().normalize();
+        levelHashes = new ConcurrentHashMap<String, Long>();
+    }
+
+    /**
+     * Plays a replay on a fresh board and checks its claims
+     *
+     * @param replay -> the replay to check
+     * @return String -> null if the replay checks out, or else what is wrong with it
+     */
+    public String verify(Replay replay) {
+        // the level must lie inside the levels folder
+        Path levelPath;
+        try {
+            levelPath = baseDir.resolve(replay.getLevel()).normalize();
+        } catch (InvalidPathException e) {
+            return "level path is not valid: " + replay.getLevel();
+        }
+        if (!levelPath.startsWith(baseDir)) {
+            return "level path leads outside the levels folder: " + replay.getLevel();
+        }
+        String path = levelPath.toString();
+
+        // the level must be the one recorded on
+        Long hash = levelHashes.get(path);
+        if (hash == null) {
+            try {
+                hash = Replay.hashLevel(path);
+            } catch (IOException e) {
+                return "level not found: " + replay.getLevel();
+            }
+            levelHashes.put(path, hash);
+        }
+        if (hash != replay.getLevelHash()) {
+            return "level contents differ from the recording: " + replay.getLevel();
+        }
+
+        // replay every input
+        GameBoard board;
+        try {
+            board = new GameBoard(path, replay.isDarkLevel(), replay.getVisionRadius(),
+                    replay.getSeed());
+        } catch (IllegalArgumentException e) {
+            return "level cannot be loaded: " + e.getMessage();
+        }
+        for (int i = 0; i < replay.getInputCount(); i++) {
+            if (board.isVictory() || board.isDefeat()) {
+                return "input " + i + " was played after the level ended";
+            }
+            int code = replay.getCode(i);
+            if (code == Replay.GUARDS_STOPPED) {
+                return "guards were stopped with the cheat code at input " + i;
+            } else if (Replay.inputOf(code) != null) {
+                GameEngine.play(board, Replay.inputOf(code));
+            } else {
+                return "unknown input code " + code + " at input " + i;
+            }
+        }
+
+        // and compare the result with the claim
+        if (board.getTurn() != replay.getTurns()) {
+            return "claims " + replay.getTurns() + " turns, but reaches turn " + board.getTurn();
+        }
+        if ((!board.isVictory().equals(replay.isVictory()))
+                || (!board.isDefeat().equals(replay.isDefeat()))) {
+            return "claims " + outcome(replay.isVictory(), replay.isDefeat()) + ", but ends in "
+                    + outcome(board.isVictory(), board.isDefeat());
+        }
+        return null;
+    }
+
+    /**
+     * Names an outcome
+     */
+    public static String outcome(Boolean victory, Boolean defeat) {
+        if (victory) {
+            return "victory";
+        } else if (defeat) {
+            return "defeat";
+        }
+        return "no result";
+    }
+
+    /**
+     * Checks replay files, printing a line for each and a summary with the rate checked
+     *
+     * @param args -> optionally "-levels <dir>", then replay files and/or folders of them
+     */
+    public static void main(String[] args) {
+        File base = new File(".");
+        ArrayList<File> files = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-levels") && (i + 1 < args.length)) {
+                base = new File(args[i + 1]);
+                i += 1;
+            } else if (new File(args[i]).isDirectory()) {
+                File[] contents = new File(args[i]).listFiles();
+                Arrays.sort(contents);
+                for (File file : contents) {
+                    if (file.isFile()) {
+                        files.add(file);
+                    }
+                }
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: ReplayVerifier [-levels <dir>] <replay file or folder>...");
+            System.exit(2);
+        }
+
+        ReplayVerifier verifier = new ReplayVerifier(base);
+        int failures = 0;
+        long start = System.nanoTime();
+        for (File file : files) {
+            String problem;
+            try {
+                problem = verifier.verify(Replay.load(file.getPath()));
+            } catch (IOException e) {
+                problem = "unreadable: " + e.getMessage();
+            }
+            if (problem == null) {
+                System.out.println("OK    " + file.getPath());
+            } else {
+                System.out.println("FAIL  " + file.getPath() + ": " + problem);
+                failures += 1;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d replays checked, %d failed, in %.2f s (%.0f/s)",
+                files.size(), failures, seconds, files.size() / seconds));
+        System.exit((failures == 0) ? 0 : 1);
+    }
+}
@@ -1,7 +1,6 @@
 package stealth_game;
 
 import java.awt.Point;
-import java.text.StringCharacterIterator;
 
 /**
  * @author Austin Herrick
@@ -9,70 +8,77 @@ import java.text.StringCharacterIterator;
  * Implements Guard for guards which move according to a set route. Tracks how these guards detect
  * players, their current location, and how new directions of movement are generated.
  * 
- * Route (or Patrol) Guards move along a set schedule, then reverse that schedule, so direction
- * of travel along an iterator must be tracked. Additionally, traversal of the iterator must
- * be handled to ensure that guards cannot misalign their routes following a failed move (due
- * to collision)
+ * Route (or Patrol) Guards move along a set schedule, then reverse that schedule. The schedule
+ * is compiled into a RouteTable, and the guard only counts its successful moves: a failed move
+ * (due to collision) does not advance the count, so guards cannot misalign their routes. Since
+ * the count alone determines the guard's place on its route, the guard's location and facing 
+ * can also be predicted for any future turn without stepping through the turns in between.
+ * 
+ * The guard's state lives in a GuardStore; this object is a view onto one index of it.
  *
  */
 public class RouteGuard implements Guard {
 
-    // Core information
-    private Point location;
-    private int detectionRadius;
-    private DetectionType detectionType;
-    
-    // Directional information
-    private StringCharacterIterator route;
-    private Boolean forwardMode;
-    private Direction lastMove;
+    // the store holding this guard's state, and the guard's index within it
+    private GuardStore store;
+    private int index;
     
     /**********************************************************************************
      * Constructor and Setup Methods
      **********************************************************************************/
 
     /**
-     * Sets initial location, parses detection string to find radius/type, parses route string
-     * to define pathfinding, and initializes lastMove to UP (used for Breath detection to 
-     * find "facing")
+     * Creates a standalone guard, backed by a store of its own
      */
     public RouteGuard(Point locationInitial, String guardBuilder) {
-        location = locationInitial;
-        route = parseRoute(guardBuilder);
-        parseDetection(guardBuilder);
-        forwardMode = true;
-        lastMove = Direction.UP;
+        this(new GuardStore(), locationInitial, guardBuilder);
+    }
+    
+    /**
+     * Adds a guard to a store: sets initial location, parses detection string to find 
+     * radius/type, and parses route string to define pathfinding (lastMove starts as UP, 
+     * which is used for Breath detection to find "facing")
+     */
+    public RouteGuard(GuardStore guardStore, Point locationInitial, String guardBuilder) {
+        store = guardStore;
+        String[] segments = guardBuilder.split(";");
+        String detectInfo = segments[segments.length - 2];
+        index = store.add(GuardType.ROUTE, (int) locationInitial.getX(), 
+                (int) locationInitial.getY(), Character.getNumericValue(detectInfo.charAt(1)),
+                parseDetectionType(detectInfo.charAt(0)));
+        store.setRoute(index, parseRoute(guardBuilder));
+    }
+    
+    /**
+     * Creates a view onto a guard already in a store (used when a board is forked)
+     */
+    public RouteGuard(GuardStore guardStore, int guardIndex) {
+        store = guardStore;
+        index = guardIndex;
     }
     
     /**
-     * Parses the csv's string representation of a guard's route into a StringCharacterIterator
-     * Technique for splitting strings and docs for StringCharacterIterator found below:
+     * Parses the csv's string representation of a guard's route, to be compiled by the store
+     * Technique for splitting strings found below:
      * https://stackoverflow.com/questions/14316487/java-getting-a-substring-from-a-string-starting
      * -after-a-particular-character
-     * https://docs.oracle.com/javase/8/docs/api/java/text/StringCharacterIterator.html
      * 
      * @param guardBuilder - csv string containing guard route
      */
-    private StringCharacterIterator parseRoute(String guardBuilder) {
-        String routeString = guardBuilder.substring(guardBuilder.lastIndexOf(";") + 1);
-        StringCharacterIterator route = new StringCharacterIterator(routeString);
-        return route;
+    private String parseRoute(String guardBuilder) {
+        return guardBuilder.substring(guardBuilder.lastIndexOf(";") + 1);
     }
     
     /**
-     * Parses the detection radius and type of the guard, which is stored after the first
-     * semicolon
+     * Parses the detection type of the guard, which is stored after the first semicolon
      */
-    private void parseDetection(String guardBuilder) {
-        String[] segments = guardBuilder.split(";");
-        String detectInfo = segments[segments.length - 2];
-        detectionRadius = Character.getNumericValue(detectInfo.charAt(1));
-        Character detectType = detectInfo.charAt(0);
-        if (detectType.equals('C')) {
-            detectionType = DetectionType.CIRCLE;
-        } else if (detectType.equals('B')) {
-            detectionType = DetectionType.BREATH;
+    private DetectionType parseDetectionType(Character detectType) {
+        if (detectType.equals('B')) {
+            return DetectionType.BREATH;
+        } else if (detectType.equals('L')) {
+            return DetectionType.SIGHT;
         }
+        return DetectionType.CIRCLE;
     }
     
     /**********************************************************************************
@@ -86,45 +92,15 @@ public class RouteGuard implements Guard {
      */
     @Override
     public Direction getMoveDirection() {
-        
-        // retrieve character of intended movement by checking the current stop of the iter
-        Character moveLetter = route.current();
-        Direction intendMove = null;
-        if (moveLetter.equals('U')) {
-            if (forwardMode) {
-                intendMove = Direction.UP;
-            } else {
-                intendMove = Direction.DOWN;
-            }
-        } else if (moveLetter.equals('D')) {
-            if (forwardMode) {
-                intendMove = Direction.DOWN;
-            } else {
-                intendMove = Direction.UP;
-            }
-        } else if (moveLetter.equals('L')) {
-            if (forwardMode) {
-                intendMove = Direction.LEFT;
-            } else {
-                intendMove = Direction.RIGHT;
-            }
-        } else if (moveLetter.equals('R')) {
-            if (forwardMode) {
-                intendMove = Direction.RIGHT;
-            } else {
-                intendMove = Direction.LEFT;
-            }
-        }
-        return intendMove;
+        return store.getMoveDirection(index);
     }
     
     /**
-     * If the intended move succeeded, advances the iterator for the next call
+     * If the intended move succeeded, advances along the route for the next call
      */
     @Override
 	public void moveSucceeded() {
-        lastMove = getMoveDirection();
-        invokeIter(route);
+        store.moveSucceeded(index);
     }
 
     /**
@@ -132,31 +108,44 @@ public class RouteGuard implements Guard {
      */
     @Override
     public Direction moveFailed() {
-        return null;
+        return store.moveFailed(index);
+    }
+    
+    /**********************************************************************************
+     * Prediction
+     * 
+     * The guard attempts one move per turn, so after a number of turns with some moves
+     * blocked, it has made (turns - blocked) successful moves
+     **********************************************************************************/
+    
+    /**
+     * Finds where the guard will stand after a number of turns
+     * 
+     * @param turns -> turns since the level started
+     * @param blocked -> how many of those turns the guard's move failed
+     * @return Point -> the guard's location
+     */
+    public Point predictLocation(long turns, long blocked) {
+        Point offset = getRoute().getOffset(turns - blocked);
+        Point start = getStartLocation();
+        return new Point((int) (start.getX() + offset.getX()), 
+                (int) (start.getY() + offset.getY()));
     }
     
     /**
-     * Traverses a StringCharacterIterator and preps the next character, switching directions
-     * once either end of a route is reached
+     * Finds the direction the guard will be facing (its last successful move) after a number
+     * of turns
      * 
-     * @param myIter - a StringCharacterIterator to be traversed
+     * @param turns -> turns since the level started
+     * @param blocked -> how many of those turns the guard's move failed
+     * @return Direction -> the guard's facing
      */
-    private void invokeIter(StringCharacterIterator myIter) {
-        Integer currentIndex = myIter.getIndex();
-        if (forwardMode) {
-            // check if end of iterator has been reached, and swap directions if so
-            if (currentIndex.equals(myIter.getEndIndex() - 1)) {
-                forwardMode = false;
-            } else {
-                myIter.next();
-            }
-        } else {
-            if (currentIndex.equals(myIter.getBeginIndex())) {
-                forwardMode = true;
-            } else {
-                myIter.previous();
-            }
+    public Direction predictLastMove(long turns, long blocked) {
+        long moves = turns - blocked;
+        if (moves == 0) {
+            return Direction.UP;
         }
+        return getRoute().getMove(moves - 1);
     }
 
     /**********************************************************************************
@@ -164,7 +153,7 @@ public class RouteGuard implements Guard {
      **********************************************************************************/
     @Override
 	public void updateLocation(Point newLoc) {
-        location = newLoc;
+        store.setLocation(index, (int) newLoc.getX(), (int) newLoc.getY());
     }
     
     @Override
@@ -176,24 +165,39 @@ public class RouteGuard implements Guard {
      **********************************************************************************/
     @Override
     public Direction getLastMove() {
-        return this.lastMove;
+        return store.getLastMove(index);
     }
     
     @Override
     public int getDetectionRadius() {
-        return this.detectionRadius;
+        return store.getDetectionRadius(index);
     }
 
     @Override
     public DetectionType getDetectionType() {
-        return this.detectionType;
+        return store.getDetectionType(index);
+    }
+    
+    @Override
+    public GuardType getGuardType() {
+        return GuardType.ROUTE;
+    }
+    
+    public RouteTable getRoute() {
+        return store.getRoute(index);
+    }
+    
+    public Point getStartLocation() {
+        return store.getStartLocation(index);
+    }
+    
+    // number of successful moves made so far
+    public long getMoveCount() {
+        return store.getMoveCount(index);
     }
 
     @Override
     public Point getLocation() {
-        return (Point) this.location.clone();
+        return store.getLocation(index);
     }
-
-
-
 }
@@ -0,0 +1,171 @@
+package stealth_game;
+
+import java.awt.Point;
+
+/**
+ * A compiled patrol route. The route string is stored as runs of repeated letters, along with
+ * the total displacement at the start of each run, so that any point along the route can be
+ * found with a binary search over runs instead of by stepping through every letter.
+ *
+ * Route guards walk their route forward, then walk it in reverse (each letter flipped), and
+ * repeat. With n letters, the k-th successful move therefore uses position p = k mod 2n of a
+ * 2n move cycle: letter p going forward for p < n, and letter 2n-1-p reversed otherwise. After
+ * k successful moves the guard stands at its start plus the displacement of the first
+ * min(p, 2n-p) letters.
+ */
+public class RouteTable {
+
+    // number of letters in the route
+    private int length;
+
+    // runs of identical letters: first letter index, direction, and displacement before the run
+    private int runCount;
+    private int[] runStart;
+    private Direction[] runDirection;
+    private int[] runOffsetX;
+    private int[] runOffsetY;
+
+    // total displacement of the whole route
+    private int totalX;
+    private int totalY;
+
+    /**
+     * Compiles a route string of U/D/L/R letters
+     *
+     * @param route -> the route, as written in the level file
+     * @throws IllegalArgumentException if the route is empty or contains another letter
+     */
+    public RouteTable(String route) {
+        length = route.length();
+        if (length == 0) {
+            throw new IllegalArgumentException("Guard route cannot be empty");
+        }
+        runStart = new int[length];
+        runDirection = new Direction[length];
+        runOffsetX = new int[length];
+        runOffsetY = new int[length];
+
+        // split the route into runs, tracking displacement as each letter is passed
+        int offsetX = 0;
+        int offsetY = 0;
+        runCount = 0;
+        for (int i = 0; i < length; i++) {
+            Direction dir = parseLetter(route.charAt(i));
+            if ((runCount == 0) || (runDirection[runCount - 1] != dir)) {
+                runStart[runCount] = i;
+                runDirection[runCount] = dir;
+                runOffsetX[runCount] = offsetX;
+                runOffsetY[runCount] = offsetY;
+                runCount += 1;
+            }
+            offsetX += deltaX(dir);
+            offsetY += deltaY(dir);
+        }
+        totalX = offsetX;
+        totalY = offsetY;
+    }
+
+    /**
+     * Finds the direction of the k-th successful move along the route (counting from 0)
+     */
+    public Direction getMove(long moveCount) {
+        int position = (int) (moveCount % getPeriod());
+        if (position < length) {
+            return runDirection[findRun(position)];
+        }
+        return reverse(runDirection[findRun((2 * length) - 1 - position)]);
+    }
+
+    /**
+     * Finds the displacement from the start of the route after a number of successful moves
+     */
+    public Point getOffset(long moveCount) {
+        int position = (int) (moveCount % getPeriod());
+        int letters = Math.min(position, (2 * length) - position);
+        if (letters == length) {
+            return new Point(totalX, totalY);
+        }
+        int run = findRun(letters);
+        int passed = letters - runStart[run];
+        return new Point(runOffsetX[run] + (passed * deltaX(runDirection[run])),
+                runOffsetY[run] + (passed * deltaY(runDirection[run])));
+    }
+
+    /**
+     * Finds the binary-search index of the run holding a letter of the route
+     */
+    private int findRun(int letter) {
+        int low = 0;
+        int high = runCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (runStart[mid] <= letter) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**********************************************************************************
+     * Direction Helpers
+     **********************************************************************************/
+
+    // translates a route letter to the direction it moves in
+    private static Direction parseLetter(char letter) {
+        switch (letter) {
+            case 'U':
+                return Direction.UP;
+            case 'D':
+                return Direction.DOWN;
+            case 'L':
+                return Direction.LEFT;
+            case 'R':
+                return Direction.RIGHT;
+            default:
+                throw new IllegalArgumentException("Invalid guard route letter: " + letter);
+        }
+    }
+
+    // finds the direction used when walking a letter in reverse
+    private static Direction reverse(Direction dir) {
+        switch (dir) {
+            case UP:
+                return Direction.DOWN;
+            case DOWN:
+                return Direction.UP;
+            case LEFT:
+                return Direction.RIGHT;
+            default:
+                return Direction.LEFT;
+        }
+    }
+
+    private static int deltaX(Direction dir) {
+        return (dir == Direction.LEFT) ? -1 : ((dir == Direction.RIGHT) ? 1 : 0);
+    }
+
+    private static int deltaY(Direction dir) {
+        return (dir == Direction.UP) ? -1 : ((dir == Direction.DOWN) ? 1 : 0);
+    }
+
+    /**********************************************************************************
+     * GETTERS
+     **********************************************************************************/
+
+    // number of letters in the route
+    public int getLength() {
+        return this.length;
+    }
+
+    // number of successful moves before the guard returns to its start
+    public int getPeriod() {
+        return 2 * this.length;
+    }
+
+    // number of runs of repeated letters
+    public int getRunCount() {
+        return this.runCount;
+    }
+}
@@ -325,6 +325,15 @@ public class RunStealthGame implements Runnable {
     }
     
     public static void main(String[] args) {
+        // metrics are always available over JMX, and over HTTP when a port is given
+        Integer metricsPort = Integer.getInteger("stealth.metricsPort");
+        if (metricsPort != null) {
+            try {
+                EngineMetrics.getInstance().serveOpenMetrics(metricsPort);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
         Runnable game = new RunStealthGame();
         SwingUtilities.invokeLater(game);
     }
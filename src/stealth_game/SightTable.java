@@ -0,0 +1,67 @@
+package stealth_game;
+
+import java.awt.Point;
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * The cells visible from one cell, out to a taxicab radius, as found by a VisibilityMap. Cells are
+ * stored as bits over the square window of offsets around the viewer, so checking a cell is a
+ * single bit lookup and listing the visible cells walks only the set bits.
+ *
+ * Tables are never modified once built. A VisibilityMap replaces tables when doors open rather
+ * than changing them, so a table can be shared with snapshots read on other threads.
+ */
+public final class SightTable {
+
+    // radius of the table, and the width of its window of offsets (2 * radius + 1)
+    private final int radius;
+    private final int span;
+    private final BitSet visible;
+
+    /**
+     * @param radius -> taxicab radius covered by the table
+     * @param visible -> visible offsets, indexed by ((dy + radius) * span + (dx + radius))
+     */
+    SightTable(int radius, BitSet visible) {
+        this.radius = radius;
+        this.span = (2 * radius) + 1;
+        this.visible = visible;
+    }
+
+    /**
+     * Checks whether the cell at an offset from the viewer is visible
+     *
+     * @param dx, dy -> offset of the cell from the viewer
+     * @return Boolean -> whether the cell is visible (never true for the viewer's own cell)
+     */
+    public Boolean isVisible(int dx, int dy) {
+        if ((Math.abs(dx) > radius) || (Math.abs(dy) > radius)) {
+            return false;
+        }
+        return visible.get(((dy + radius) * span) + (dx + radius));
+    }
+
+    /**
+     * Adds the visible cells to a zone, keeping only cells inside a rectangle
+     *
+     * @param zone -> the detection zone to add to
+     * @param xCoord, yCoord -> the viewer's location
+     * @param minX, minY -> top left cell of the clipping rectangle
+     * @param maxX, maxY -> bottom right cell of the clipping rectangle
+     */
+    public void addCells(Set<Point> zone, int xCoord, int yCoord, int minX, int minY,
+            int maxX, int maxY) {
+        for (int i = visible.nextSetBit(0); i >= 0; i = visible.nextSetBit(i + 1)) {
+            int col = xCoord + (i % span) - radius;
+            int row = yCoord + (i / span) - radius;
+            if ((col >= minX) && (col <= maxX) && (row >= minY) && (row <= maxY)) {
+                zone.add(new Point(col, row));
+            }
+        }
+    }
+
+    public int getRadius() {
+        return this.radius;
+    }
+}
@@ -0,0 +1,82 @@
+package stealth_game;
+
+import java.util.ArrayList;
+
+/**
+ * A uniform grid index over board cells. Objects are registered under the cell they occupy and
+ * stored in square buckets of cells, so a query for a rectangular range of cells only visits the
+ * buckets overlapping that range. GamePanel uses it to find the drawables inside the viewport
+ * without walking every object on the board.
+ */
+public class SpatialGrid<T> {
+
+    // number of cells along each side of a bucket
+    private static final int BUCKET_SIZE = 8;
+
+    // grid dimensions, in buckets
+    private int bucketColumns;
+    private int bucketRows;
+    private ArrayList<ArrayList<T>> buckets;
+
+    /**
+     * Creates an empty index covering a board of the given size
+     *
+     * @param width -> board width, in cells
+     * @param height -> board height, in cells
+     */
+    public SpatialGrid(int width, int height) {
+        bucketColumns = (width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        bucketRows = (height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        buckets = new ArrayList<ArrayList<T>>(bucketColumns * bucketRows);
+        for (int i = 0; i < bucketColumns * bucketRows; i++) {
+            buckets.add(null);
+        }
+    }
+
+    /**
+     * Registers an object under the cell it occupies
+     */
+    public void add(int xCoord, int yCoord, T item) {
+        int index = (yCoord / BUCKET_SIZE) * bucketColumns + (xCoord / BUCKET_SIZE);
+        ArrayList<T> bucket = buckets.get(index);
+        if (bucket == null) {
+            bucket = new ArrayList<T>();
+            buckets.set(index, bucket);
+        }
+        bucket.add(item);
+    }
+
+    /**
+     * Removes all registered objects, keeping the grid dimensions
+     */
+    public void clear() {
+        for (ArrayList<T> bucket : buckets) {
+            if (bucket != null) {
+                bucket.clear();
+            }
+        }
+    }
+
+    /**
+     * Collects every object in the buckets overlapping an inclusive range of cells. Objects
+     * near the edge of the range may lie just outside it, which is harmless for drawing
+     *
+     * @param minX, minY -> top left cell of the range
+     * @param maxX, maxY -> bottom right cell of the range
+     * @param found -> list that matching objects are appended to (reused between calls)
+     */
+    public void query(int minX, int minY, int maxX, int maxY, ArrayList<T> found) {
+        int firstColumn = Math.max(0, minX / BUCKET_SIZE);
+        int firstRow = Math.max(0, minY / BUCKET_SIZE);
+        int lastColumn = Math.min(bucketColumns - 1, maxX / BUCKET_SIZE);
+        int lastRow = Math.min(bucketRows - 1, maxY / BUCKET_SIZE);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstColumn; col <= lastColumn; col++) {
+                ArrayList<T> bucket = buckets.get(row * bucketColumns + col);
+                if (bucket != null) {
+                    found.addAll(bucket);
+                }
+            }
+        }
+    }
+}
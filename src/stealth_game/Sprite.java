@@ -21,10 +21,28 @@ public class Sprite extends GameObj {
             System.out.println("Internal Error:" + e.getMessage());
         }
     }
+    
+    /**
+     * Creates a sprite from an image that has already been loaded, so that many sprites can
+     * share a single copy of the same asset
+     */
+    public Sprite(int posX, int posY, int size, BufferedImage img) {
+        super(posX, posY, size, size);
+        this.img = img;
+    }
 
+    /**
+     * Draws the image. Images already scaled to the sprite's size (see AssetCache) are copied
+     * as-is, which avoids rescaling the source image on every draw
+     */
     @Override
     public void draw(Graphics g) {
-        g.drawImage(img, this.getPx(), this.getPy(), this.getWidth(), this.getHeight(), null);
+        if ((img != null) && (img.getWidth() == this.getWidth()) 
+                && (img.getHeight() == this.getHeight())) {
+            g.drawImage(img, this.getPx(), this.getPy(), null);
+        } else {
+            g.drawImage(img, this.getPx(), this.getPy(), this.getWidth(), this.getHeight(), null);
+        }
     }
 
 }
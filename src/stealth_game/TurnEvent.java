@@ -0,0 +1,74 @@
+package stealth_game;
+
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event timing a whole turn on the board (GameBoard.incrementTurn), which
+ * contains the KEYS, GUARD_AI, GUARD_MOVES and DETECTION phases of TurnPhaseEvent. Cells touched
+ * is the sum over those phases. Like the phase events, it costs next to nothing while no
+ * recording is running, and is held back while the board is speculative (see
+ * GameBoard.setSpeculative)
+ */
+@Name("stealth_game.Turn")
+@Label("Turn")
+@Category({"StealthJava", "Turns"})
+@Description("Time spent moving the board on by a turn")
+public class TurnEvent extends Event {
+
+    @Label("Level")
+    String level;
+
+    @Label("Turn")
+    int turn;
+
+    @Label("Guard Count")
+    int guardCount;
+
+    @Label("Cells Touched")
+    long cellsTouched;
+
+    @Label("Defeat")
+    boolean defeat;
+
+    /**
+     * Starts timing a turn
+     */
+    public static TurnEvent start() {
+        TurnEvent event = new TurnEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stops timing the turn, and records it if a recording wants it
+     *
+     * @param level -> the level's name
+     * @param turn -> the turn just played
+     * @param guardCount -> guards on the board
+     * @param cellsTouched -> cells visited over the turn's phases
+     * @param defeat -> whether the player was caught this turn
+     * @param held -> where to hold the event instead of recording it (null to record it now)
+     */
+    public void finish(String level, int turn, int guardCount, long cellsTouched,
+            boolean defeat, List<Event> held) {
+        end();
+        if ((held != null) || shouldCommit()) {
+            this.level = level;
+            this.turn = turn;
+            this.guardCount = guardCount;
+            this.cellsTouched = cellsTouched;
+            this.defeat = defeat;
+            if (held != null) {
+                held.add(this);
+            } else {
+                commit();
+            }
+        }
+    }
+}
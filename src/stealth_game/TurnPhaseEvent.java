@@ -0,0 +1,100 @@
+package stealth_game;
+
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event timing one phase of a turn. Phases are timed where the work happens:
+ *    - KEYS: the player picking up a key, and the doors it opens (GameBoard.incrementTurn)
+ *    - GUARD_AI: every guard choosing its move
+ *    - GUARD_MOVES: applying the moves, including the key square scan made by each move
+ *    - DETECTION: checking whether the player is watched, and building detection zones
+ *    - VISION: building the darkness of a dark level (on the board, or for the display)
+ *    - REBUILD: the display recreating its movables from a new snapshot (GamePanel)
+ * Cells touched counts the cells (or key squares) each phase visited, as a measure of its work.
+ *
+ * Events cost next to nothing while no recording is running: fields are only filled in once
+ * shouldCommit confirms the event will be kept. Events of a speculative board are held back
+ * until the engine commits the board (see GameBoard.setSpeculative). Record a session with, e.g.,
+ * -XX:StartFlightRecording=filename=stealth.jfr, then read it with
+ * jfr print --events stealth_game.TurnPhase stealth.jfr
+ */
+@Name("stealth_game.TurnPhase")
+@Label("Turn Phase")
+@Category({"StealthJava", "Turns"})
+@Description("Time spent in one phase of a turn")
+public class TurnPhaseEvent extends Event {
+
+    public static final String KEYS = "keys";
+    public static final String GUARD_AI = "guard AI";
+    public static final String GUARD_MOVES = "guard moves";
+    public static final String DETECTION = "detection";
+    public static final String VISION = "vision";
+    public static final String REBUILD = "rebuild";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Level")
+    String level;
+
+    @Label("Turn")
+    int turn;
+
+    @Label("Guard Count")
+    int guardCount;
+
+    @Label("Cells Touched")
+    long cellsTouched;
+
+    /**
+     * Starts timing a phase
+     *
+     * @param phase -> which phase (one of the constants above)
+     * @return TurnPhaseEvent -> the event, to be finished when the phase is done
+     */
+    public static TurnPhaseEvent start(String phase) {
+        TurnPhaseEvent event = new TurnPhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stops timing the phase, and records it if a recording wants it
+     *
+     * @param level -> the level's name
+     * @param turn -> the turn the phase belongs to
+     * @param guardCount -> guards on the board
+     * @param cellsTouched -> cells the phase visited
+     */
+    public void finish(String level, int turn, int guardCount, long cellsTouched) {
+        finish(level, turn, guardCount, cellsTouched, null);
+    }
+
+    /**
+     * Stops timing the phase, and records it or holds it
+     *
+     * @param held -> where to hold the event instead of recording it (null to record it now)
+     */
+    public void finish(String level, int turn, int guardCount, long cellsTouched,
+            List<Event> held) {
+        end();
+        if ((held != null) || shouldCommit()) {
+            this.level = level;
+            this.turn = turn;
+            this.guardCount = guardCount;
+            this.cellsTouched = cellsTouched;
+            if (held != null) {
+                held.add(this);
+            } else {
+                commit();
+            }
+        }
+    }
+}
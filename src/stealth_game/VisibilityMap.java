@@ -0,0 +1,205 @@
+package stealth_game;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds which cells can be seen from each cell of the board, for guards whose sight is blocked by
+ * walls and closed doors. Visibility is found by recursive shadowcasting: each of the eight
+ * octants around the viewer is scanned row by row outward, and walls narrow the range of slopes
+ * still lit in the rows beyond them.
+ *
+ * Walls never change, so the result for a cell is cached as a SightTable (one per cell and radius)
+ * and reused every turn a guard stands there. Opening a door only discards the tables of cells
+ * close enough to have seen the door; every other table stays valid.
+ *
+ * Copies (made for every forked board) share the blocked cells and the cache with the original
+ * until either one opens a door, and only then take their own: while the blocked cells are the
+ * same, a table computed by either is valid for both.
+ */
+public class VisibilityMap {
+
+    // octant transforms: (col, row) within an octant maps to
+    // (col * xx + row * xy, col * yx + row * yy) around the viewer
+    private static final int[][] OCTANTS = {
+        {1, 0, 0, 1}, {0, 1, 1, 0}, {0, -1, 1, 0}, {-1, 0, 0, 1},
+        {-1, 0, 0, -1}, {0, -1, -1, 0}, {0, 1, -1, 0}, {1, 0, 0, -1}
+    };
+
+    // board dimensions, and cells which block sight
+    private int width;
+    private int height;
+    private boolean[] blocked;
+
+    // cached tables, per radius, per cell (a null entry has not been computed)
+    private HashMap<Integer, SightTable[]> tables;
+
+    // whether the blocked cells and cache may be shared with a copy (or the map copied from)
+    private Boolean shared;
+
+    /**
+     * Creates a map covering a board of the given size, with nothing blocking sight
+     *
+     * @param width -> board width, in cells
+     * @param height -> board height, in cells
+     */
+    public VisibilityMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        blocked = new boolean[width * height];
+        tables = new HashMap<Integer, SightTable[]>();
+        shared = false;
+    }
+
+    private VisibilityMap(VisibilityMap other) {
+        width = other.width;
+        height = other.height;
+        blocked = other.blocked;
+        tables = other.tables;
+        shared = true;
+    }
+
+    /**
+     * Copies the map, sharing its state until either map changes a blocked cell. Copies must
+     * be used from the same thread as the original
+     */
+    public VisibilityMap copy() {
+        shared = true;
+        return new VisibilityMap(this);
+    }
+
+    // takes private copies of the blocked cells and cache, before changing them
+    private void unshare() {
+        blocked = blocked.clone();
+        HashMap<Integer, SightTable[]> ownTables = new HashMap<Integer, SightTable[]>();
+        for (Map.Entry<Integer, SightTable[]> entry : tables.entrySet()) {
+            ownTables.put(entry.getKey(), entry.getValue().clone());
+        }
+        tables = ownTables;
+        shared = false;
+    }
+
+    /**
+     * Marks a cell as blocking sight (a wall or closed door) or not. Changing a cell discards
+     * the cached tables of every cell that could see it
+     */
+    public void setBlocked(int xCoord, int yCoord, boolean isBlocked) {
+        int index = (yCoord * width) + xCoord;
+        if (blocked[index] == isBlocked) {
+            return;
+        }
+        if (shared) {
+            unshare();
+        }
+        blocked[index] = isBlocked;
+        for (Map.Entry<Integer, SightTable[]> entry : tables.entrySet()) {
+            int radius = entry.getKey();
+            SightTable[] cells = entry.getValue();
+            for (int row = Math.max(0, yCoord - radius);
+                    row <= Math.min(height - 1, yCoord + radius); row++) {
+                for (int col = Math.max(0, xCoord - radius);
+                        col <= Math.min(width - 1, xCoord + radius); col++) {
+                    cells[(row * width) + col] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the cells visible from a cell within a taxicab radius, computing and caching the
+     * table on first use (where copies sharing the cache will find it too). Not safe to call
+     * from several threads at once unless the table has already been computed
+     *
+     * @param xCoord, yCoord -> the viewer's cell (on the board)
+     * @param radius -> how far the viewer can see
+     * @return SightTable -> the visible cells
+     */
+    public SightTable getTable(int xCoord, int yCoord, int radius) {
+        SightTable[] cells = tables.get(radius);
+        if (cells == null) {
+            cells = new SightTable[width * height];
+            tables.put(radius, cells);
+        }
+        int index = (yCoord * width) + xCoord;
+        if (cells[index] == null) {
+            cells[index] = compute(xCoord, yCoord, radius);
+        }
+        return cells[index];
+    }
+
+    /**
+     * Shadowcasts every octant around a viewer
+     */
+    private SightTable compute(int xCoord, int yCoord, int radius) {
+        BitSet visible = new BitSet(((2 * radius) + 1) * ((2 * radius) + 1));
+        for (int[] octant : OCTANTS) {
+            castLight(xCoord, yCoord, radius, 1, 1.0, 0.0, octant, visible);
+        }
+        return new SightTable(radius, visible);
+    }
+
+    /**
+     * Lights the rows of one octant from a starting row outward, between two slopes (measured
+     * as column over row, from the octant's diagonal down to its axis). A wall splits the lit
+     * range: the part before it is continued in a recursive call, and the scan of the current
+     * call resumes past it
+     *
+     * @param xCoord, yCoord -> the viewer's cell
+     * @param radius -> taxicab radius of sight
+     * @param startRow -> first row to scan
+     * @param startSlope, endSlope -> range of slopes still lit (start >= end)
+     * @param octant -> the octant's transform
+     * @param visible -> receives the lit cells, as offsets within the table's window
+     */
+    private void castLight(int xCoord, int yCoord, int radius, int startRow, double startSlope,
+            double endSlope, int[] octant, BitSet visible) {
+        if (startSlope < endSlope) {
+            return;
+        }
+        int span = (2 * radius) + 1;
+        double start = startSlope;
+        double nextStart = startSlope;
+        for (int row = startRow; row <= radius; row++) {
+            Boolean inShadow = false;
+            for (int col = row; col >= 0; col--) {
+                double leftSlope = (col + 0.5) / (row - 0.5);
+                double rightSlope = (col - 0.5) / (row + 0.5);
+                if (start < rightSlope) {
+                    continue;
+                } else if (endSlope > leftSlope) {
+                    break;
+                }
+
+                // light the cell if it is on the board and within the taxicab radius
+                int dx = (col * octant[0]) + (row * octant[1]);
+                int dy = (col * octant[2]) + (row * octant[3]);
+                int cellX = xCoord + dx;
+                int cellY = yCoord + dy;
+                boolean onBoard = (cellX >= 0) && (cellY >= 0) && (cellX < width)
+                        && (cellY < height);
+                if (onBoard && (Math.abs(dx) + Math.abs(dy) <= radius)) {
+                    visible.set(((dy + radius) * span) + (dx + radius));
+                }
+
+                // cells off the board block sight, as walls do
+                boolean opaque = (!onBoard) || blocked[(cellY * width) + cellX];
+                if (inShadow) {
+                    if (opaque) {
+                        nextStart = rightSlope;
+                    } else {
+                        inShadow = false;
+                        start = nextStart;
+                    }
+                } else if (opaque && (row < radius)) {
+                    inShadow = true;
+                    castLight(xCoord, yCoord, radius, row + 1, start, leftSlope, octant, visible);
+                    nextStart = rightSlope;
+                }
+            }
+            if (inShadow) {
+                break;
+            }
+        }
+    }
+}
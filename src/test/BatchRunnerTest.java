@@ -0,0 +1,65 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import stealth_game.*;
+
+/**
+ * Contains tests for the headless batch runner
+ */
+
+public class BatchRunnerTest {
+
+    // test that the batch runner plays levels, and reports levels that cannot be loaded
+    @Test
+    public void testBatchRunner() throws InterruptedException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        BatchRunner runner = new BatchRunner(2, 50, 7L, 2, new File("."),
+                new PrintStream(printed, true));
+        ArrayList<File> files = new ArrayList<File>();
+        files.add(new File("files/Levels/Level00_Intro.csv"));
+        files.add(new File("files/Levels/Level14_Scatter.csv"));
+        assertTrue(runner.run(files));
+        // a line per run, and the summary
+        assertEquals(5, printed.toString().split("\n").length);
+
+        files.add(new File("files/archive/test_Level_NonRectangular.csv"));
+        assertFalse(runner.run(files));
+    }
+
+    // test that a corrupt replay fails its run without stopping the rest of the batch
+    @Test
+    public void testCorruptReplay() throws IOException, InterruptedException {
+        File corrupt = File.createTempFile("corrupt", ".sjr");
+        try {
+            // a level path claimed to be 2GB long
+            Files.write(corrupt.toPath(), new byte[] {'S', 'J', 'R', 'P', 1,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+            ByteArrayOutputStream printed = new ByteArrayOutputStream();
+            BatchRunner runner = new BatchRunner(1, 50, 7L, 1, new File("."),
+                    new PrintStream(printed, true));
+            ArrayList<File> files = new ArrayList<File>();
+            files.add(corrupt);
+            files.add(new File("files/Levels/Level00_Intro.csv"));
+            assertFalse(runner.run(files));
+
+            String[] lines = printed.toString().split("\n");
+            assertEquals(3, lines.length);
+            assertTrue(lines[0].contains("FAILED: unreadable"));
+            assertTrue(lines[1].contains("Level00_Intro"));
+            assertFalse(lines[1].contains("FAILED"));
+            assertTrue(lines[2].contains("1 failed"));
+        } finally {
+            corrupt.delete();
+        }
+    }
+}
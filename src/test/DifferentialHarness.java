@@ -0,0 +1,476 @@
+package test;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import stealth_game.*;
+
+/**
+ * Differential testing of GameBoard: a reference board and a candidate board are built from the
+ * same level and seed, fed the same random inputs in lockstep, and compared after every input.
+ *
+ * The reference is a ReferenceBoard: GameBoard and its guards as they were before the engine's
+ * optimizations, sharing none of the engine's code, so a mistake in the engine cannot hide by
+ * appearing on both sides. A candidate drives a GameBoard through one of the engine's paths (plain
+ * turns with lazy and regional detection, forking, parallel guard movement), and is observed
+ * through them too. After every input the two must agree on the turn, victory and defeat, the
+ * player and every guard's position, the doors and keys left, the detection zone (cell by cell
+ * around the player and at random cells, through a random region, and through a BoardSnapshot), and
+ * darkness on dark levels. A rework of GameBoard is checked by adding a candidate for it.
+ *
+ * Inputs are coded as in Replay (the five player inputs, then guards being stopped). When a
+ * sequence ends in a difference, it is cut off after the first difference and shrunk by removing
+ * runs of inputs while the difference remains, so the reproducer printed is short.
+ *
+ * Run from the repository root for a soak test of every candidate (default: one minute), on a
+ * harness per processor:
+ *    java -cp game/target/classes:game/target/test-classes test.DifferentialHarness [min]
+ */
+public class DifferentialHarness {
+
+    /**
+     * A way of building and driving a board, compared against the reference
+     */
+    public interface Candidate {
+        public String getName();
+        public GameBoard build(String level, Boolean dark, long seed);
+
+        /**
+         * Plays one input code on a board
+         *
+         * @return GameBoard -> the board to carry on with (which may be a new one)
+         */
+        public GameBoard play(GameBoard board, int code);
+    }
+
+    /**
+     * A difference between the reference and a candidate, with the inputs reproducing it
+     */
+    public static class Failure {
+        public String candidate;
+        public String level;
+        public Boolean dark;
+        public long seed;
+        public int[] inputs;
+        public String difference;
+
+        @Override
+        public String toString() {
+            StringBuilder moves = new StringBuilder();
+            for (int code : inputs) {
+                moves.append(CODE_NAMES.charAt(code));
+            }
+            return candidate + " differs on " + level + (dark ? " (dark)" : "") + ", seed " + seed
+                    + ", after inputs [" + moves + "]: " + difference;
+        }
+    }
+
+    // input letters, by code: Wait, Up, Down, Left, Right, guards Stopped
+    private static final String CODE_NAMES = "WUDLRS";
+
+    // vision radius on dark runs
+    private static final int VISION = 4;
+
+    // cells whose detection is read one by one after each input, besides the player's cell and
+    // its neighbours
+    private static final int SAMPLED_CELLS = 24;
+    private static final int[][] NEIGHBOURS = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
+
+    private Random random;
+    private ArrayList<String> levels;
+    private long inputsPlayed;
+
+    // walls of the level being checked (they never change, so snapshots share them)
+    private Set<Point> walls;
+
+    /**
+     * @param seed -> seed for the levels, board seeds and inputs picked
+     */
+    public DifferentialHarness(long seed) {
+        random = new Random(seed);
+        levels = new ArrayList<String>();
+        inputsPlayed = 0;
+    }
+
+    public void addLevel(String filePath) {
+        levels.add(filePath);
+    }
+
+    /**
+     * Adds every shipped level, and a few generated ones mixing every guard and detection type
+     * (written to temporary files)
+     */
+    public void addStandardLevels() throws IOException {
+        String[] folders = {"files/Levels", "files/Expansion"};
+        for (String folder : folders) {
+            File[] files = new File(folder).listFiles();
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().endsWith(".csv")) {
+                    addLevel(file.getPath());
+                }
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            int size = 12 + (i * 4);
+            LevelGenerator generator = new LevelGenerator(size, size, 1000 + i);
+            generator.setGuardCount((size * size) / 12);
+            generator.setLockCount(2);
+            File file = File.createTempFile("differential-" + size + "-", ".csv");
+            file.deleteOnExit();
+            generator.write(file.getPath());
+            addLevel(file.getPath());
+        }
+    }
+
+    public long getInputsPlayed() {
+        return inputsPlayed;
+    }
+
+    /**********************************************************************************
+     * RUNNING
+     **********************************************************************************/
+
+    /**
+     * Plays random input sequences against a candidate, on random levels, stopping at the first
+     * difference
+     *
+     * @param candidate -> the candidate to check
+     * @param sequences -> the number of sequences to play
+     * @param length -> inputs per sequence
+     * @return Failure -> the first difference found (shrunk), or null if there was none
+     */
+    public Failure run(Candidate candidate, int sequences, int length) {
+        for (int i = 0; i < sequences; i++) {
+            String level = levels.get(random.nextInt(levels.size()));
+            Boolean dark = random.nextInt(4) == 0;
+            long seed = random.nextLong();
+            int[] inputs = randomInputs(length);
+            Failure failure = check(candidate, level, dark, seed, inputs);
+            if (failure != null) {
+                return shrink(candidate, failure);
+            }
+        }
+        return null;
+    }
+
+    // random inputs, favouring moves, with guards very rarely stopped
+    private int[] randomInputs(int length) {
+        int[] inputs = new int[length];
+        for (int i = 0; i < length; i++) {
+            int roll = random.nextInt(1000);
+            if (roll == 0) {
+                inputs[i] = Replay.GUARDS_STOPPED;
+            } else {
+                inputs[i] = (roll % 5);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Plays a sequence on the reference and the candidate in lockstep. Inputs after the level
+     * ends are skipped, as the game ignores them
+     *
+     * @return Failure -> the difference, with the inputs up to it, or null if they agree
+     */
+    public Failure check(Candidate candidate, String level, Boolean dark, long seed,
+            int[] inputs) {
+        ReferenceBoard reference = new ReferenceBoard(level, dark, VISION, seed);
+        GameBoard board = candidate.build(level, dark, seed);
+        walls = reference.getWalls();
+        String difference = compare(reference, board);
+        int played = 0;
+        while ((difference == null) && (played < inputs.length) && (!reference.isVictory())
+                && (!reference.isDefeat())) {
+            int code = inputs[played];
+            playReference(reference, code);
+            board = candidate.play(board, code);
+            played += 1;
+            inputsPlayed += 1;
+            difference = compare(reference, board);
+        }
+        if (difference == null) {
+            return null;
+        }
+        Failure failure = new Failure();
+        failure.candidate = candidate.getName();
+        failure.level = level;
+        failure.dark = dark;
+        failure.seed = seed;
+        failure.inputs = Arrays.copyOf(inputs, played);
+        failure.difference = difference;
+        return failure;
+    }
+
+    /**
+     * Shrinks a failing sequence: runs of inputs are removed, from half the sequence down to
+     * single inputs, whenever the shortened sequence still fails
+     */
+    public Failure shrink(Candidate candidate, Failure failure) {
+        int chunk = Math.max(1, failure.inputs.length / 2);
+        while (chunk >= 1) {
+            Boolean removed = false;
+            int start = 0;
+            while (start < failure.inputs.length) {
+                int length = failure.inputs.length;
+                int cut = Math.min(chunk, length - start);
+                int[] shorter = new int[length - cut];
+                System.arraycopy(failure.inputs, 0, shorter, 0, start);
+                System.arraycopy(failure.inputs, start + cut, shorter, start, length - start - cut);
+                Failure smaller = check(candidate, failure.level, failure.dark, failure.seed,
+                        shorter);
+                if (smaller != null) {
+                    failure = smaller;
+                    removed = true;
+                } else {
+                    start += chunk;
+                }
+            }
+            if (!removed) {
+                chunk /= 2;
+            }
+        }
+        return failure;
+    }
+
+    /**********************************************************************************
+     * COMPARISON
+     **********************************************************************************/
+
+    private static void playReference(ReferenceBoard board, int code) {
+        if (code == Replay.GUARDS_STOPPED) {
+            board.disableGuardMovement();
+        } else if (Replay.inputOf(code) == PlayerInput.WAIT) {
+            board.incrementTurn();
+        } else {
+            board.movePlayer(Replay.inputOf(code).getDirection());
+        }
+    }
+
+    // plays an input code on an engine board, as the game does
+    private static void playEngine(GameBoard board, int code) {
+        if (code == Replay.GUARDS_STOPPED) {
+            board.disableGuardMovement();
+        } else if (Replay.inputOf(code) == PlayerInput.WAIT) {
+            board.incrementTurn();
+        } else {
+            board.moveObject(board.getPlayer(), Replay.inputOf(code).getDirection());
+        }
+    }
+
+    /**
+     * Compares a candidate's board with the reference
+     *
+     * @return String -> the first difference found, or null if they agree
+     */
+    private String compare(ReferenceBoard reference, GameBoard board) {
+        if (!reference.getTurn().equals(board.getTurn())) {
+            return "turn " + board.getTurn() + ", expected " + reference.getTurn();
+        }
+        if ((!reference.isVictory().equals(board.isVictory()))
+                || (!reference.isDefeat().equals(board.isDefeat()))) {
+            return "outcome " + ReplayVerifier.outcome(board.isVictory(), board.isDefeat())
+                    + ", expected " + ReplayVerifier.outcome(reference.isVictory(),
+                    reference.isDefeat());
+        }
+        if (!reference.getPlayerLocation().equals(board.getPlayerLocation())) {
+            return "player at " + board.getPlayerLocation() + ", expected "
+                    + reference.getPlayerLocation();
+        }
+        ArrayList<Point> expectedGuards = reference.getGuardLocations();
+        if (expectedGuards.size() != board.getGuards().size()) {
+            return board.getGuards().size() + " guards, expected " + expectedGuards.size();
+        }
+        Iterator<Guard> guards = board.getGuards().iterator();
+        for (int i = 0; i < expectedGuards.size(); i++) {
+            Point expected = expectedGuards.get(i);
+            Point actual = guards.next().getLocation();
+            if (!expected.equals(actual)) {
+                return "guard " + i + " at " + actual + ", expected " + expected;
+            }
+        }
+        if ((!reference.getDoors().equals(board.getDoors()))
+                || (!reference.getKeys().equals(board.getKeys()))) {
+            return "doors " + board.getDoors() + " and keys " + board.getKeys() + ", expected "
+                    + reference.getDoors() + " and " + reference.getKeys();
+        }
+
+        // detection: cell by cell (the player's cell and its neighbours, and a sample of the
+        // rest), through a random region, and through a snapshot
+        HashSet<Point> zone = reference.getDetectionZone();
+        int width = reference.getWidth();
+        int height = reference.getHeight();
+        Point player = reference.getPlayerLocation();
+        for (int i = -4; i < SAMPLED_CELLS; i++) {
+            int x = (i < 0) ? player.x + NEIGHBOURS[i + 4][0] : random.nextInt(width);
+            int y = (i < 0) ? player.y + NEIGHBOURS[i + 4][1] : random.nextInt(height);
+            if ((x < 0) || (y < 0) || (x >= width) || (y >= height)) {
+                continue;
+            }
+            if (board.isWatched(x, y) != zone.contains(new Point(x, y))) {
+                return "cell (" + x + ", " + y + ") watched: " + board.isWatched(x, y)
+                        + ", expected " + zone.contains(new Point(x, y));
+            }
+        }
+        if (board.isWatched(player.x, player.y) != zone.contains(player)) {
+            return "player's cell watched: " + board.isWatched(player.x, player.y);
+        }
+        int minX = random.nextInt(width);
+        int minY = random.nextInt(height);
+        int maxX = minX + random.nextInt(width - minX);
+        int maxY = minY + random.nextInt(height - minY);
+        Set<Point> region = board.getDetectionZone(minX, minY, maxX, maxY);
+        if (!region.equals(clip(zone, minX, minY, maxX, maxY))) {
+            return "detection zone in (" + minX + ", " + minY + ")-(" + maxX + ", " + maxY
+                    + ") differs";
+        }
+        BoardSnapshot snapshot = new BoardSnapshot(board, 0, 0, walls);
+        if (!snapshot.getDetectionZone().equals(zone)) {
+            return "snapshot detection zone differs";
+        }
+        if (reference.getDarkness() && (!reference.getDarknessZone().equals(
+                board.getDarknessZone()))) {
+            return "darkness differs";
+        }
+        return null;
+    }
+
+    // the cells of a zone inside a region
+    private static HashSet<Point> clip(Set<Point> zone, int minX, int minY, int maxX, int maxY) {
+        HashSet<Point> clipped = new HashSet<Point>();
+        for (Point cell : zone) {
+            if ((cell.x >= minX) && (cell.x <= maxX) && (cell.y >= minY) && (cell.y <= maxY)) {
+                clipped.add(cell);
+            }
+        }
+        return clipped;
+    }
+
+    /**********************************************************************************
+     * CANDIDATES
+     **********************************************************************************/
+
+    // plays every input on one GameBoard, returning the same board
+    private static abstract class PlainCandidate implements Candidate {
+        @Override
+        public GameBoard build(String level, Boolean dark, long seed) {
+            return new GameBoard(level, dark, VISION, seed);
+        }
+
+        @Override
+        public GameBoard play(GameBoard board, int code) {
+            playEngine(board, code);
+            return board;
+        }
+    }
+
+    /**
+     * The engine's candidates: a GameBoard played turn by turn, with detection read lazily (the
+     * comparison itself reads it cell by cell and by region), every input played on a fresh fork
+     * (as speculation does), and guard movement spread across threads
+     */
+    public static ArrayList<Candidate> engineCandidates() {
+        ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+        candidates.add(new PlainCandidate() {
+            @Override
+            public String getName() {
+                return "plain turns";
+            }
+        });
+        candidates.add(new PlainCandidate() {
+            @Override
+            public String getName() {
+                return "forked boards";
+            }
+
+            @Override
+            public GameBoard play(GameBoard board, int code) {
+                GameBoard fork = board.fork();
+                playEngine(fork, code);
+                return fork;
+            }
+        });
+        final ExecutorService guardThreads = Executors.newFixedThreadPool(4,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread worker = new Thread(r, "differential-guards");
+                        worker.setDaemon(true);
+                        return worker;
+                    }
+                });
+        candidates.add(new PlainCandidate() {
+            @Override
+            public String getName() {
+                return "parallel guards";
+            }
+
+            @Override
+            public GameBoard build(String level, Boolean dark, long seed) {
+                GameBoard board = new GameBoard(level, dark, VISION, seed);
+                board.setParallelGuards(guardThreads, 1);
+                return board;
+            }
+        });
+        return candidates;
+    }
+
+    /**
+     * Soak test: plays every engine candidate in turn, on one harness per processor, until time
+     * runs out, then reports the inputs compared per minute. Stops at the first difference,
+     * printing its reproducer
+     *
+     * @param args -> optionally the minutes to run for (default 1)
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        double minutes = (args.length > 0) ? Double.parseDouble(args[0]) : 1.0;
+        final long start = System.nanoTime();
+        final long end = start + (long) (minutes * 60e9);
+        long seed = System.nanoTime();
+        System.out.println("Seed " + seed);
+
+        final AtomicLong inputs = new AtomicLong();
+        Thread[] workers = new Thread[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < workers.length; i++) {
+            final DifferentialHarness harness = new DifferentialHarness(seed + i);
+            harness.addStandardLevels();
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ArrayList<Candidate> candidates = engineCandidates();
+                    while (System.nanoTime() < end) {
+                        for (Candidate candidate : candidates) {
+                            Failure failure = harness.run(candidate, 20, 200);
+                            if (failure != null) {
+                                System.out.println(failure);
+                                System.exit(1);
+                            }
+                        }
+                    }
+                    inputs.addAndGet(harness.getInputsPlayed());
+                }
+            }, "differential-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 60e9;
+        System.out.println(String.format("%d inputs compared in %.2f min on %d threads"
+                + " (%.0f per minute)", inputs.get(), elapsed, workers.length,
+                inputs.get() / elapsed));
+        System.exit(0);
+    }
+}
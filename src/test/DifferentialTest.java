@@ -0,0 +1,96 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+import stealth_game.*;
+
+/**
+ * Contains differential tests of the engine's paths against the reference board
+ */
+
+public class DifferentialTest {
+
+    // test that every engine candidate agrees with the reference on random play
+    @Test
+    public void testEngineCandidatesAgree() throws IOException {
+        DifferentialHarness harness = new DifferentialHarness(49L);
+        harness.addStandardLevels();
+        for (DifferentialHarness.Candidate candidate : DifferentialHarness.engineCandidates()) {
+            DifferentialHarness.Failure failure = harness.run(candidate, 40, 150);
+            assertNull(failure, String.valueOf(failure));
+        }
+    }
+
+    // test that every engine candidate agrees with the reference when a door opens between the
+    // player and a sighted guard and a seeker (which random play seldom reaches)
+    @Test
+    public void testDoorOpening() throws IOException {
+        File level = File.createTempFile("door", ".csv");
+        try {
+            Files.writeString(level.toPath(), "P,K1,E,E,E\n"
+                    + "W,W,D1,W,W\n"
+                    + "E,E,PM;L3;RLRL,E,G\n"
+                    + "E,SM;C1,E,E,E");
+            DifferentialHarness harness = new DifferentialHarness(51L);
+            int[] inputs = {4, 0, 0, 0, 0, 0};
+            for (DifferentialHarness.Candidate candidate : DifferentialHarness.engineCandidates()) {
+                DifferentialHarness.Failure failure = harness.check(candidate, level.getPath(),
+                        false, 1L, inputs);
+                assertNull(failure, String.valueOf(failure));
+            }
+        } finally {
+            level.delete();
+        }
+    }
+
+    // test that a broken candidate is caught, and its failing sequence shrunk to the two inputs
+    // that break it
+    @Test
+    public void testShrinking() {
+        DifferentialHarness harness = new DifferentialHarness(50L);
+        harness.addLevel("files/Levels/Level00_Intro.csv");
+
+        // drops any wait straight after a move left
+        DifferentialHarness.Candidate broken = new DifferentialHarness.Candidate() {
+            private int lastCode = -1;
+
+            @Override
+            public String getName() {
+                return "broken";
+            }
+
+            @Override
+            public GameBoard build(String level, Boolean dark, long seed) {
+                lastCode = -1;
+                return new GameBoard(level, dark, 4, seed);
+            }
+
+            @Override
+            public GameBoard play(GameBoard board, int code) {
+                if ((code == 0) && (lastCode == 3)) {
+                    lastCode = code;
+                    return board;
+                }
+                lastCode = code;
+                if (Replay.inputOf(code) == PlayerInput.WAIT) {
+                    board.incrementTurn();
+                } else if (Replay.inputOf(code) != null) {
+                    board.moveObject(board.getPlayer(), Replay.inputOf(code).getDirection());
+                } else {
+                    board.disableGuardMovement();
+                }
+                return board;
+            }
+        };
+        DifferentialHarness.Failure failure = harness.run(broken, 10, 100);
+        assertNotNull(failure);
+        assertArrayEquals(new int[] {3, 0}, failure.inputs);
+        assertTrue(failure.toString().contains("[LW]"));
+    }
+}
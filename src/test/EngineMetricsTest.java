@@ -0,0 +1,82 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import stealth_game.EngineMetrics;
+import stealth_game.LatencyHistogram;
+
+/**
+ * Contains tests for the engine's metrics
+ */
+
+public class EngineMetricsTest {
+
+    // test percentiles are read back within the histogram's precision
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        for (long nanos = 1; nanos <= 100000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000L, histogram.getMax());
+        assertEquals(50000000.0, histogram.getPercentile(0.5), 50000000.0 / 64);
+        assertEquals(99000000.0, histogram.getPercentile(0.99), 99000000.0 / 64);
+        assertEquals(100000000L, histogram.getPercentile(1.0));
+
+        // small durations are exact
+        histogram.reset();
+        histogram.record(3);
+        histogram.record(5);
+        assertEquals(3, histogram.getPercentile(0.5));
+        assertEquals(5, histogram.getPercentile(0.99));
+    }
+
+    // test turns show up over JMX, and over HTTP in OpenMetrics format
+    @Test
+    public void testMetricsExport() throws IOException, JMException {
+        EngineMetrics metrics = EngineMetrics.getInstance();
+        metrics.reset();
+        metrics.recordTurn(2000000, 4096);
+        metrics.recordTurn(4000000, 4096);
+        assertEquals(4000000, metrics.getLastTurnNanos());
+        assertTrue(metrics.getHeapUsedBytes() > 0);
+
+        Object turns = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName(EngineMetrics.OBJECT_NAME), "TurnCount");
+        assertEquals(2L, turns);
+
+        HttpServer server = metrics.serveOpenMetrics(0);
+        try {
+            URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("application/openmetrics-text"));
+            InputStream stream = connection.getInputStream();
+            String body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            stream.close();
+            assertTrue(body.contains("stealth_turns_total 2\n"));
+            assertTrue(body.contains("# TYPE stealth_turn_latency_seconds summary\n"));
+            assertTrue(body.contains("stealth_turn_latency_seconds_count 2\n"));
+            assertTrue(body.contains("stealth_turn_allocated_bytes 4096\n"));
+            assertTrue(body.endsWith("# EOF\n"));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -3,7 +3,13 @@ package test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.jupiter.api.Test;
 
@@ -167,4 +173,214 @@ public class GameBoardTest {
         gb.moveObject(player, Direction.RIGHT);
         assertEquals("M", gb.getElement(0, 6));
     }   
+    
+    // test that seeking chase guards walk around walls, while plain chase guards get stuck
+    @Test
+    public void testSeekingGuard() {
+        GameBoard gb = new GameBoard("files/archive/test_SeekerTest.csv", false, 0);
+        for (int i = 0; i < 11; i++) {
+            gb.incrementTurn();
+        }
+        
+        // the hunter is pinned against the wall above the player, the seeker heads for the gap
+        assertEquals("M", gb.getElement(0, 7));
+        assertEquals("M", gb.getElement(9, 7));
+        gb.incrementTurn();
+        gb.incrementTurn();
+        assertEquals("M", gb.getElement(0, 7));
+        assertEquals("M", gb.getElement(9, 9));
+        assertFalse(gb.isDefeat());
+    }
+    
+    // test the distance field against walls, and its reuse across source moves
+    @Test
+    public void testDistanceField() {
+        DistanceField field = new DistanceField(5, 3);
+        field.setBlocked(1, 0, true);
+        field.setBlocked(1, 1, true);
+        field.setSource(0, 0);
+        assertEquals(2, field.getDistance(0, 2));
+        assertEquals(6, field.getDistance(2, 0));
+        assertEquals(DistanceField.UNREACHABLE, field.getDistance(1, 1));
+        field.setSource(2, 0);
+        assertEquals(0, field.getDistance(2, 0));
+        assertEquals(6, field.getDistance(0, 0));
+        field.setBlocked(1, 2, true);
+        assertEquals(DistanceField.UNREACHABLE, field.getDistance(0, 0));
+        assertEquals(4, field.getDistance(4, 2));
+    }
+    
+    // test that predicted detection on a patrol-only level matches the detection zone once the
+    // predicted turn arrives
+    @Test
+    public void testDangerPrediction() {
+        GameBoard gb = new GameBoard("files/Levels/Level05_TwoSearchlights.csv", false, 0);
+        assertNotNull(DangerTable.build(gb));
+        int ahead = 9;
+        HashSet<Point> predicted = new HashSet<Point>();
+        for (int y = 0; y < gb.getHeight(); y++) {
+            for (int x = 0; x < gb.getWidth(); x++) {
+                if (gb.isCellWatched(x, y, ahead)) {
+                    predicted.add(new Point(x, y));
+                }
+            }
+        }
+        for (int i = 0; i < ahead; i++) {
+            gb.incrementTurn();
+        }
+        assertEquals(gb.getDetectionZone(), predicted);
+    }
+
+    // test that predictions hold when a guard's route runs into the (still) player, who blocks it
+    @Test
+    public void testDangerPredictionBlocked() throws IOException {
+        File level = File.createTempFile("blocked", ".csv");
+        try {
+            Files.writeString(level.toPath(), "E,E,E,E,E,E,E\n"
+                    + "PM;C1;RRRRRRLLLLLL,E,E,E,P,E,E\n"
+                    + "E,E,E,E,E,E,G");
+            GameBoard gb = new GameBoard(level.getPath(), false, 0);
+            assertNotNull(DangerTable.build(gb));
+            for (int ahead = 1; ahead <= 14; ahead++) {
+                GameBoard future = gb.fork();
+                for (int i = 0; i < ahead; i++) {
+                    future.incrementTurn();
+                }
+                for (int y = 0; y < gb.getHeight(); y++) {
+                    for (int x = 0; x < gb.getWidth(); x++) {
+                        assertEquals(future.isWatched(x, y), gb.isCellWatched(x, y, ahead),
+                                "cell " + x + "," + y + " at turn " + ahead);
+                    }
+                }
+            }
+            // the guard waits beside the player, rather than walking on through them
+            assertTrue(gb.isCellWatched(4, 1, 14));
+        } finally {
+            level.delete();
+        }
+    }
+
+    // test that seeded boards play out identically, whether guards move on one thread or many
+    @Test
+    public void testParallelGuards() {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            GameBoard serial = new GameBoard("files/Levels/Level14_Scatter.csv", false, 0, 42L);
+            GameBoard parallel = new GameBoard("files/Levels/Level14_Scatter.csv", false, 0, 42L);
+            parallel.setParallelGuards(pool, 1);
+            for (int i = 0; i < 40; i++) {
+                serial.incrementTurn();
+                parallel.incrementTurn();
+                assertEquals(guardLocations(serial), guardLocations(parallel));
+                assertEquals(serial.getDetectionZone(), parallel.getDetectionZone());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    // test that checking single cells, building part of the detection zone, and snapshots of
+    // the board all agree with the full detection zone
+    @Test
+    public void testLazyDetection() {
+        checkLazyDetection(new GameBoard("files/Levels/Level14_Scatter.csv", false, 0, 42L));
+        checkLazyDetection(new GameBoard("files/Levels/Level17_RestrictedAccess.csv", false, 0));
+    }
+    
+    // compares each way of checking detection over several turns of a board
+    private void checkLazyDetection(GameBoard gb) {
+        for (int i = 0; i < 20; i++) {
+            gb.incrementTurn();
+            HashSet<Point> zone = gb.getDetectionZone();
+            HashSet<Point> region = new HashSet<Point>();
+            for (int y = 0; y < gb.getHeight(); y++) {
+                for (int x = 0; x < gb.getWidth(); x++) {
+                    Point cell = new Point(x, y);
+                    assertEquals(zone.contains(cell), gb.isWatched(x, y));
+                    if ((x >= 3) && (x <= 9) && (y >= 2) && (y <= 6) && zone.contains(cell)) {
+                        region.add(cell);
+                    }
+                }
+            }
+            assertEquals(region, gb.getDetectionZone(3, 2, 9, 6));
+            BoardSnapshot snapshot = new BoardSnapshot(gb, 0, 0, gb.getWalls());
+            assertEquals(zone, snapshot.getDetectionZone());
+            assertEquals(region, snapshot.getDetectionZone(3, 2, 9, 6));
+        }
+    }
+    
+    // test that sight guards are blocked by walls and closed doors, but see through doors once
+    // they are opened
+    @Test
+    public void testLineOfSight() {
+        GameBoard gb = new GameBoard("files/archive/test_SightTest.csv", false, 0);
+        assertTrue(gb.isWatched(4, 2));
+        assertTrue(gb.isWatched(3, 2));
+        assertFalse(gb.isWatched(2, 2));
+        assertTrue(gb.isWatched(5, 3));
+        assertFalse(gb.isWatched(5, 4));
+        assertEquals(gb.getDetectionZone().contains(new Point(2, 2)), gb.isWatched(2, 2));
+        
+        // picking up the key opens the door, as the guard steps up
+        gb.moveObject(gb.getPlayer(), Direction.RIGHT);
+        assertEquals("M", gb.getElement(5, 1));
+        assertEquals("E", gb.getElement(5, 3));
+        assertTrue(gb.isWatched(5, 4));
+        assertFalse(gb.isWatched(2, 1));
+        assertFalse(gb.isDefeat());
+        
+        // with nothing in the way, sight covers the same diamond as circle detection
+        VisibilityMap open = new VisibilityMap(11, 11);
+        SightTable sight = open.getTable(5, 5, 4);
+        for (int dy = -5; dy <= 5; dy++) {
+            for (int dx = -5; dx <= 5; dx++) {
+                assertEquals(DetectionStencil.covers(5 + dx, 5 + dy, 5, 5, 4, 
+                        DetectionType.CIRCLE, null, null), sight.isVisible(dx, dy));
+            }
+        }
+    }
+    
+    // test that a forked board plays out exactly as the original, without disturbing it
+    @Test
+    public void testFork() {
+        checkFork(new GameBoard("files/Levels/Level14_Scatter.csv", false, 0, 42L));
+        checkFork(new GameBoard("files/archive/test_SeekerTest.csv", false, 0));
+        checkFork(new GameBoard("files/archive/test_SightTest.csv", false, 0));
+    }
+    
+    // plays a few turns, forks, then plays the same inputs on the fork and the original
+    private void checkFork(GameBoard gb) {
+        Direction[] moves = {Direction.RIGHT, Direction.DOWN, Direction.LEFT, Direction.UP};
+        for (int i = 0; i < 5; i++) {
+            gb.moveObject(gb.getPlayer(), moves[i % 4]);
+        }
+        GameBoard fork = gb.fork();
+        ArrayList<Point> before = guardLocations(gb);
+        for (int i = 0; i < 20; i++) {
+            if (!fork.moveObject(fork.getPlayer(), moves[(i / 3) % 4])) {
+                fork.incrementTurn();
+            }
+        }
+        assertEquals(before, guardLocations(gb));
+        for (int i = 0; i < 20; i++) {
+            if (!gb.moveObject(gb.getPlayer(), moves[(i / 3) % 4])) {
+                gb.incrementTurn();
+            }
+        }
+        assertEquals(guardLocations(gb), guardLocations(fork));
+        assertEquals(gb.getDetectionZone(), fork.getDetectionZone());
+        assertEquals(gb.getPlayerLocation(), fork.getPlayerLocation());
+        assertEquals(gb.getDoors(), fork.getDoors());
+        assertEquals(gb.isDefeat(), fork.isDefeat());
+        assertEquals(gb.getTurn(), fork.getTurn());
+    }
+    
+    // lists guard locations in board order
+    private ArrayList<Point> guardLocations(GameBoard gb) {
+        ArrayList<Point> locations = new ArrayList<Point>();
+        for (Guard guard : gb.getGuards()) {
+            locations.add(guard.getLocation());
+        }
+        return locations;
+    }
 }
@@ -0,0 +1,126 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import stealth_game.*;
+
+/**
+ * Contains tests for GameEngine's multi-turn waits
+ */
+
+public class GameEngineTest {
+
+    // a guard walking right, which catches the (still) player on turn 3
+    private static final String APPROACH = "E,E,E,E,E,E,E\n"
+            + "PM;C1;RRRRRRRR,E,E,E,P,E,E\n"
+            + "E,E,E,E,E,E,G";
+
+    // the cell right of the player is watched by the first guard, which is held back a turn by
+    // the second, and so first leaves it unwatched on turn 2
+    private static final String DEPARTURE = "E,E,E,E,E,E,E\n"
+            + "P,E,E,PM;C2;RRRR,PM;C1;DUDUDUDU,E,G\n"
+            + "E,E,E,E,E,E,E";
+
+    // the cell right of the player is watched by a guard walled in for good
+    private static final String WALLED = "E,E,E,E,E,E,E\n"
+            + "P,E,E,PM;C2;RRRR,W,E,G\n"
+            + "E,E,E,E,E,E,E";
+
+    private File level;
+
+    @AfterEach
+    public void deleteLevel() {
+        if (level != null) {
+            level.delete();
+        }
+    }
+
+    // test that a wait plays every turn, publishing only the last
+    @Test
+    public void testWaitTurns() throws IOException {
+        GameEngine engine = load(WALLED);
+        AtomicInteger publishes = countPublishes(engine);
+        engine.waitTurns(7);
+        engine.awaitIdle();
+        assertEquals(7, engine.getSnapshot().getTurn());
+        assertFalse(engine.getSnapshot().isDefeat());
+        assertEquals(1, publishes.get());
+    }
+
+    // test that a wait stops on the turn the player is caught, and later waits do nothing
+    @Test
+    public void testWaitStopsOnDefeat() throws IOException {
+        GameEngine engine = load(APPROACH);
+        engine.waitTurns(50);
+        engine.awaitIdle();
+        assertTrue(engine.getSnapshot().isDefeat());
+        assertEquals(3, engine.getSnapshot().getTurn());
+        engine.waitTurns(5);
+        engine.awaitIdle();
+        assertEquals(3, engine.getSnapshot().getTurn());
+    }
+
+    // test that waiting until safe stops on the first turn the cell is unwatched, and that
+    // this agrees with a board stepped turn by turn
+    @Test
+    public void testWaitUntilSafe() throws IOException {
+        GameEngine engine = load(DEPARTURE);
+        AtomicInteger publishes = countPublishes(engine);
+        engine.waitUntilSafe(Direction.RIGHT, 50);
+        engine.awaitIdle();
+        assertEquals(2, engine.getSnapshot().getTurn());
+        assertEquals(1, publishes.get());
+        assertFalse(engine.getSnapshot().isDefeat());
+
+        GameBoard gb = new GameBoard(level.getPath(), false, 0);
+        assertTrue(gb.isWatched(1, 1));
+        int turns = 0;
+        do {
+            gb.incrementTurn();
+            turns += 1;
+        } while (gb.isWatched(1, 1));
+        assertEquals(engine.getSnapshot().getTurn(), turns);
+    }
+
+    // test that waiting until safe gives up after the most turns allowed
+    @Test
+    public void testWaitUntilSafeCap() throws IOException {
+        GameEngine engine = load(WALLED);
+        engine.waitUntilSafe(Direction.RIGHT, 10);
+        engine.awaitIdle();
+        assertEquals(10, engine.getSnapshot().getTurn());
+        assertFalse(engine.getSnapshot().isDefeat());
+        assertTrue(engine.getSnapshot().getDetectionZone().contains(new Point(1, 1)));
+    }
+
+    // writes a level to a temporary file, and loads it into a new engine
+    private GameEngine load(String contents) throws IOException {
+        level = File.createTempFile("wait", ".csv");
+        Files.writeString(level.toPath(), contents);
+        GameEngine engine = new GameEngine();
+        engine.loadLevel(level.getPath(), false, 0);
+        engine.awaitIdle();
+        return engine;
+    }
+
+    // counts the snapshots published from now on
+    private AtomicInteger countPublishes(GameEngine engine) {
+        final AtomicInteger publishes = new AtomicInteger();
+        engine.setSnapshotListener(new Runnable() {
+            @Override
+            public void run() {
+                publishes.incrementAndGet();
+            }
+        });
+        return publishes;
+    }
+}
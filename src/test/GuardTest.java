@@ -86,4 +86,75 @@ public class GuardTest {
         assertEquals(DetectionType.BREATH, guard2.getDetectionType());
     }   
     
+    
+    // test that a guard follows the original ping-pong route semantics, and that predicted
+    // locations and facings match the guard stepped turn by turn (including blocked turns)
+    @Test
+    public void testRoutePrediction() {
+        String guardString = "PM;C1;LLLRRDDDUL";
+        RouteGuard guard = new RouteGuard(new Point(20, 20), guardString);
+        RouteGuard predictor = new RouteGuard(new Point(20, 20), guardString);
+        StringCharacterIterator myIter = new StringCharacterIterator("LLLRRDDDUL");
+        forwardMode = true;
+        int blocked = 0;
+        for (int turn = 1; turn <= 75; turn++) {
+            Direction move = guard.getMoveDirection();
+            if (turn % 7 == 0) {
+                guard.moveFailed();
+                blocked += 1;
+            } else {
+                // expected direction: the iterator's letter, flipped while walking backwards
+                Boolean reversed = !forwardMode;
+                Character letter = invokeIter(myIter);
+                Direction expected;
+                if (letter.equals('U') || letter.equals('D')) {
+                    expected = (letter.equals('U') ^ reversed) ? Direction.UP : Direction.DOWN;
+                } else {
+                    expected = (letter.equals('L') ^ reversed) ? Direction.LEFT : Direction.RIGHT;
+                }
+                assertEquals(expected, move);
+                
+                // step the guard by hand, as the GameBoard would
+                Point loc = guard.getLocation();
+                switch (move) {
+                    case UP: loc.translate(0, -1); break;
+                    case DOWN: loc.translate(0, 1); break;
+                    case LEFT: loc.translate(-1, 0); break;
+                    default: loc.translate(1, 0); break;
+                }
+                guard.updateLocation(loc);
+                guard.moveSucceeded();
+            }
+            assertEquals(guard.getLocation(), predictor.predictLocation(turn, blocked));
+            assertEquals(guard.getLastMove(), predictor.predictLastMove(turn, blocked));
+        }
+        assertEquals(5, predictor.getRoute().getRunCount());
+    }
+    
+    // test the random guard forecast: a trapped guard stays put, and after one turn each guard's
+    // probability is spread over the cells it can step onto
+    @Test
+    public void testRandomHeatmap() {
+        GameBoard trapped = new GameBoard("files/archive/test_ImpossibleMoveTest.csv", false, 0);
+        GuardHeatmap heatmap = new GuardHeatmap(trapped, 4, 0);
+        assertFalse(heatmap.isComputed());
+        heatmap.compute();
+        assertEquals(1.0, heatmap.getHeat(4, 2), 1e-9);
+        assertEquals(1.0, heatmap.getHeat(4, 1), 1e-9);
+        assertEquals(0.0, heatmap.getHeat(2, 2), 1e-9);
+        
+        // radius 0 guards only mark the cell they stand on, so the expectations add up to the
+        // number of guards
+        GameBoard scatter = new GameBoard("files/Levels/Level14_Scatter.csv", false, 0);
+        GuardHeatmap oneTurn = new GuardHeatmap(scatter, 1, 0);
+        oneTurn.compute();
+        double total = 0.0;
+        for (int y = 0; y < scatter.getHeight(); y++) {
+            for (int x = 0; x < scatter.getWidth(); x++) {
+                total += oneTurn.getHeat(x, y);
+            }
+        }
+        assertEquals(oneTurn.getGuardCount(), total, 1e-9);
+        assertEquals(69, oneTurn.getGuardCount());
+    }
 }
@@ -2,9 +2,13 @@ package test;
 
 import org.junit.jupiter.api.*;
 
+import stealth_game.GameBoard;
+import stealth_game.LevelGenerator;
 import stealth_game.LevelReader;
 
 import static org.junit.jupiter.api.Assertions.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -49,4 +53,33 @@ public class LevelReaderTest {
         assertThrows(IllegalArgumentException.class, () -> 
             new LevelReader("files/archive/test_Level_NonRectangular.csv"));
     }    
+    
+    // test generated levels load, match their settings, and repeat with their seed
+    @Test
+    public void loadGeneratedLevel() throws IOException {
+        LevelGenerator generator = new LevelGenerator(60, 40, 7L);
+        generator.setWallDensity(0.2);
+        generator.setGuardCount(50);
+        generator.setLockCount(12);
+        File file = File.createTempFile("generated", ".csv");
+        file.deleteOnExit();
+        generator.write(file.getPath());
+        
+        LevelReader lr = new LevelReader(file.getPath());
+        assertEquals(lr.getWidth(), 60);
+        assertEquals(lr.getHeight(), 40);
+        assertEquals(lr.getBoardList().get(0)[0], "P");
+        assertEquals(lr.getBoardList().get(39)[59], "G");
+        
+        GameBoard gb = new GameBoard(file.getPath(), false, 0, 1L);
+        assertEquals(gb.getGuards().size(), 50);
+        assertEquals(gb.getDoors().size(), 12);
+        assertEquals(gb.getKeys().size(), 12);
+        
+        LevelGenerator repeat = new LevelGenerator(60, 40, 7L);
+        repeat.setWallDensity(0.2);
+        repeat.setGuardCount(50);
+        repeat.setLockCount(12);
+        assertTrue(Arrays.deepEquals(generator.generate(), repeat.generate()));
+    }
 }
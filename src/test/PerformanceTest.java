@@ -0,0 +1,135 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import stealth_game.*;
+
+/**
+ * Contains performance tests: bytes allocated per turn, and steady-state turn latency, on the
+ * expert levels (the later levels of each campaign), held to the budgets checked in to
+ * src/test/perf-budgets.properties. These are tagged "perf" and left out of the default test
+ * run; run them with mvn -P perf test.
+ *
+ * Each level is played by waiting out turns (restarting from a copy of the level whenever it is
+ * won or lost), first to warm up, then measured turn by turn. Latency budgets can be scaled for
+ * slower machines with -Dstealth.perfBudgetScale=<factor>
+ */
+
+@Tag("perf")
+public class PerformanceTest {
+
+    private static final String BUDGETS = "src/test/perf-budgets.properties";
+    // (long enough for the JIT to compile, and scalar replace, the whole turn on every level)
+    private static final int WARMUP_TURNS = 150000;
+    private static final int MEASURED_TURNS = 20000;
+
+    // test that no expert level allocates more per turn than its budget
+    @Test
+    public void testAllocationPerTurn() throws IOException {
+        Assumptions.assumeTrue(EngineMetrics.threadAllocatedBytes() >= 0,
+                "this JVM cannot count allocated bytes");
+        Properties budgets = loadBudgets();
+        ArrayList<String> failures = new ArrayList<String>();
+        for (String level : levels(budgets)) {
+            long budget = Long.parseLong(budgets.getProperty(level + ".bytesPerTurn"));
+            TurnStats stats = measure(level);
+            System.out.println(String.format("%-32s %8.1f bytes/turn (budget %d)", level,
+                    stats.bytesPerTurn, budget));
+            if (stats.bytesPerTurn > budget) {
+                failures.add(String.format("%s allocates %.1f bytes/turn, over its budget of %d",
+                        level, stats.bytesPerTurn, budget));
+            }
+        }
+        assertTrue(failures.isEmpty(), String.join("\n", failures));
+    }
+
+    // test that no expert level's median turn takes longer than its budget
+    @Test
+    public void testTurnLatency() throws IOException {
+        Properties budgets = loadBudgets();
+        double scale = Double.parseDouble(System.getProperty("stealth.perfBudgetScale", "1"));
+        ArrayList<String> failures = new ArrayList<String>();
+        for (String level : levels(budgets)) {
+            double budget = Double.parseDouble(budgets.getProperty(level + ".p50Micros"))
+                    * scale;
+            TurnStats stats = measure(level);
+            System.out.println(String.format("%-32s p50 %7.2f us, p99 %7.2f us (budget %.1f)",
+                    level, stats.p50Micros, stats.p99Micros, budget));
+            if (stats.p50Micros > budget) {
+                failures.add(String.format("%s takes %.2f us per turn (median), over its budget"
+                        + " of %.1f", level, stats.p50Micros, budget));
+            }
+        }
+        assertTrue(failures.isEmpty(), String.join("\n", failures));
+    }
+
+    /**
+     * Per-turn figures from one level
+     */
+    private static class TurnStats {
+        double bytesPerTurn;
+        double p50Micros;
+        double p99Micros;
+    }
+
+    // plays a level as described above, measuring every turn after the warmup
+    private static TurnStats measure(String level) {
+        GameBoard start = new GameBoard("files/" + level + ".csv", false, 6, 7L);
+        GameBoard board = start.fork();
+        LatencyHistogram latency = new LatencyHistogram();
+        long bytes = 0;
+        for (int i = 0; i < WARMUP_TURNS + MEASURED_TURNS; i++) {
+            if (board.isVictory() || board.isDefeat()) {
+                board = start.fork();
+            }
+            long bytesBefore = EngineMetrics.threadAllocatedBytes();
+            long turnStart = System.nanoTime();
+            board.incrementTurn();
+            long nanos = System.nanoTime() - turnStart;
+            long turnBytes = EngineMetrics.threadAllocatedBytes() - bytesBefore;
+            if (i >= WARMUP_TURNS) {
+                latency.record(nanos);
+                bytes += turnBytes;
+            }
+        }
+        TurnStats stats = new TurnStats();
+        stats.bytesPerTurn = (double) bytes / MEASURED_TURNS;
+        stats.p50Micros = latency.getPercentile(0.5) / 1e3;
+        stats.p99Micros = latency.getPercentile(0.99) / 1e3;
+        return stats;
+    }
+
+    private static Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        Reader reader = new FileReader(BUDGETS);
+        try {
+            budgets.load(reader);
+        } finally {
+            reader.close();
+        }
+        return budgets;
+    }
+
+    // the levels with budgets, in order
+    private static ArrayList<String> levels(Properties budgets) {
+        ArrayList<String> levels = new ArrayList<String>();
+        for (String key : budgets.stringPropertyNames()) {
+            if (key.endsWith(".bytesPerTurn")) {
+                levels.add(key.substring(0, key.length() - ".bytesPerTurn".length()));
+            }
+        }
+        Collections.sort(levels);
+        return levels;
+    }
+}
@@ -0,0 +1,971 @@
+package test;
+
+import java.awt.Point;
+import java.text.StringCharacterIterator;
+import java.util.*;
+
+import stealth_game.DetectionType;
+import stealth_game.Direction;
+import stealth_game.LevelReader;
+import stealth_game.SightTable;
+import stealth_game.VisibilityMap;
+
+/**
+ * The reference board for differential testing: GameBoard and its guards as they stood before any
+ * of the engine's optimizations, kept here so the engine is always checked against logic which
+ * shares none of its code. Turns are played the original way: every guard asks for its move and
+ * moves in turn, a fresh detection zone is built point by point, and nothing is cached, indexed,
+ * forked or spread across threads.
+ *
+ * Only what is needed to play the same game deterministically has changed:
+ *    - guards are kept in a LinkedHashSet, so they move in board order
+ *    - random guards each draw from their own java.util.Random, seeded from the board's seed in
+ *      board order, and pick among the directions left in a fixed order (UP, DOWN, LEFT, RIGHT)
+ *    - seeking chase guards (SM) and line of sight detection (L) are supported, each the plain
+ *      way: seekers follow a breadth-first search run afresh every turn, and sight is read from
+ *      a VisibilityMap built afresh every turn (so no table outlives the walls it was cast on)
+ *    - the first detection zone is found once the whole level has been read, so that sight is
+ *      cast against every wall
+ */
+public class ReferenceBoard {
+
+    // Define board parameters
+    private int width;
+    private int height;
+    private String[][] boardArray;
+
+    // define Board characteristics
+    private TreeSet<String> legalDestinations;
+    private int turn;
+    private Boolean victory;
+    private Boolean defeat;
+
+    // define Board objects
+    private Player player;
+    private Point victorySquare;
+    private HashSet<Point> walls;
+    private LinkedHashSet<Guard> guards;
+    private HashSet<Point> detectionZone;
+    private Boolean guardMovement;
+
+    // define doors/keys
+    private HashMap<Point, Integer> gateDoors;
+    private HashMap<Point, Integer> gateKeys;
+
+    // define vision
+    private Boolean darkLevel;
+    private int visionRadius;
+    private HashSet<Point> fullZone;
+    private HashSet<Point> darknessZone;
+
+    // seeds for random guards, and what seekers and sighted guards read this turn
+    private Random guardSeeds;
+    private int[] walkingDistance;
+    private VisibilityMap sight;
+
+    /**********************************************************************************
+     * Constructor and Setup Methods
+     **********************************************************************************/
+
+    /**
+     * @param filePath - the path to the CSV file used to initialize the board state
+     * @param seed - seed for the random guards' movement
+     */
+    public ReferenceBoard(String filePath, Boolean isDark, Integer vision, long seed) {
+
+        // assign initial state vars
+        turn = 0;
+        victory = false;
+        defeat = false;
+        walls = new HashSet<Point>();
+        gateDoors = new HashMap<Point, Integer>();
+        gateKeys = new HashMap<Point, Integer>();
+        guards = new LinkedHashSet<Guard>();
+        detectionZone = new HashSet<Point>();
+        guardMovement = true;
+        guardSeeds = new Random(seed);
+
+        // define vision area vars
+        fullZone = new HashSet<Point>();
+        darknessZone = new HashSet<Point>();
+        darkLevel = isDark;
+        visionRadius = vision;
+
+        // parse level contents using LevelReader, while initializing Players & Guards
+        LevelReader lr = new LevelReader(filePath);
+        LinkedList<String[]> parsedFile = lr.getBoardList();
+        width = lr.getWidth();
+        height = lr.getHeight();
+        parseBoard(parsedFile);
+
+        // populate legalDestinations set (used to assess whether attempted moves are legal
+        legalDestinations = new TreeSet<String>();
+        legalDestinations.add("E"); // legal to move onto empty space
+        legalDestinations.add("G"); // legal to move onto the goal
+        legalDestinations.add("K"); // legal to move onto any key
+    }
+
+    /**
+     * Parses the LinkedList passed by LevelReader into the actual game board. Initializes player
+     * and all guards as they are encountered
+     */
+    private void parseBoard(LinkedList<String[]> parsedFile) {
+        // initialize board, and iterate through parsedFile to populate
+        boardArray = new String[height][width];
+        int currentRow = 0;
+        Iterator<String[]> iter = parsedFile.iterator();
+        while (iter.hasNext()) {
+            String[] levelRow = iter.next();
+            for (int col = 0; col < width; col++) {
+                boardArray[currentRow][col] = levelRow[col];
+
+                // append to fullZone of points
+                fullZone.add(new Point(col, currentRow));
+
+                // if cell contains a feature of note, initialize object
+                if (levelRow[col].equals("P")) {
+                    Point playerLoc = new Point(col, currentRow);
+                    player = new Player(playerLoc);
+                } else if (levelRow[col].equals("G")) {
+                    victorySquare = new Point(col, currentRow);
+                } else if (levelRow[col].equals("W")) {
+                    walls.add(new Point(col, currentRow));
+                // if an Guard/Mob is detected, parse string and abbreviate array storage
+                } else if (levelRow[col].contains("M")) {
+                    Point guardLoc = new Point(col, currentRow);
+                    parseGuard(levelRow[col], guardLoc);
+                    boardArray[currentRow][col] = "M";
+                 // if a Key/Door is detected, assign as appropriate
+                } else if ((levelRow[col].startsWith("D")) || (levelRow[col].startsWith("K"))) {
+                    Point keyDoorLoc = new Point(col, currentRow);
+                    parseKeyDoor(levelRow[col], keyDoorLoc);
+                    if (levelRow[col].startsWith("D")) {
+                        boardArray[currentRow][col] = "D";
+                    } else {
+                        boardArray[currentRow][col] = "K";
+                    }
+                }
+            }
+            currentRow += 1;
+        }
+
+        // find the first detection zone, now that every wall is known
+        for (Guard guard : guards) {
+            updateDetection(guard);
+        }
+
+        // if necessary, create vision area
+        if (darkLevel) {
+            updateVision();
+        }
+    }
+
+    /**
+     * Parses cells with keys/doors
+     */
+    private void parseKeyDoor(String keyDoorString, Point keyDoorLoc) {
+        int lockNum = Character.getNumericValue(keyDoorString.charAt(1));
+        if (keyDoorString.startsWith("D")) {
+            gateDoors.put(keyDoorLoc, lockNum);
+        } else {
+            gateKeys.put(keyDoorLoc,  lockNum);
+        }
+    }
+
+    /**
+     * Initializes a new guard by parsing the guardString, which contains all information
+     * on type
+     */
+    private void parseGuard(String guardString, Point guardLoc) {
+        // identify type of guard
+        if (guardString.contains("P")) {
+            guards.add(new RouteGuard(guardLoc, guardString));
+        } else if (guardString.contains("R")) {
+            guards.add(new RandomGuard(guardLoc, guardString, guardSeeds.nextLong()));
+        } else if (guardString.contains("H")) {
+            guards.add(new ChaseGuard(guardLoc, guardString, false));
+        } else if (guardString.contains("S")) {
+            guards.add(new ChaseGuard(guardLoc, guardString, true));
+        }
+    }
+
+    /**********************************************************************************
+     * Movement Methods
+     **********************************************************************************/
+
+    /**
+     * Attempts to move the player in a particular direction, passing a turn if it moves
+     *
+     * @param direction -> the intended direction of movement
+     * @return Boolean -> whether the attempted move happened
+     */
+    public Boolean movePlayer(Direction direction) {
+        return moveObject(player, direction);
+    }
+
+    /**
+     * Attempts to move an object (a player or guard) in a particular direction
+     */
+    private Boolean moveObject(Movable character, Direction direction) {
+        // if no direction is supplied, exit
+        if (direction == null) {
+            return false;
+        }
+
+        // get current location of object & find intended destination
+        Point currentLocation = character.getLocation();
+        Point destination = getDestination(currentLocation, direction);
+
+        // check if intended destination is legal, and update location of movable if so
+        if (checkMoveLegality(destination)) {
+            character.updateLocation(destination);
+
+            // clear previous location
+            int prevX = (int) (currentLocation.getX());
+            int prevY = (int) (currentLocation.getY());
+            boardArray[prevY][prevX] = "E";
+
+            // update location, and if movable is player, update the turn counter
+            int newX = (int) (destination.getX());
+            int newY = (int) (destination.getY());
+            if (character instanceof Player) {
+                boardArray[newY][newX] = "P";
+                incrementTurn();
+            } else {
+                boardArray[newY][newX] = "M";
+            }
+
+            // if victory square is empty (because a movable moved off of it), update value
+            int vX = (int) victorySquare.getX();
+            int vY = (int) victorySquare.getY();
+            if (boardArray[vY][vX].equals("E")) {
+                boardArray[vY][vX] = "G";
+            }
+
+            // if a key square is empty, return to key
+            Iterator<Point> keyIter = gateKeys.keySet().iterator();
+            while (keyIter.hasNext()) {
+                Point nextKey = keyIter.next();
+                int kX = (int) nextKey.getX();
+                int kY = (int) nextKey.getY();
+                if (boardArray[kY][kX].equals("E")) {
+                    boardArray[kY][kX] = "K";
+                }
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Given a current location and an intended direction, finds the intended destination
+     */
+    private static Point getDestination(Point currentLoc, Direction direction) {
+        int currentX = (int) (currentLoc.getX());
+        int currentY = (int) (currentLoc.getY());
+        Point destination = new Point(0, 0);
+        switch (direction) {
+            case UP:
+                destination.setLocation(currentX, currentY - 1);
+                return destination;
+            case DOWN:
+                destination.setLocation(currentX, currentY + 1);
+                return destination;
+            case LEFT:
+                destination.setLocation(currentX - 1, currentY);
+                return destination;
+            case RIGHT:
+                destination.setLocation(currentX + 1, currentY);
+                return destination;
+            default:
+                return destination;
+        }
+    }
+
+    /**
+     * Given a suggested destination point, checks if point represents a legal move
+     */
+    private Boolean checkMoveLegality(Point destination) {
+        int xCoord = (int) (destination.getX());
+        int yCoord = (int) (destination.getY());
+
+        // check if point is outside bounds of array
+        if (!inBounds(xCoord, yCoord)) {
+            return false;
+        }
+
+        // check if point is a legal move destination
+        return legalDestinations.contains(boardArray[yCoord][xCoord]);
+    }
+
+    private Boolean inBounds(int xCoord, int yCoord) {
+        return ((xCoord >= 0) & (yCoord >= 0) & (xCoord < width) & (yCoord < height));
+    }
+
+    // whether a cell blocks walking and sight (walls and closed doors)
+    private Boolean isBlocked(int xCoord, int yCoord) {
+        String contents = boardArray[yCoord][xCoord];
+        return contents.equals("W") || contents.equals("D");
+    }
+
+    /**********************************************************************************
+     * Turn Transition Methods
+     **********************************************************************************/
+
+    /**
+     * Increments the turn counter. Whenever the turn counter increments, do each of the following:
+     *    - Check if the player has won the game
+     *    - Move all guards (and update their vision cones)
+     *    - Check if the player has lost the game
+     */
+    public void incrementTurn() {
+        // increment actual turn
+        turn += 1;
+
+        // check if player has won the game
+        Point playerLocation = player.getLocation();
+        if (playerLocation.equals(victorySquare)) {
+            victory = true;
+        }
+
+        // check if player received a key, and clear the relevant gates if so
+        Iterator<Point> keyIter = gateKeys.keySet().iterator();
+        while (keyIter.hasNext()) {
+            Point nextKey = keyIter.next();
+            if (playerLocation.equals(nextKey)) {
+                int keyRef = gateKeys.get(nextKey);
+                Iterator<Point> gateIter = gateDoors.keySet().iterator();
+
+                // clear gates corresponding to found key
+                while (gateIter.hasNext()) {
+                    Point nextGate = gateIter.next();
+                    int keyCode = gateDoors.get(nextGate);
+                    if (keyCode == keyRef) {
+                        int gX = (int) nextGate.getX();
+                        int gY = (int) nextGate.getY();
+                        boardArray[gY][gX] = "E";
+                        gateIter.remove();
+                    }
+                }
+
+                // remove key from keySet and set square to empty
+                gateKeys.remove(nextKey);
+                int kX = (int) nextKey.getX();
+                int kY = (int) nextKey.getY();
+                boardArray[kY][kX] = "E";
+
+                // break, as player couldn't have stepped on a subsequent key as well
+                break;
+            }
+        }
+
+        // walls and doors are settled for the turn; seekers and sight are found afresh
+        walkingDistance = null;
+        sight = null;
+
+        // move all guards and update detection zone
+        detectionZone = new HashSet<Point>();
+        Iterator<Guard> iterGuard = guards.iterator();
+        while ((iterGuard.hasNext()) & (guardMovement)) {
+            Guard guard = iterGuard.next();
+            guard.setPlayerLocation(playerLocation); // this only matters for chaseGuards
+            Direction moveDir = guard.getMoveDirection();
+            Boolean didMove = moveObject(guard, moveDir);
+
+            // hand move outcome according to guard type
+            if (didMove) {
+                guard.moveSucceeded();
+            // random guards continue to attempt moves until all options are exhausted or
+            // a successful move is found
+            } else {
+                Direction nextDir = guard.moveFailed();
+                Boolean backupMove = false;
+                while ((!(nextDir == null)) & (!(backupMove))) {
+                    backupMove = moveObject(guard, nextDir);
+                    if (backupMove) {
+                        guard.moveSucceeded();
+                    } else {
+                        nextDir = guard.moveFailed();
+                    }
+                }
+            }
+
+            // update detectionZone
+            updateDetection(guard);
+        }
+
+        // check if player has lost the game
+        if (detectionZone.contains(playerLocation)) {
+            defeat = true;
+        }
+
+        // update vision area, if necessary
+        if (darkLevel) {
+            updateVision();
+        }
+    }
+
+    /**
+     * Update set of detected squares for a current guard's position, detection radius, and
+     * detection type
+     */
+    private void updateDetection(Guard guard) {
+        // retrieve necessary info
+        Point location = guard.getLocation();
+        int xCoord = (int) location.getX();
+        int yCoord = (int) location.getY();
+        int radius = guard.getDetectionRadius();
+        DetectionType type = guard.getDetectionType();
+
+        if (type.equals(DetectionType.CIRCLE) || type.equals(DetectionType.SIGHT)) {
+            SightTable visible = null;
+            if (type.equals(DetectionType.SIGHT)) {
+                visible = getSight().getTable(xCoord, yCoord, radius);
+            }
+            // find all points surrounding guard, and add to detection zone within taxicab distance
+            for (Integer col = xCoord - radius; col <= xCoord + radius; col++) {
+                for (Integer row = yCoord - radius; row <= yCoord + radius; row++) {
+                    // check that point is in bounds and not the guard's current location
+                    if ((!(col.equals(xCoord) & (row.equals(yCoord)))) & (inBounds(col, row))) {
+                        // check that point is within taxicab distance of radius (and in sight)
+                        int distance = Math.abs(col - xCoord) + Math.abs(row - yCoord);
+                        if ((distance <= radius) && ((visible == null)
+                                || visible.isVisible(col - xCoord, row - yCoord))) {
+                            detectionZone.add(new Point(col, row));
+                        }
+                    }
+                }
+            }
+        } else if (type.equals(DetectionType.BREATH)) {
+            Direction lastMove = guard.getLastMove();
+            // use last direction, and spread out detection
+            if (lastMove.equals(Direction.UP)) {
+                for (int i = 0; i < radius; i++) {
+                    for (int offset = -i; offset <= i; offset++) {
+                        if (inBounds(xCoord + offset, yCoord - (i + 1))) {
+                            detectionZone.add(new Point(xCoord + offset, yCoord - (i + 1)));
+                        }
+                    }
+                }
+            } else if (lastMove.equals(Direction.DOWN)) {
+                for (int i = 0; i < radius; i++) {
+                    for (int offset = -i; offset <= i; offset++) {
+                        if (inBounds(xCoord + offset, yCoord + (i + 1))) {
+                            detectionZone.add(new Point(xCoord + offset, yCoord + (i + 1)));
+                        }
+                    }
+                }
+            } else if (lastMove.equals(Direction.LEFT)) {
+                for (int i = 0; i < radius; i++) {
+                    for (int offset = -i; offset <= i; offset++) {
+                        if (inBounds(xCoord - (i + 1), yCoord + offset)) {
+                            detectionZone.add(new Point(xCoord - (i + 1), yCoord + offset));
+                        }
+                    }
+                }
+            } else if (lastMove.equals(Direction.RIGHT)) {
+                for (int i = 0; i < radius; i++) {
+                    for (int offset = -i; offset <= i; offset++) {
+                        if (inBounds(xCoord + (i + 1), yCoord + offset)) {
+                            detectionZone.add(new Point(xCoord + (i + 1), yCoord + offset));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the vision radius, for dark levels
+     */
+    @SuppressWarnings("unchecked")
+    private void updateVision() {
+
+        // reset darkness squares to all squares
+        darknessZone = (HashSet<Point>) fullZone.clone();
+
+        // get playerLoc
+        Point playerLoc = player.getLocation();
+        int xCoord = (int) playerLoc.getX();
+        int yCoord = (int) playerLoc.getY();
+
+        // find all points surrounding player, and remove from darkness zone
+        for (Integer col = xCoord - visionRadius; col <= xCoord + visionRadius; col++) {
+            for (Integer row = yCoord - visionRadius; row <= yCoord + visionRadius; row++) {
+                // check that point is in bounds and within taxicab distance
+                int distance = Math.abs(col - xCoord) + Math.abs(row - yCoord);
+                if ((distance <= visionRadius) & (inBounds(col, row))) {
+                    darknessZone.remove(new Point(col, row));
+                }
+            }
+         }
+    }
+
+    /**
+     * Casts sight against the walls and closed doors of this turn, on first use in the turn
+     */
+    private VisibilityMap getSight() {
+        if (sight == null) {
+            sight = new VisibilityMap(width, height);
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    if (isBlocked(col, row)) {
+                        sight.setBlocked(col, row, true);
+                    }
+                }
+            }
+        }
+        return sight;
+    }
+
+    /**
+     * Finds the walking distance from the player to a cell this turn, searching the whole board
+     * breadth first on first use in the turn. Walls and closed doors block walking; guards do not
+     *
+     * @return int -> the distance, or Integer.MAX_VALUE if the cell cannot be reached
+     */
+    private int getWalkingDistance(int xCoord, int yCoord) {
+        if (!inBounds(xCoord, yCoord)) {
+            return Integer.MAX_VALUE;
+        }
+        if (walkingDistance == null) {
+            walkingDistance = new int[width * height];
+            Arrays.fill(walkingDistance, Integer.MAX_VALUE);
+            Point source = player.getLocation();
+            ArrayDeque<Point> queue = new ArrayDeque<Point>();
+            walkingDistance[(source.y * width) + source.x] = 0;
+            queue.add(source);
+            while (!queue.isEmpty()) {
+                Point cell = queue.poll();
+                for (Direction dir : Direction.values()) {
+                    Point next = getDestination(cell, dir);
+                    if (inBounds(next.x, next.y) && (!isBlocked(next.x, next.y))
+                            && (walkingDistance[(next.y * width) + next.x] == Integer.MAX_VALUE)) {
+                        walkingDistance[(next.y * width) + next.x] =
+                                walkingDistance[(cell.y * width) + cell.x] + 1;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return walkingDistance[(yCoord * width) + xCoord];
+    }
+
+    /**********************************************************************************
+     * GUARDS
+     **********************************************************************************/
+
+    /**
+     * Movable objects of the board
+     */
+    private interface Movable {
+        public Point getLocation();
+        public void updateLocation(Point newLoc);
+    }
+
+    /**
+     * Guards, as GameBoard drives them
+     */
+    private interface Guard extends Movable {
+        public int getDetectionRadius();
+        public DetectionType getDetectionType();
+        public Direction getMoveDirection();
+        public Direction getLastMove();
+        public Direction moveFailed();
+        public void moveSucceeded();
+        public void setPlayerLocation(Point playerLoc);
+    }
+
+    private static class Player implements Movable {
+        private Point location;
+
+        Player(Point locationInitial) {
+            location = locationInitial;
+        }
+
+        @Override
+        public Point getLocation() {
+            return (Point) this.location.clone();
+        }
+
+        @Override
+        public void updateLocation(Point newLoc) {
+            location = newLoc;
+        }
+    }
+
+    /**
+     * Common parts of every guard: location, detection, and the direction last moved
+     */
+    private abstract static class BaseGuard implements Guard {
+        Point location;
+        int detectionRadius;
+        DetectionType detectionType;
+        Direction lastMove;
+
+        /**
+         * Parses the detection radius and type of the guard, from the given segment of its
+         * cell (counted from the end)
+         */
+        BaseGuard(Point locationInitial, String guardBuilder, int detectSegment) {
+            location = locationInitial;
+            lastMove = Direction.UP;
+            String[] segments = guardBuilder.split(";");
+            String detectInfo = segments[segments.length - detectSegment];
+            detectionRadius = Character.getNumericValue(detectInfo.charAt(1));
+            Character detectType = detectInfo.charAt(0);
+            if (detectType.equals('C')) {
+                detectionType = DetectionType.CIRCLE;
+            } else if (detectType.equals('B')) {
+                detectionType = DetectionType.BREATH;
+            } else if (detectType.equals('L')) {
+                detectionType = DetectionType.SIGHT;
+            }
+        }
+
+        @Override
+        public void updateLocation(Point newLoc) {
+            location = newLoc;
+        }
+
+        @Override
+        public void setPlayerLocation(Point playerLoc) {
+        }
+
+        @Override
+        public Direction getLastMove() {
+            return this.lastMove;
+        }
+
+        @Override
+        public int getDetectionRadius() {
+            return this.detectionRadius;
+        }
+
+        @Override
+        public DetectionType getDetectionType() {
+            return this.detectionType;
+        }
+
+        @Override
+        public Point getLocation() {
+            return (Point) this.location.clone();
+        }
+    }
+
+    /**
+     * Route guards move along a set schedule, then reverse that schedule. A failed move leaves
+     * them where they are in the route
+     */
+    private static class RouteGuard extends BaseGuard {
+        private StringCharacterIterator route;
+        private Boolean forwardMode;
+
+        RouteGuard(Point locationInitial, String guardBuilder) {
+            super(locationInitial, guardBuilder, 2);
+            route = new StringCharacterIterator(
+                    guardBuilder.substring(guardBuilder.lastIndexOf(";") + 1));
+            forwardMode = true;
+        }
+
+        @Override
+        public Direction getMoveDirection() {
+            // retrieve character of intended movement by checking the current stop of the iter
+            Character moveLetter = route.current();
+            Direction intendMove = null;
+            if (moveLetter.equals('U')) {
+                intendMove = forwardMode ? Direction.UP : Direction.DOWN;
+            } else if (moveLetter.equals('D')) {
+                intendMove = forwardMode ? Direction.DOWN : Direction.UP;
+            } else if (moveLetter.equals('L')) {
+                intendMove = forwardMode ? Direction.LEFT : Direction.RIGHT;
+            } else if (moveLetter.equals('R')) {
+                intendMove = forwardMode ? Direction.RIGHT : Direction.LEFT;
+            }
+            return intendMove;
+        }
+
+        @Override
+        public void moveSucceeded() {
+            lastMove = getMoveDirection();
+
+            // step along the route, switching directions at either end
+            Integer currentIndex = route.getIndex();
+            if (forwardMode) {
+                if (currentIndex.equals(route.getEndIndex() - 1)) {
+                    forwardMode = false;
+                } else {
+                    route.next();
+                }
+            } else {
+                if (currentIndex.equals(route.getBeginIndex())) {
+                    forwardMode = true;
+                } else {
+                    route.previous();
+                }
+            }
+        }
+
+        @Override
+        public Direction moveFailed() {
+            return null;
+        }
+    }
+
+    /**
+     * Random guards move at random each turn, trying each direction at most once a turn
+     */
+    private static class RandomGuard extends BaseGuard {
+        private Random random;
+        private Direction attemptedDirection;
+        private LinkedHashSet<Direction> validDirections;
+
+        RandomGuard(Point locationInitial, String guardBuilder, long seed) {
+            super(locationInitial, guardBuilder, 1);
+            random = new Random(seed);
+            resetValidDirections();
+        }
+
+        // refreshes validDirections to include all cardinal directions again, in order
+        private void resetValidDirections() {
+            validDirections = new LinkedHashSet<Direction>();
+            for (Direction d : Direction.values()) {
+                validDirections.add(d);
+            }
+        }
+
+        @Override
+        public Direction getMoveDirection() {
+            int index = random.nextInt(validDirections.size());
+            Iterator<Direction> iter = validDirections.iterator();
+            for (int i = 0; i < index; i++) {
+                iter.next();
+            }
+            attemptedDirection = iter.next();
+            return attemptedDirection;
+        }
+
+        @Override
+        public void moveSucceeded() {
+            lastMove = attemptedDirection;
+            resetValidDirections();
+        }
+
+        @Override
+        public Direction moveFailed() {
+            validDirections.remove(attemptedDirection);
+            if (validDirections.size() > 0) {
+                getMoveDirection();
+            } else {
+                resetValidDirections();
+                return null;
+            }
+            return attemptedDirection;
+        }
+    }
+
+    /**
+     * Chase guards move directly toward the player, along the axis with the larger distance.
+     * Seekers instead step onto a cell one move closer to the player by walking distance,
+     * chasing directly only when the player cannot be reached
+     */
+    private class ChaseGuard extends BaseGuard {
+        private Boolean seeking;
+        private Direction attemptedDirection;
+        private Point playerLocation;
+        private int failCount;
+        private ArrayList<Direction> seekOptions;
+        private int seekIndex;
+
+        ChaseGuard(Point locationInitial, String guardBuilder, Boolean seeking) {
+            super(locationInitial, guardBuilder, 1);
+            this.seeking = seeking;
+            failCount = 0;
+            playerLocation = new Point(0, 0);
+            seekOptions = new ArrayList<Direction>();
+        }
+
+        @Override
+        public Direction getMoveDirection() {
+            if (seeking && (failCount == 0) && findSeekOptions()) {
+                seekIndex = 0;
+                attemptedDirection = seekOptions.get(0);
+                return attemptedDirection;
+            }
+
+            // find relative x/y distances between Player/Guard
+            int xDistance = (int) (location.getX() - playerLocation.getX());
+            int yDistance = (int) (location.getY() - playerLocation.getY());
+
+            // if previous attempt failed, reset initial attempted axis to 0
+            if (failCount == 1) {
+                if ((attemptedDirection == Direction.LEFT)
+                        || (attemptedDirection == Direction.RIGHT)) {
+                    xDistance = 0;
+                } else {
+                    yDistance = 0;
+                }
+
+                // if both axes are zero (b/c guard was aligned on one-axis and unable to move
+                // along the other), return null direction to skip
+                if ((xDistance == 0) & (yDistance == 0)) {
+                    return null;
+                }
+            }
+
+            if (Math.abs(xDistance) > Math.abs(yDistance)) {
+                attemptedDirection = (xDistance >= 0) ? Direction.LEFT : Direction.RIGHT;
+            } else {
+                attemptedDirection = (yDistance >= 0) ? Direction.UP : Direction.DOWN;
+            }
+            return attemptedDirection;
+        }
+
+        @Override
+        public void moveSucceeded() {
+            lastMove = attemptedDirection;
+            failCount = 0;
+        }
+
+        @Override
+        public Direction moveFailed() {
+            // seekers try each other step toward the player, then give up
+            if (seeking && (!seekOptions.isEmpty())) {
+                seekIndex += 1;
+                if (seekIndex < seekOptions.size()) {
+                    attemptedDirection = seekOptions.get(seekIndex);
+                    return attemptedDirection;
+                }
+                seekOptions.clear();
+                return null;
+            }
+
+            failCount += 1;
+            if (failCount < 2) {
+                getMoveDirection();
+            } else {
+                failCount = 0;
+                return null;
+            }
+            return attemptedDirection;
+        }
+
+        /**
+         * Collects every direction leading to a cell one move closer to the player, the larger
+         * axis first, each toward the player first
+         */
+        private Boolean findSeekOptions() {
+            seekOptions.clear();
+            int current = getWalkingDistance(location.x, location.y);
+            if (current == Integer.MAX_VALUE) {
+                return false;
+            }
+            int xDistance = location.x - playerLocation.x;
+            int yDistance = location.y - playerLocation.y;
+            Direction xToward = (xDistance >= 0) ? Direction.LEFT : Direction.RIGHT;
+            Direction yToward = (yDistance >= 0) ? Direction.UP : Direction.DOWN;
+            Direction[] order;
+            if (Math.abs(xDistance) > Math.abs(yDistance)) {
+                order = new Direction[] {xToward, yToward, opposite(yToward), opposite(xToward)};
+            } else {
+                order = new Direction[] {yToward, xToward, opposite(xToward), opposite(yToward)};
+            }
+            for (Direction dir : order) {
+                Point next = getDestination(location, dir);
+                if (getWalkingDistance(next.x, next.y) < current) {
+                    seekOptions.add(dir);
+                }
+            }
+            return !seekOptions.isEmpty();
+        }
+
+        @Override
+        public void setPlayerLocation(Point playerLoc) {
+            playerLocation = playerLoc;
+        }
+    }
+
+    // finds the reverse of a direction
+    private static Direction opposite(Direction dir) {
+        switch (dir) {
+            case UP:
+                return Direction.DOWN;
+            case DOWN:
+                return Direction.UP;
+            case LEFT:
+                return Direction.RIGHT;
+            default:
+                return Direction.LEFT;
+        }
+    }
+
+    /**********************************************************************************
+     * GETTERS
+     **********************************************************************************/
+    public Boolean isVictory() {
+        return this.victory;
+    }
+
+    public Boolean isDefeat() {
+        return this.defeat;
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashSet<Point> getWalls() {
+        return (HashSet<Point>) this.walls.clone();
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashSet<Point> getDetectionZone() {
+        return (HashSet<Point>) this.detectionZone.clone();
+    }
+
+    // every guard's location, in board order
+    public ArrayList<Point> getGuardLocations() {
+        ArrayList<Point> locations = new ArrayList<Point>();
+        for (Guard guard : guards) {
+            locations.add(guard.getLocation());
+        }
+        return locations;
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashMap<Point, Integer> getDoors() {
+        return (HashMap<Point, Integer>) this.gateDoors.clone();
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashMap<Point, Integer> getKeys() {
+        return (HashMap<Point, Integer>) this.gateKeys.clone();
+    }
+
+    public Point getPlayerLocation() {
+        return this.player.getLocation();
+    }
+
+    public Integer getHeight() {
+        return this.height;
+    }
+
+    public Integer getWidth() {
+        return this.width;
+    }
+
+    public Integer getTurn() {
+        return this.turn;
+    }
+
+    public void disableGuardMovement() {
+        guardMovement = false;
+    }
+
+    @SuppressWarnings("unchecked")
+    public HashSet<Point> getDarknessZone() {
+        return (HashSet<Point>) this.darknessZone.clone();
+    }
+
+    public Boolean getDarkness() {
+        return this.darkLevel;
+    }
+}
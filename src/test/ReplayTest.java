@@ -0,0 +1,129 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import stealth_game.*;
+
+/**
+ * Contains tests for recording, reading and verifying replays
+ */
+
+public class ReplayTest {
+
+    private static final String LEVEL = "files/Levels/Level14_Scatter.csv";
+
+    // test that a replay recorded by the engine verifies, and that false claims do not
+    @Test
+    public void testReplay() throws IOException {
+        GameEngine engine = new GameEngine();
+        engine.loadLevel(LEVEL, false, 6);
+        PlayerInput[] moves = {PlayerInput.LEFT, PlayerInput.LEFT, PlayerInput.UP, 
+            PlayerInput.WAIT, PlayerInput.LEFT, PlayerInput.UP, PlayerInput.UP};
+        for (PlayerInput move : moves) {
+            engine.submit(move);
+        }
+        engine.waitTurns(4);
+        Path file = Files.createTempFile("replay", ".sjr");
+        try {
+            engine.saveReplay(file.toString());
+            engine.awaitIdle();
+            BoardSnapshot snapshot = engine.getSnapshot();
+            Replay replay = Replay.load(file.toString());
+            assertEquals(LEVEL, replay.getLevel());
+            assertEquals(snapshot.getTurn(), replay.getTurns());
+            assertEquals(snapshot.isDefeat(), replay.isDefeat());
+            assertTrue(replay.getInputCount() > 0);
+            
+            ReplayVerifier verifier = new ReplayVerifier(new File("."));
+            assertNull(verifier.verify(replay));
+            
+            // the bytes round trip exactly, and claiming an extra turn is caught
+            assertArrayEquals(replay.toBytes(), Replay.fromBytes(replay.toBytes()).toBytes());
+            replay.claim(replay.getTurns() + 1, replay.isVictory(), replay.isDefeat());
+            assertNotNull(verifier.verify(replay));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // test that lengths in a file are not trusted to size what is read
+    @Test
+    public void testCorruptLengths() throws IOException {
+        // a level path claimed to be 2GB long
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.write(new byte[] {'S', 'J', 'R', 'P', 1});
+        data.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        assertThrows(IOException.class, () -> Replay.fromBytes(bytes.toByteArray()));
+
+        // a real replay, claiming far more inputs than it holds
+        Replay replay = new Replay(LEVEL, Replay.hashLevel(LEVEL), 1L, false, 6);
+        replay.record(PlayerInput.LEFT);
+        replay.record(PlayerInput.WAIT);
+        byte[] valid = replay.toBytes();
+        assertEquals(2, Replay.fromBytes(valid).getInputCount());
+        int countAt = 5 + 1 + LEVEL.length() + 1 + 1 + 1;
+        assertEquals(2, valid[countAt]);
+        ByteArrayOutputStream forged = new ByteArrayOutputStream();
+        forged.write(valid, 0, countAt);
+        forged.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01});
+        forged.write(valid, countAt + 1, valid.length - countAt - 1);
+        assertThrows(IOException.class, () -> Replay.fromBytes(forged.toByteArray()));
+
+        // a replay cut short
+        byte[] truncated = new byte[valid.length - 1];
+        System.arraycopy(valid, 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> Replay.fromBytes(truncated));
+    }
+
+    // test that replays naming levels outside the levels folder are rejected unread
+    @Test
+    public void testLevelOutsideFolder() throws IOException {
+        ReplayVerifier verifier = new ReplayVerifier(new File("files/Levels"));
+        long hash = Replay.hashLevel(LEVEL);
+        assertNull(verifier.verify(new Replay("Level14_Scatter.csv", hash, 1L, false, 6)));
+
+        // (a real level, with its real hash, so only the path can be at fault)
+        String archived = "files/archive/test_SeekerTest.csv";
+        long archivedHash = Replay.hashLevel(archived);
+        String outside = verifier.verify(new Replay("../archive/test_SeekerTest.csv",
+                archivedHash, 1L, false, 6));
+        assertNotNull(outside);
+        assertTrue(outside.contains("outside"));
+        outside = verifier.verify(new Replay(new File(archived).getAbsolutePath(), archivedHash,
+                1L, false, 6));
+        assertNotNull(outside);
+        assertTrue(outside.contains("outside"));
+    }
+
+    // test that a run in which the guards were stopped with the cheat code is rejected
+    @Test
+    public void testGuardsStopped() throws IOException {
+        GameEngine engine = new GameEngine();
+        engine.loadLevel(LEVEL, false, 6);
+        engine.submit(PlayerInput.WAIT);
+        engine.disableGuardMovement();
+        engine.submit(PlayerInput.WAIT);
+        Path file = Files.createTempFile("replay", ".sjr");
+        try {
+            engine.saveReplay(file.toString());
+            engine.awaitIdle();
+            Replay replay = Replay.load(file.toString());
+            assertEquals(Replay.GUARDS_STOPPED, replay.getCode(1));
+            String problem = new ReplayVerifier(new File(".")).verify(replay);
+            assertNotNull(problem);
+            assertTrue(problem.contains("cheat"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
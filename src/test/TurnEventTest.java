@@ -0,0 +1,102 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import stealth_game.*;
+
+/**
+ * Contains tests for the engine's Flight Recorder events
+ */
+
+public class TurnEventTest {
+
+    // test that turns are recorded to Flight Recorder, phase by phase
+    @Test
+    public void testTurnEvents() throws IOException {
+        Path file = Files.createTempFile("turns", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("stealth_game.Turn");
+            recording.enable("stealth_game.TurnPhase");
+            recording.start();
+            GameBoard gb = new GameBoard("files/Levels/Level14_Scatter.csv", false, 0, 42L);
+            for (int i = 0; i < 3; i++) {
+                gb.incrementTurn();
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        HashSet<String> phases = new HashSet<String>();
+        int turns = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            assertEquals("Level14_Scatter", event.getString("level"));
+            assertTrue(event.getInt("guardCount") > 0);
+            if (event.getEventType().getName().equals("stealth_game.Turn")) {
+                turns += 1;
+                assertEquals(turns, event.getInt("turn"));
+            } else {
+                phases.add(event.getString("phase"));
+            }
+        }
+        Files.delete(file);
+        assertEquals(3, turns);
+        assertTrue(phases.contains(TurnPhaseEvent.KEYS));
+        assertTrue(phases.contains(TurnPhaseEvent.GUARD_AI));
+        assertTrue(phases.contains(TurnPhaseEvent.GUARD_MOVES));
+        assertTrue(phases.contains(TurnPhaseEvent.DETECTION));
+    }
+
+    // test that with every input played ahead, only the turns actually committed are recorded,
+    // once each
+    @Test
+    public void testSpeculativeTurnsHeld() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("speculation", ".jfr");
+        PlayerInput[] inputs = {PlayerInput.WAIT, PlayerInput.LEFT, PlayerInput.WAIT,
+            PlayerInput.UP, PlayerInput.WAIT, PlayerInput.RIGHT};
+        int committedTurns;
+        try (Recording recording = new Recording()) {
+            recording.enable("stealth_game.Turn");
+            recording.start();
+            GameEngine engine = new GameEngine();
+            engine.loadLevel("files/Levels/Level12_Field2_Hunters.csv", false, 6);
+            for (PlayerInput input : inputs) {
+                // leave the engine idle long enough to play every input ahead
+                engine.awaitIdle();
+                Thread.sleep(100);
+                engine.submit(input);
+            }
+            engine.awaitIdle();
+            committedTurns = engine.getSnapshot().getTurn();
+            Thread.sleep(100);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        ArrayList<Integer> recordedTurns = new ArrayList<Integer>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (event.getEventType().getName().equals("stealth_game.Turn")
+                    && "Level12_Field2_Hunters".equals(event.getString("level"))) {
+                recordedTurns.add(event.getInt("turn"));
+            }
+        }
+        Files.delete(file);
+        assertTrue(committedTurns > 0);
+        ArrayList<Integer> expected = new ArrayList<Integer>();
+        for (int turn = 1; turn <= committedTurns; turn++) {
+            expected.add(turn);
+        }
+        assertEquals(expected, recordedTurns);
+    }
+}